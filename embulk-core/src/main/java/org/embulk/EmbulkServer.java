@@ -0,0 +1,331 @@
+package org.embulk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Binder;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.ModelManager;
+import org.embulk.exec.ExecutionResult;
+import org.embulk.exec.PreviewResult;
+import org.embulk.plugin.PluginManager;
+import org.embulk.spi.ExecSession;
+import org.embulk.spi.Page;
+import org.embulk.spi.util.Pages;
+
+/**
+ * EmbulkServer runs guess, preview and run jobs sent over HTTP using one
+ * EmbulkEmbed. The injector, the JRuby runtime, the buffer allocator and
+ * resolved plugins are shared by all jobs. Each job has its own ExecSession.
+ *
+ * POST /guess, /preview or /run with a config in YAML or JSON format.
+ * Requests must have these headers:
+ *
+ *   Authorization: Bearer <server_token>
+ *   Content-Type: application/json or application/x-yaml
+ *
+ * Requests with an Origin header are rejected so that web pages opened in
+ * a browser can't send jobs. Response is a JSON object:
+ *
+ *   guess:   {"config": guessed config}
+ *   preview: {"schema": columns, "records": [[values...], ...]}
+ *   run:     {"config_diff": next config diff, "ignored_errors": [messages...]}
+ *
+ * Errors are returned as {"error": message} with status 400 for
+ * ConfigException and 500 for others. Rejected requests get 401 (wrong
+ * token), 403 (Origin header) or 415 (Content-Type).
+ *
+ * System config:
+ *
+ *   server_token: shared secret clients send in the Authorization header (required)
+ *   server_bind_address: address to listen on (default: 127.0.0.1)
+ *   server_port: port to listen on (default: 9180)
+ *   server_max_jobs: number of jobs running at once (default: number of processors)
+ *   server_shutdown_timeout: seconds close() waits for running jobs (default: 60)
+ *
+ * Jobs run as the user running the server and can read and write any file
+ * the user can. Keep server_token secret and bind to a loopback address
+ * unless the network is trusted.
+ */
+@Beta
+public class EmbulkServer
+        implements AutoCloseable
+{
+    private final EmbulkEmbed embed;
+    private final ModelManager modelManager;
+    private final Logger logger;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] token;
+    private final int shutdownTimeout;
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    public EmbulkServer(ConfigSource systemConfig, Module... additionalModules)
+    {
+        this(systemConfig, ImmutableList.copyOf(additionalModules));
+    }
+
+    public EmbulkServer(ConfigSource systemConfig, Iterable<? extends Module> additionalModules)
+    {
+        String bindAddress = systemConfig.get(String.class, "server_bind_address", "127.0.0.1");
+        int port = systemConfig.get(int.class, "server_port", 9180);
+        int maxJobs = systemConfig.get(int.class, "server_max_jobs", Runtime.getRuntime().availableProcessors());
+        if (maxJobs < 1) {
+            throw new ConfigException("server_max_jobs must be larger than 0");
+        }
+        String token = systemConfig.get(String.class, "server_token", null);
+        if (token == null || token.isEmpty()) {
+            throw new ConfigException("server_token must be set. Clients send it in 'Authorization: Bearer <token>' header");
+        }
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.shutdownTimeout = systemConfig.get(int.class, "server_shutdown_timeout", 60);
+        if (shutdownTimeout < 0) {
+            throw new ConfigException("server_shutdown_timeout must not be negative");
+        }
+
+        this.embed = new EmbulkEmbed(systemConfig,
+                Iterables.concat(additionalModules, ImmutableList.of(new SharedPluginManagerModule())));
+        this.modelManager = embed.getModelManager();
+        this.logger = embed.getInjector().getInstance(ILoggerFactory.class).getLogger(EmbulkServer.class.getName());
+
+        this.executor = Executors.newFixedThreadPool(maxJobs,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("embulk-server-%d")
+                        .build());
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        } catch (IOException ex) {
+            executor.shutdown();
+            embed.close();
+            throw new ConfigException(ex);
+        }
+        server.setExecutor(executor);
+        server.createContext("/guess", new JobHandler("guess"));
+        server.createContext("/preview", new JobHandler("preview"));
+        server.createContext("/run", new JobHandler("run"));
+
+        InetSocketAddress address = server.getAddress();
+        if (!address.getAddress().isLoopbackAddress()) {
+            logger.warn("Embulk server listens on non-loopback address {}. Any host which can reach it and knows server_token can run jobs as this user", address);
+        }
+    }
+
+    // PluginManager is created for each ExecSession by default. Sharing it
+    // keeps resolved plugin sources across jobs.
+    private static class SharedPluginManagerModule
+            implements Module
+    {
+        @Override
+        public void configure(Binder binder)
+        {
+            binder.bind(PluginManager.class).in(Scopes.SINGLETON);
+        }
+    }
+
+    public EmbulkEmbed getEmbed()
+    {
+        return embed;
+    }
+
+    public InetSocketAddress getAddress()
+    {
+        return server.getAddress();
+    }
+
+    public void start()
+    {
+        server.start();
+        logger.info("Embulk server started at {}", server.getAddress());
+    }
+
+    public void join() throws InterruptedException
+    {
+        closed.await();
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed.getCount() == 0) {
+            return;
+        }
+        try {
+            // stop accepting requests, then wait for running jobs because
+            // they use the injector of the embed
+            server.stop(0);
+            executor.shutdown();
+            try {
+                logger.info("Waiting for running jobs to finish");
+                if (!executor.awaitTermination(shutdownTimeout, TimeUnit.SECONDS)) {
+                    logger.warn("Running jobs didn't finish in {} seconds. Interrupting them", shutdownTimeout);
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException ex) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            embed.close();
+        } finally {
+            closed.countDown();
+        }
+    }
+
+    private class JobHandler
+            implements HttpHandler
+    {
+        private final String command;
+
+        public JobHandler(String command)
+        {
+            this.command = command;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException
+        {
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    sendResponse(exchange, 405, ImmutableMap.of("error", "Only POST method is allowed"));
+                    return;
+                }
+                if (!isAuthorized(exchange)) {
+                    sendResponse(exchange, 401, ImmutableMap.of("error", "Invalid or missing Authorization header"));
+                    return;
+                }
+                if (exchange.getRequestHeaders().containsKey("Origin")) {
+                    // browsers send Origin with cross-origin requests. Jobs are not
+                    // accepted from web pages
+                    sendResponse(exchange, 403, ImmutableMap.of("error", "Requests with Origin header are not allowed"));
+                    return;
+                }
+                if (!isSupportedContentType(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                    sendResponse(exchange, 415, ImmutableMap.of("error", "Content-Type must be application/json or application/x-yaml"));
+                    return;
+                }
+
+                ConfigSource config;
+                try (InputStream in = exchange.getRequestBody()) {
+                    config = embed.newConfigLoader().fromYaml(in);
+                }
+
+                sendResponse(exchange, 200, execute(command, config));
+            } catch (ConfigException ex) {
+                logger.warn("Invalid {} request", command, ex);
+                sendResponse(exchange, 400, errorResponse(ex));
+            } catch (Throwable ex) {
+                logger.error("Failed to execute {}", command, ex);
+                sendResponse(exchange, 500, errorResponse(ex));
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private boolean isAuthorized(HttpExchange exchange)
+    {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return false;
+        }
+        byte[] given = authorization.substring("Bearer ".length()).getBytes(StandardCharsets.UTF_8);
+        // compares in constant time
+        return MessageDigest.isEqual(token, given);
+    }
+
+    private static boolean isSupportedContentType(String contentType)
+    {
+        if (contentType == null) {
+            return false;
+        }
+        int semicolon = contentType.indexOf(';');
+        String mediaType = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase(Locale.ENGLISH);
+        return mediaType.equals("application/json") || mediaType.equals("application/x-yaml");
+    }
+
+    private Map<String, Object> execute(String command, ConfigSource config)
+    {
+        ConfigSource execConfig = config.deepCopy().getNestedOrSetEmpty("exec");
+        ExecSession exec = embed.sessionBuilder(execConfig).build();
+        try {
+            switch (command) {
+            case "guess":
+                {
+                    ConfigDiff configDiff = embed.guess(exec, config);
+                    return ImmutableMap.<String, Object>of("config", config.merge(configDiff));
+                }
+            case "preview":
+                {
+                    PreviewResult result = embed.preview(exec, config);
+                    List<Object[]> records;
+                    try {
+                        records = Pages.toObjects(result.getSchema(), result.getPages());
+                    } finally {
+                        // pages aren't used after converted to objects
+                        for (Page page : result.getPages()) {
+                            page.release();
+                        }
+                    }
+                    return ImmutableMap.<String, Object>of(
+                            "schema", result.getSchema(),
+                            "records", records);
+                }
+            case "run":
+                {
+                    ExecutionResult result = embed.run(exec, config);
+                    List<String> ignoredErrors = new ArrayList<>();
+                    for (Throwable ex : result.getIgnoredExceptions()) {
+                        ignoredErrors.add(ex.toString());
+                    }
+                    return ImmutableMap.<String, Object>of(
+                            "config_diff", result.getConfigDiff(),
+                            "ignored_errors", ignoredErrors);
+                }
+            default:
+                throw new IllegalArgumentException("Unsupported command: " + command);
+            }
+        } finally {
+            exec.cleanup();
+        }
+    }
+
+    private static Map<String, Object> errorResponse(Throwable ex)
+    {
+        String message = ex.getMessage();
+        return ImmutableMap.<String, Object>of("error", message != null ? message : ex.toString());
+    }
+
+    private void sendResponse(HttpExchange exchange, int status, Object body) throws IOException
+    {
+        byte[] json = modelManager.writeObject(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, json.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(json);
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Files;
 import com.google.inject.Injector;
 import org.jruby.embed.ScriptingContainer;
+import org.embulk.jruby.JRubyInitializer;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.DataSource;
 import org.embulk.config.ConfigLoader;
@@ -36,6 +37,7 @@ import org.embulk.exec.PartialExecutionException;
 import org.embulk.spi.time.Timestamp;
 import org.embulk.spi.ExecSession;
 import org.embulk.EmbulkEmbed;
+import org.embulk.EmbulkServer;
 
 public class Runner
 {
@@ -109,6 +111,12 @@ public class Runner
 
     public void main(String command, String[] args)
     {
+        if (command.equals("server")) {
+            // EmbulkServer creates its own EmbulkEmbed
+            server();
+            return;
+        }
+
         try (EmbulkEmbed embed = new EmbulkEmbed(systemConfig)) {
             this.injector = embed.getInjector();
 
@@ -131,6 +139,16 @@ public class Runner
         }
     }
 
+    public void server()
+    {
+        try (EmbulkServer server = new EmbulkServer(systemConfig)) {
+            server.start();
+            server.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public void run(String configPath)
     {
         ConfigSource config = loadConfig(configPath);
@@ -141,17 +159,19 @@ public class Runner
         ResumeState resume = null;
         String resumePath = options.getResumeStatePath();
         if (resumePath != null) {
-            ConfigSource resumeConfig = null;
+            byte[] data = null;
             try {
-                resumeConfig = loadYamlConfig(resumePath);
-                if (resumeConfig.isEmpty()) {
-                    resumeConfig = null;
-                }
-            } catch (RuntimeException ex) {
-                // leave resumeConfig == null
+                data = Files.toByteArray(new File(resumePath));
+            } catch (IOException ex) {
+                // leave data == null
             }
-            if (resumeConfig != null) {
-                resume = resumeConfig.loadConfig(ResumeState.class);
+            if (data != null) {
+                try {
+                    resume = readResumeState(data);
+                } catch (RuntimeException ex) {
+                    // an unparsable file is ignored and the transaction runs from the
+                    // beginning. checkFileWritable above creates an empty file
+                }
             }
         }
 
@@ -183,8 +203,8 @@ public class Runner
             }
             // save the resume state
             exec.getLogger(Runner.class).info("Writing resume state to '{}'", options.getResumeStatePath());
-            writeYaml(options.getResumeStatePath(), partial.getResumeState());
-            exec.getLogger(Runner.class).info("Resume state is written. Run the transaction again with -r option to resume or use \"cleanup\" subcommand to delete intermediate data.");
+            writeResumeState(options.getResumeStatePath(), partial.getResumeState());
+            exec.getLogger(Runner.class).info("Resume state is written in binary Smile format, not YAML. Run the transaction again with -r option to resume or use \"cleanup\" subcommand to delete intermediate data.");
             throw partial;
         }
 
@@ -208,8 +228,16 @@ public class Runner
             throw new IllegalArgumentException("Resume path is required for cleanup");
         }
         ConfigSource config = loadConfig(configPath);
-        ConfigSource resumeConfig = loadYamlConfig(resumePath);
-        ResumeState resume = resumeConfig.loadConfig(ResumeState.class);
+        byte[] data;
+        try {
+            data = Files.toByteArray(new File(resumePath));
+        } catch (IOException ex) {
+            throw new ConfigException(ex);
+        }
+        ResumeState resume = readResumeState(data);
+        if (resume == null) {
+            throw new ConfigException("Resume state file is empty: " + resumePath);
+        }
 
         BulkLoader loader = injector.getInstance(BulkLoader.class);
         loader.cleanup(config, resume);
@@ -259,6 +287,45 @@ public class Runner
         return writeYaml(path, originalConfig.merge(configDiff));
     }
 
+    // resume state is written in Smile because it includes tasks and commit
+    // reports which can be large (e.g. a list of files). YAML files written
+    // by older versions are still readable.
+    private void writeResumeState(String path, ResumeState resume)
+    {
+        byte[] data = injector.getInstance(ModelManager.class).writeObjectAsBytes(resume);
+        try {
+            Files.write(data, new File(path));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private ResumeState readResumeState(byte[] data)
+    {
+        return readResumeState(injector.getInstance(ModelManager.class), injector.getInstance(ConfigLoader.class), data);
+    }
+
+    // returns null if the file is empty
+    static ResumeState readResumeState(ModelManager model, ConfigLoader loader, byte[] data)
+    {
+        if (data.length == 0) {
+            return null;
+        }
+        if (ModelManager.isSmile(data)) {
+            return model.readObject(ResumeState.class, data);
+        }
+        ConfigSource resumeConfig;
+        try (ByteArrayInputStream in = new ByteArrayInputStream(data)) {
+            resumeConfig = loader.fromYaml(in);
+        } catch (IOException ex) {
+            throw new ConfigException(ex);
+        }
+        if (resumeConfig.isEmpty()) {
+            return null;
+        }
+        return resumeConfig.loadConfig(ResumeState.class);
+    }
+
     private String writeYaml(String path, Object obj)
     {
         String yml = dumpYaml(obj);
@@ -337,7 +404,7 @@ public class Runner
 
     private ConfigSource loadLiquidYamlConfig(String path)
     {
-        LiquidTemplate helper = (LiquidTemplate) injector.getInstance(ScriptingContainer.class).runScriptlet("Embulk::Java::LiquidTemplateHelper.new");
+        LiquidTemplate helper = (LiquidTemplate) JRubyInitializer.initialize(injector.getInstance(ScriptingContainer.class)).runScriptlet("Embulk::Java::LiquidTemplateHelper.new");
         try {
             String source = Files.toString(new File(path), StandardCharsets.UTF_8);
             String data = helper.render(source, ImmutableMap.<String,String>of());
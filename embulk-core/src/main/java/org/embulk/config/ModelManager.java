@@ -1,22 +1,31 @@
 package org.embulk.config;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
 import javax.validation.Validation;
 import org.apache.bval.jsr303.ApacheValidationProvider;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.common.base.Throwables;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileConstants;
 
 public class ModelManager
 {
     private final Injector injector;
     private final ObjectMapper objectMapper;
     private final ObjectMapper configObjectMapper;  // configObjectMapper uses different TaskDeserializer
+    private final SmileFactory smileFactory;
     private final TaskValidator taskValidator;
 
     @Inject
@@ -25,6 +34,7 @@ public class ModelManager
         this.injector = injector;
         this.objectMapper = objectMapper;
         this.configObjectMapper = objectMapper.copy();
+        this.smileFactory = new SmileFactory(objectMapper);
         this.taskValidator = new TaskValidator(
                 Validation.byProvider(ApacheValidationProvider.class).configure().buildValidatorFactory().getValidator());
 
@@ -89,6 +99,37 @@ public class ModelManager
         }
     }
 
+    // Smile is a binary format of the same data model as JSON. Tasks and
+    // commit reports are smaller and faster to parse than JSON text because
+    // field names and strings are back-referenced and numbers are binary.
+    public <T> T readObject(Class<T> valueType, byte[] smile)
+    {
+        try (JsonParser parser = smileFactory.createParser(smile)) {
+            return objectMapper.readValue(parser, valueType);
+        } catch (Exception ex) {
+            throw Throwables.propagate(ex);
+        }
+    }
+
+    public byte[] writeObjectAsBytes(Object object)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = smileFactory.createGenerator(out)) {
+            objectMapper.writeValue(generator, object);
+        } catch (Exception ex) {
+            throw Throwables.propagate(ex);
+        }
+        return out.toByteArray();
+    }
+
+    public static boolean isSmile(byte[] data)
+    {
+        return data.length >= 3 &&
+            data[0] == SmileConstants.HEADER_BYTE_1 &&
+            data[1] == SmileConstants.HEADER_BYTE_2 &&
+            data[2] == SmileConstants.HEADER_BYTE_3;
+    }
+
     public void validate(Object object)
     {
         taskValidator.validateModel(object);
@@ -97,25 +138,78 @@ public class ModelManager
     // visible for DataSource.set
     JsonNode writeObjectAsJsonNode(Object v)
     {
-        String json = writeObject(v);
+        return readTokens(writeObjectAsTokens(v), JsonNode.class);
+    }
+
+    // visible for TaskInvocationHandler.invokeDump
+    ObjectNode writeObjectAsObjectNode(Object v)
+    {
+        return readTokens(writeObjectAsTokens(v), ObjectNode.class);
+    }
+
+    // Serializes an object to a TokenBuffer instead of JSON text so that
+    // a large task (such as a list of 100k files) isn't formatted and parsed
+    // again just to be converted to a JsonNode.
+    private TokenBuffer writeObjectAsTokens(Object v)
+    {
+        TokenBuffer buffer = new TokenBuffer(objectMapper, false);
         try {
-            return objectMapper.readValue(json, JsonNode.class);
+            objectMapper.writeValue(buffer, v);
         } catch (Exception ex) {
             throw Throwables.propagate(ex);
         }
+        return buffer;
     }
 
-    // visible for TaskInvocationHandler.invokeDump
-    ObjectNode writeObjectAsObjectNode(Object v)
+    private <T> T readTokens(TokenBuffer buffer, Class<T> valueType)
     {
-        String json = writeObject(v);
-        try {
-            return objectMapper.readValue(json, ObjectNode.class);
+        try (JsonParser parser = new JsonTextNumberParser(buffer.asParser())) {
+            return objectMapper.readValue(parser, valueType);
         } catch (Exception ex) {
             throw Throwables.propagate(ex);
         }
     }
 
+    // TokenBuffer keeps numbers as written by serializers (e.g. a small long
+    // value stays as a Long). This parser reports numbers as JSON text parser
+    // does so that JsonNodes are equal to the ones parsed from JSON text.
+    private static class JsonTextNumberParser
+            extends JsonParserDelegate
+    {
+        public JsonTextNumberParser(JsonParser parser)
+        {
+            super(parser);
+        }
+
+        @Override
+        public NumberType getNumberType() throws IOException
+        {
+            NumberType type = delegate.getNumberType();
+            if (type == NumberType.LONG || type == NumberType.BIG_INTEGER) {
+                BigInteger value = delegate.getBigIntegerValue();
+                if (value.bitLength() < 32) {
+                    return NumberType.INT;
+                } else if (value.bitLength() < 64) {
+                    return NumberType.LONG;
+                }
+                return NumberType.BIG_INTEGER;
+            } else if (type == NumberType.FLOAT) {
+                return NumberType.DOUBLE;
+            }
+            return type;
+        }
+
+        @Override
+        public double getDoubleValue() throws IOException
+        {
+            if (delegate.getNumberType() == NumberType.FLOAT) {
+                // same as Float.toString written to JSON text
+                return Double.parseDouble(Float.toString(delegate.getFloatValue()));
+            }
+            return delegate.getDoubleValue();
+        }
+    }
+
     // visible for TaskSerDe.set
     // TODO create annotation calss and get its instance at the 2nd argument
     <T> T getInjectedInstance(Class<T> type)
@@ -15,13 +15,131 @@ class TaskInvocationHandler
     private final Class<?> iface;
     private final Map<String, Object> objects;
     private final Set<String> injectedFields;
+    private final MethodTable methods;
 
     public TaskInvocationHandler(ModelManager model, Class<?> iface, Map<String, Object> objects, Set<String> injectedFields)
+    {
+        this(model, iface, objects, injectedFields, MethodTable.of(iface));
+    }
+
+    public TaskInvocationHandler(ModelManager model, Class<?> iface, Map<String, Object> objects, Set<String> injectedFields,
+            MethodTable methods)
     {
         this.model = model;
         this.iface = iface;
         this.objects = objects;
         this.injectedFields = injectedFields;
+        this.methods = methods;
+    }
+
+    private enum MethodKind
+    {
+        VALIDATE(0),
+        DUMP(0),
+        TO_STRING(0),
+        HASH_CODE(0),
+        EQUALS(1),
+        GETTER(0),
+        SETTER(1);
+
+        private final int argumentLength;
+
+        private MethodKind(int argumentLength)
+        {
+            this.argumentLength = argumentLength;
+        }
+
+        public static MethodKind ofName(String methodName)
+        {
+            switch (methodName) {
+            case "validate":
+                return VALIDATE;
+            case "dump":
+                return DUMP;
+            case "toString":
+                return TO_STRING;
+            case "hashCode":
+                return HASH_CODE;
+            case "equals":
+                return EQUALS;
+            default:
+                if (getterFieldNameOrNull(methodName) != null) {
+                    return GETTER;
+                }
+                if (setterFieldNameOrNull(methodName) != null) {
+                    return SETTER;
+                }
+                return null;
+            }
+        }
+    }
+
+    private static class MethodEntry
+    {
+        private final MethodKind kind;
+        private final String fieldName;
+
+        public MethodEntry(MethodKind kind, String fieldName)
+        {
+            this.kind = kind;
+            this.fieldName = fieldName;
+        }
+    }
+
+    /**
+     * Kinds and field names of methods of a task interface. invoke() looks up
+     * this table instead of parsing the method name for each call. A table is
+     * built once for each interface and shared by tasks of the interface.
+     */
+    static class MethodTable
+    {
+        private final Map<Method, MethodEntry> entries;
+
+        private MethodTable(Map<Method, MethodEntry> entries)
+        {
+            this.entries = entries;
+        }
+
+        public static MethodTable of(Class<?> iface)
+        {
+            Map<Method, MethodEntry> entries = new HashMap<Method, MethodEntry>();
+            for (Method method : iface.getMethods()) {
+                MethodEntry entry = newEntry(method);
+                if (entry != null) {
+                    entries.put(method, entry);
+                }
+            }
+            for (Method method : Object.class.getMethods()) {
+                MethodEntry entry = newEntry(method);
+                if (entry != null) {
+                    entries.put(method, entry);
+                }
+            }
+            return new MethodTable(ImmutableMap.copyOf(entries));
+        }
+
+        // returns null if the method is undefined or has a wrong number of arguments
+        private static MethodEntry newEntry(Method method)
+        {
+            String methodName = method.getName();
+            MethodKind kind = MethodKind.ofName(methodName);
+            if (kind == null || !hasExpectedArgumentLength(method, kind.argumentLength)) {
+                return null;
+            }
+            switch (kind) {
+            case GETTER:
+                return new MethodEntry(kind, getterFieldNameOrNull(methodName));
+            case SETTER:
+                return new MethodEntry(kind, setterFieldNameOrNull(methodName));
+            default:
+                return new MethodEntry(kind, null);
+            }
+        }
+
+        public MethodEntry get(Method method)
+        {
+            return entries.get(method);
+        }
     }
 
     /**
@@ -101,51 +219,38 @@ class TaskInvocationHandler
 
     public Object invoke(Object proxy, Method method, Object[] args)
     {
-        String methodName = method.getName();
-
-        switch(methodName) {
-        case "validate":
-            checkArgumentLength(method, 0, methodName);
-            model.validate(proxy);
-            return proxy;
-
-        case "dump":
-            checkArgumentLength(method, 0, methodName);
-            return invokeDump();
-
-        case "toString":
-            checkArgumentLength(method, 0, methodName);
-            return invokeToString();
-
-        case "hashCode":
-            checkArgumentLength(method, 0, methodName);
-            return invokeHashCode();
-
-        case "equals":
-            checkArgumentLength(method, 1, methodName);
-            if (args[0] instanceof Proxy) {
-                Object otherHandler = Proxy.getInvocationHandler(args[0]);
-                return invokeEquals(otherHandler);
-            }
-            return false;
-
-        default:
-            {
-                String fieldName;
-                fieldName = getterFieldNameOrNull(methodName);
-                if (fieldName != null) {
-                    checkArgumentLength(method, 0, methodName);
-                    return invokeGetter(method, fieldName);
-                }
-                fieldName = setterFieldNameOrNull(methodName);
-                if (fieldName != null) {
-                    checkArgumentLength(method, 1, methodName);
-                    invokeSetter(method, fieldName, args[0]);
-                    return this;
+        MethodEntry entry = methods.get(method);
+        if (entry != null) {
+            switch (entry.kind) {
+            case GETTER:
+                return invokeGetter(method, entry.fieldName);
+            case SETTER:
+                invokeSetter(method, entry.fieldName, args[0]);
+                return this;
+            case VALIDATE:
+                model.validate(proxy);
+                return proxy;
+            case DUMP:
+                return invokeDump();
+            case TO_STRING:
+                return invokeToString();
+            case HASH_CODE:
+                return invokeHashCode();
+            case EQUALS:
+                if (args[0] instanceof Proxy) {
+                    Object otherHandler = Proxy.getInvocationHandler(args[0]);
+                    return invokeEquals(otherHandler);
                 }
+                return false;
             }
         }
 
+        // the method isn't in the table because it has a wrong number of arguments or it's undefined
+        String methodName = method.getName();
+        MethodKind kind = MethodKind.ofName(methodName);
+        if (kind != null) {
+            checkArgumentLength(method, kind.argumentLength, methodName);
+        }
         throw new IllegalArgumentException(String.format("Undefined method '%s'", methodName));
     }
 
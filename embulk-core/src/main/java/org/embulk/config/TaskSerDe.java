@@ -75,6 +75,7 @@ class TaskSerDe
         private final Class<?> iface;
         private final Map<String, FieldEntry> mappings;
         private final List<InjectEntry> injects;
+        private final TaskInvocationHandler.MethodTable methods;
 
         public TaskDeserializer(ObjectMapper nestedObjectMapper, ModelManager model, Class<T> iface)
         {
@@ -83,6 +84,14 @@ class TaskSerDe
             this.iface = iface;
             this.mappings = getterMappings(iface);
             this.injects = injectEntries(iface);
+            this.methods = TaskInvocationHandler.MethodTable.of(iface);
+        }
+
+        @Override
+        public boolean isCachable()
+        {
+            // lets ObjectMapper reuse this deserializer and the method table for the interface
+            return true;
         }
 
         protected Map<String, FieldEntry> getterMappings(Class<?> iface)
@@ -187,7 +196,7 @@ class TaskSerDe
 
             return (T) Proxy.newProxyInstance(
                     iface.getClassLoader(), new Class<?>[] { iface },
-                    new TaskInvocationHandler(model, iface, objects, injectedFields.build()));
+                    new TaskInvocationHandler(model, iface, objects, injectedFields.build(), methods));
         }
 
         private static class FieldEntry
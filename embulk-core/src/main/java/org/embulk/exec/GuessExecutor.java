@@ -4,7 +4,10 @@ import java.util.List;
 import java.util.Set;
 import java.util.ArrayList;
 import java.util.concurrent.ExecutionException;
+import javax.validation.constraints.Min;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.ImmutableList;
+import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
@@ -38,6 +41,7 @@ import org.embulk.spi.FileInputRunner;
 public class GuessExecutor
 {
     private final List<PluginType> defaultGuessPlugins;
+    private final int sampleFiles;
 
     private interface GuessExecutorSystemTask
             extends Task
@@ -45,6 +49,11 @@ public class GuessExecutor
         @Config("guess_plugins")
         @ConfigDefault("[]")
         public List<PluginType> getGuessPlugins();
+
+        @Config("guess_sample_files")
+        @ConfigDefault("1")
+        @Min(1)
+        public int getGuessSampleFiles();
     }
 
     private interface GuessExecutorTask
@@ -75,6 +84,13 @@ public class GuessExecutor
         list.addAll(defaultGuessPlugins);
         list.addAll(systemTask.getGuessPlugins());
         this.defaultGuessPlugins = list.build();
+        this.sampleFiles = systemTask.getGuessSampleFiles();
+    }
+
+    // number of files FileInputRunner reads samples from
+    public int getSampleFiles()
+    {
+        return sampleFiles;
     }
 
     public ConfigDiff guess(ExecSession exec, final ConfigSource config)
@@ -119,6 +135,12 @@ public class GuessExecutor
 
     // called by FileInputRunner
     public ConfigDiff guessParserConfig(Buffer sample, ConfigSource inputConfig, ConfigSource execConfig)
+    {
+        return guessParserConfig(ImmutableList.of(sample), inputConfig, execConfig);
+    }
+
+    // called by FileInputRunner
+    public ConfigDiff guessParserConfig(List<Buffer> samples, ConfigSource inputConfig, ConfigSource execConfig)
     {
         List<PluginType> guessPlugins = new ArrayList<PluginType>(defaultGuessPlugins);
 
@@ -126,13 +148,14 @@ public class GuessExecutor
         guessPlugins.addAll(task.getGuessPlugins());
         guessPlugins.removeAll(task.getExcludeGuessPlugins());
 
-        return guessParserConfig(sample, inputConfig, guessPlugins);
+        return guessParserConfig(samples, inputConfig, guessPlugins);
     }
 
-    private ConfigDiff guessParserConfig(Buffer sample,
+    private ConfigDiff guessParserConfig(List<Buffer> samples,
             ConfigSource config, List<PluginType> guessPlugins)
     {
-        // repeat guessing upto 10 times
+        // GuessParserPlugin repeats guessing on decoded samples until the config doesn't
+        // change. Decoding samples is repeated only when decoders are guessed. Repeat it upto 10 times
         ConfigDiff lastGuessed = Exec.newConfigDiff();
         for (int i=0; i < 10; i++) {
             // include last-guessed config to run guess input
@@ -144,7 +167,7 @@ public class GuessExecutor
                 .set("orig_config", originalConfig);
 
             // run FileInputPlugin
-            final FileInputRunner input = new FileInputRunner(new BufferFileInputPlugin(sample));
+            final FileInputRunner input = new FileInputRunner(new BufferFileInputPlugin(samples));
             ConfigDiff guessed;
             try {
                 input.transaction(guessInputConfig, new InputPlugin.Control() {
@@ -174,6 +197,10 @@ public class GuessExecutor
 
             } catch (GuessedNoticeError error) {
                 guessed = lastGuessed.deepCopy().merge(error.getGuessedConfig());
+                if (!error.isDecodersChanged()) {
+                    // guess plugins reached the final config
+                    return guessed;
+                }
             }
 
             // merge to the last-guessed config
@@ -190,11 +217,11 @@ public class GuessExecutor
     private static class BufferFileInputPlugin
             implements FileInputPlugin
     {
-        private Buffer buffer;
+        private List<Buffer> buffers;
 
-        public BufferFileInputPlugin(Buffer buffer)
+        public BufferFileInputPlugin(List<Buffer> buffers)
         {
-            this.buffer = buffer;
+            this.buffers = buffers;
         }
 
         public ConfigDiff transaction(ConfigSource config, FileInputPlugin.Control control)
@@ -214,26 +241,31 @@ public class GuessExecutor
                 int taskCount,
                 List<CommitReport> successCommitReports)
         {
-            if (buffer != null) {
-                buffer.release();
-                buffer = null;
+            if (buffers != null) {
+                for (Buffer buffer : buffers) {
+                    buffer.release();
+                }
+                buffers = null;
             }
         }
 
         public TransactionalFileInput open(TaskSource taskSource, int taskIndex)
         {
-            return new BufferTransactionalFileInput(buffer);
+            return new BufferTransactionalFileInput(buffers);
         }
     }
 
     private static class BufferTransactionalFileInput
             implements TransactionalFileInput
     {
+        // each sample buffer is a file
+        private final List<Buffer> buffers;
+        private int index = -1;
         private Buffer buffer;
 
-        public BufferTransactionalFileInput(Buffer buffer)
+        public BufferTransactionalFileInput(List<Buffer> buffers)
         {
-            this.buffer = buffer;
+            this.buffers = buffers;
         }
 
         @Override
@@ -247,7 +279,12 @@ public class GuessExecutor
         @Override
         public boolean nextFile()
         {
-            return buffer != null;
+            if (index + 1 >= buffers.size()) {
+                return false;
+            }
+            index++;
+            buffer = buffers.get(index);
+            return true;
         }
 
         @Override
@@ -291,7 +328,7 @@ public class GuessExecutor
             final ConfigSource originalConfig = task.getOriginalConfig();
 
             // get sample buffer
-            Buffer sample = getFirstBuffer(input);
+            Buffer sample = SampleMerger.merge(getFirstBuffers(input));
 
             // load guess plugins
             ImmutableList.Builder<GuessPlugin> builder = ImmutableList.builder();
@@ -301,42 +338,54 @@ public class GuessExecutor
             }
             List<GuessPlugin> guesses = builder.build();
 
-            // run guess plugins
+            // run guess plugins in the order of guess_plugins. A plugin receives the config
+            // merged with results of the preceding plugins. Default guess plugins are registered
+            // in dependency order: decoders first, then parsers which guess charset, newline and
+            // schema in a call. Samples need to be decoded again if decoders change. Otherwise,
+            // all plugins run again on the same decoded sample until the config doesn't change
+            // so that plugins which guess one step in a call also complete. Repeat it upto 10 times
             ConfigSource mergedConfig = originalConfig.deepCopy();
             ConfigDiff mergedGuessed = Exec.newConfigDiff();
-            for (int i=0; i < guesses.size(); i++) {
-                ConfigDiff guessed = guesses.get(i).guess(originalConfig, sample);
-                guessed = addAssumedDecoderConfigs(originalConfig, guessed);
-                mergedGuessed.merge(guessed);
-                mergedConfig.merge(mergedGuessed);
-                if (!mergedConfig.equals(originalConfig)) {
-                    // config updated
-                    throw new GuessedNoticeError(mergedGuessed);
+            for (int i=0; i < 10; i++) {
+                ConfigSource lastConfig = mergedConfig.deepCopy();
+                for (GuessPlugin guess : guesses) {
+                    ConfigDiff guessed = guess.guess(mergedConfig, sample);
+                    guessed = addAssumedDecoderConfigs(originalConfig, guessed);
+                    mergedGuessed.merge(guessed);
+                    mergedConfig.merge(guessed);
+                    if (!Objects.equal(mergedConfig.get(JsonNode.class, "decoders", null), originalConfig.get(JsonNode.class, "decoders", null))) {
+                        throw new GuessedNoticeError(mergedGuessed, true);
+                    }
+                }
+                if (mergedConfig.equals(lastConfig)) {
+                    break;
                 }
             }
-            throw new GuessedNoticeError(mergedGuessed);
+            throw new GuessedNoticeError(mergedGuessed, false);
         }
 
-        private static Buffer getFirstBuffer(FileInput input)
+        private static List<Buffer> getFirstBuffers(FileInput input)
         {
-            // The first buffer is created by SamplingParserPlugin. See FileInputRunner.guess.
-            RuntimeException decodeException = null;
+            // The first buffer of each file is created by SamplingParserPlugin. See FileInputRunner.guess.
+            List<Buffer> samples = new ArrayList<Buffer>();
             try {
                 while (input.nextFile()) {
                     Buffer sample = input.poll();
                     if (sample != null) {
-                        return sample;
+                        samples.add(sample);
                     }
                 }
             } catch (RuntimeException ex) {
-                // ignores exceptions because FileDecoderPlugin can throw exceptions
-                // such as "Unexpected end of ZLIB input stream"
-                decodeException = ex;
+                // FileDecoderPlugin can throw exceptions such as "Unexpected end of ZLIB input stream"
+                // because samples are truncated. Ignores them if the first sample is available.
+                if (samples.isEmpty()) {
+                    throw ex;
+                }
             }
-            if (decodeException != null) {
-                throw decodeException;
+            if (samples.isEmpty()) {
+                throw new NoSampleException("No input buffer to guess");
             }
-            throw new NoSampleException("No input buffer to guess");
+            return samples;
         }
 
         private static class ConfigSourceList extends ArrayList<ConfigSource> { };
@@ -362,15 +411,28 @@ public class GuessExecutor
             extends Error
     {
         private final ConfigDiff guessedConfig;
+        private final boolean decodersChanged;
 
         public GuessedNoticeError(ConfigDiff guessedConfig)
+        {
+            this(guessedConfig, true);
+        }
+
+        public GuessedNoticeError(ConfigDiff guessedConfig, boolean decodersChanged)
         {
             this.guessedConfig = guessedConfig;
+            this.decodersChanged = decodersChanged;
         }
 
         public ConfigDiff getGuessedConfig()
         {
             return guessedConfig;
         }
+
+        // true if samples need to be decoded again using the guessed config
+        public boolean isDecodersChanged()
+        {
+            return decodersChanged;
+        }
     }
 }
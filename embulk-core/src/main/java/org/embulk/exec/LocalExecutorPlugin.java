@@ -11,6 +11,8 @@ import com.google.inject.Inject;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.CommitReport;
 import org.embulk.spi.Exec;
+import org.embulk.spi.ExecAction;
+import org.embulk.spi.ExecSession;
 import org.embulk.spi.ExecutorPlugin;
 import org.embulk.spi.ProcessTask;
 import org.embulk.spi.ProcessState;
@@ -98,33 +100,51 @@ public class LocalExecutorPlugin
 
     private Future<Throwable> startProcessor(final ProcessTask task, final int taskIndex, final ProcessState state)
     {
+        // threads of LocalThreadExecutor are shared by all sessions in this JVM. Tasks
+        // run with the session of the caller instead of the one the thread inherited.
+        final ExecSession session = Exec.session();
         return executor.submit(new Callable<Throwable>() {
-            public Throwable call()
+            public Throwable call() throws Exception
             {
-                try (SetCurrentThreadName dontCare = new SetCurrentThreadName(String.format("task-%04d", taskIndex))) {
-                    Executors.process(Exec.session(), task, taskIndex, new ProcessStateCallback() {
-                        public void started()
-                        {
-                            state.getInputTaskState(taskIndex).start();
-                            state.getOutputTaskState(taskIndex).start();
-                        }
-
-                        public void inputCommitted(CommitReport report)
-                        {
-                            state.getInputTaskState(taskIndex).setCommitReport(report);
-                        }
-
-                        public void outputCommitted(CommitReport report)
+                try {
+                    return Exec.doWith(session, new ExecAction<Throwable>() {
+                        public Throwable run()
                         {
-                            state.getOutputTaskState(taskIndex).setCommitReport(report);
+                            return process(session, task, taskIndex, state);
                         }
                     });
-                    return null;
-                } finally {
-                    state.getInputTaskState(taskIndex).finish();
-                    state.getOutputTaskState(taskIndex).finish();
+                } catch (ExecutionException ex) {
+                    // Exec.doWith wraps exceptions. Unwrap it so that the task state gets the original one.
+                    throw (Exception) ex.getCause();
                 }
             }
         });
     }
+
+    private static Throwable process(ExecSession session, ProcessTask task, final int taskIndex, final ProcessState state)
+    {
+        try (SetCurrentThreadName dontCare = new SetCurrentThreadName(String.format("task-%04d", taskIndex))) {
+            Executors.process(session, task, taskIndex, new ProcessStateCallback() {
+                public void started()
+                {
+                    state.getInputTaskState(taskIndex).start();
+                    state.getOutputTaskState(taskIndex).start();
+                }
+
+                public void inputCommitted(CommitReport report)
+                {
+                    state.getInputTaskState(taskIndex).setCommitReport(report);
+                }
+
+                public void outputCommitted(CommitReport report)
+                {
+                    state.getOutputTaskState(taskIndex).setCommitReport(report);
+                }
+            });
+            return null;
+        } finally {
+            state.getInputTaskState(taskIndex).finish();
+            state.getOutputTaskState(taskIndex).finish();
+        }
+    }
 }
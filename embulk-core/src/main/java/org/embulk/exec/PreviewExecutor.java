@@ -59,8 +59,9 @@ public class PreviewExecutor
 
     public PreviewResult preview(ExecSession exec, final ConfigSource config)
     {
+        int sampleRows = config.loadConfig(PreviewTask.class).getSampleRows();
         try {
-            return Exec.doWith(exec.forPreview(), new ExecAction<PreviewResult>() {
+            return Exec.doWith(exec.forPreview(sampleRows), new ExecAction<PreviewResult>() {
                 public PreviewResult run()
                 {
                     try (SetCurrentThreadName dontCare = new SetCurrentThreadName("preview")) {
@@ -0,0 +1,76 @@
+package org.embulk.exec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.embulk.spi.Buffer;
+
+/*
+ * Merges decoded samples of multiple files into one line-oriented sample.
+ *
+ * Samples are cut at the last line break so that truncated lines are not
+ * joined with the next sample. Leading lines of the following samples which
+ * are same with the leading lines of the first sample (such as CSV headers)
+ * are removed. A sample without line breaks is not merged.
+ */
+class SampleMerger
+{
+    private SampleMerger() { }
+
+    public static Buffer merge(List<Buffer> samples)
+    {
+        Buffer first = samples.get(0);
+        if (samples.size() == 1 || lastLineEnd(first) < 0) {
+            return first;
+        }
+
+        List<byte[]> firstLines = splitLines(first);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] line : firstLines) {
+            out.write(line, 0, line.length);
+        }
+
+        for (Buffer sample : samples.subList(1, samples.size())) {
+            List<byte[]> lines = splitLines(sample);
+            int i = 0;
+            while (i < lines.size() && i < firstLines.size() && Arrays.equals(lines.get(i), firstLines.get(i))) {
+                i++;
+            }
+            for (byte[] line : lines.subList(i, lines.size())) {
+                out.write(line, 0, line.length);
+            }
+        }
+
+        return Buffer.wrap(out.toByteArray());
+    }
+
+    private static int lastLineEnd(Buffer sample)
+    {
+        byte[] array = sample.array();
+        for (int i = sample.limit() - 1; i >= 0; i--) {
+            if (array[sample.offset() + i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // splits complete lines including line breaks. the last incomplete line is dropped
+    private static List<byte[]> splitLines(Buffer sample)
+    {
+        List<byte[]> lines = new ArrayList<byte[]>();
+        byte[] array = sample.array();
+        int end = lastLineEnd(sample);
+        int start = 0;
+        for (int i = 0; i <= end; i++) {
+            if (array[sample.offset() + i] == '\n') {
+                byte[] line = new byte[i + 1 - start];
+                System.arraycopy(array, sample.offset() + start, line, 0, line.length);
+                lines.add(line);
+                start = i + 1;
+            }
+        }
+        return lines;
+    }
+}
@@ -1,8 +1,15 @@
 package org.embulk.exec;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import com.google.inject.Inject;
-import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import org.embulk.config.ConfigException;
 import org.embulk.config.TaskSource;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.CommitReport;
@@ -16,6 +23,7 @@ import org.embulk.spi.ParserPlugin;
 import org.embulk.spi.FileInput;
 import org.embulk.spi.FileInputRunner;
 import org.embulk.spi.PageOutput;
+import org.embulk.spi.unit.ByteSize;
 import org.embulk.exec.ForSystemConfig;
 import static org.embulk.spi.util.Inputs.each;
 
@@ -26,12 +34,19 @@ public class SamplingParserPlugin
         implements ParserPlugin
 {
     public static Buffer runFileInputSampling(final FileInputRunner runner, ConfigSource inputConfig)
+    {
+        return runFileInputSampling(runner, inputConfig, 1).get(0);
+    }
+
+    // reads samples of up to maxFiles files in parallel. returned list is never empty
+    public static List<Buffer> runFileInputSampling(final FileInputRunner runner, ConfigSource inputConfig, final int maxFiles)
     {
         // override in.parser.type so that FileInputRunner creates SamplingParserPlugin
         ConfigSource samplingInputConfig = inputConfig.deepCopy();
         samplingInputConfig.getNestedOrSetEmpty("parser").set("type", "system_sampling");
         samplingInputConfig.set("decoders", null);
 
+        final List<Buffer> samples = new ArrayList<Buffer>();
         try {
             runner.transaction(samplingInputConfig, new InputPlugin.Control() {
                 public List<CommitReport> run(TaskSource taskSource, Schema schema, int taskCount)
@@ -39,29 +54,92 @@ public class SamplingParserPlugin
                     if (taskCount == 0) {
                         throw new NoSampleException("No input files to read sample data");
                     }
-                    for (int taskIndex=0; taskIndex < taskCount; taskIndex++) {
-                        try {
-                            runner.run(taskSource, schema, taskIndex, new PageOutput() {
-                                @Override
-                                public void add(Page page)
-                                {
-                                    throw new RuntimeException("Input plugin must be a FileInputPlugin to guess parser configuration");  // TODO exception class
-                                }
-
-                                public void finish() { }
-
-                                public void close() { }
-                            });
-                        } catch (NotEnoughSampleError ex) {
-                            continue;
+                    if (maxFiles <= 1) {
+                        for (int taskIndex=0; taskIndex < taskCount; taskIndex++) {
+                            Buffer sample = runSampling(runner, taskSource, schema, taskIndex);
+                            if (sample != null) {
+                                samples.add(sample);
+                                break;
+                            }
                         }
+                    } else {
+                        runParallelSampling(runner, taskSource, schema, taskCount, maxFiles, samples);
+                    }
+                    if (samples.isEmpty()) {
+                        throw new NoSampleException("All input files are smaller than minimum sampling size");  // TODO include minSampleSize in message
                     }
-                    throw new NoSampleException("All input files are smaller than minimum sampling size");  // TODO include minSampleSize in message
+                    throw new SampledNoticeError(samples.get(0));
                 }
             });
             throw new AssertionError("SamplingParserPlugin must throw SampledNoticeError");
         } catch (SampledNoticeError error) {
-            return error.getSample();
+            return samples;
+        }
+    }
+
+    // returns null if the file is smaller than minimum sampling size
+    private static Buffer runSampling(FileInputRunner runner, TaskSource taskSource, Schema schema, int taskIndex)
+    {
+        try {
+            runner.run(taskSource, schema, taskIndex, new PageOutput() {
+                @Override
+                public void add(Page page)
+                {
+                    throw new RuntimeException("Input plugin must be a FileInputPlugin to guess parser configuration");  // TODO exception class
+                }
+
+                public void finish() { }
+
+                public void close() { }
+            });
+        } catch (NotEnoughSampleError ex) {
+            return null;
+        } catch (SampledNoticeError ex) {
+            return ex.getSample();
+        }
+        throw new AssertionError("SamplingParserPlugin must throw SampledNoticeError");
+    }
+
+    private static void runParallelSampling(final FileInputRunner runner, final TaskSource taskSource, final Schema schema,
+            int taskCount, int maxFiles, List<Buffer> samples)
+    {
+        // threads inherit the current ExecSession
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxFiles, taskCount));
+        try {
+            int taskIndex = 0;
+            while (samples.size() < maxFiles && taskIndex < taskCount) {
+                // read next files as many as remaining samples. results are ordered by task index
+                List<Future<Buffer>> futures = new ArrayList<Future<Buffer>>();
+                for (int i = samples.size(); i < maxFiles && taskIndex < taskCount; i++) {
+                    final int index = taskIndex++;
+                    futures.add(executor.submit(new Callable<Buffer>() {
+                        public Buffer call()
+                        {
+                            return runSampling(runner, taskSource, schema, index);
+                        }
+                    }));
+                }
+                for (Future<Buffer> future : futures) {
+                    Buffer sample = getSample(future);
+                    if (sample != null) {
+                        samples.add(sample);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Buffer getSample(Future<Buffer> future)
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(ex);
+        } catch (ExecutionException ex) {
+            throw Throwables.propagate(ex.getCause());
         }
     }
 
@@ -91,9 +169,12 @@ public class SamplingParserPlugin
     @Inject
     public SamplingParserPlugin(@ForSystemConfig ConfigSource systemConfig)
     {
-        this.minSampleSize = 40;  // empty gzip file is 33 bytes. // TODO get sample size from system config
-        this.sampleSize = 32*1024;  // TODO get sample size from system config
-        Preconditions.checkArgument(minSampleSize < sampleSize, "minSampleSize must be smaller than sampleSize");
+        this.minSampleSize = 40;  // empty gzip file is 33 bytes.
+        ByteSize size = systemConfig.get(ByteSize.class, "guess_sample_buffer_bytes", new ByteSize(32*1024));
+        if (size.getBytes() <= minSampleSize || size.getBytes() > Integer.MAX_VALUE) {
+            throw new ConfigException("guess_sample_buffer_bytes must be larger than " + minSampleSize + " bytes and smaller than 2GB: " + size);
+        }
+        this.sampleSize = size.getBytesInt();
     }
 
     @Override
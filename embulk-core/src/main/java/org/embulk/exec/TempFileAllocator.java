@@ -1,32 +1,69 @@
 package org.embulk.exec;
 
 import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.spi.TempFileSpace;
+import org.embulk.spi.unit.ByteSize;
 
 // TODO change this class to interface
 // TODO don't use this class directly. Use spi.Exec.getTempFileSpace() instead.
 public class TempFileAllocator
 {
-    private final File[] dirs;
+    private final List<File> dirs;
+    private final TempFileSpace.DirectorySelection selection;
+    private final long quotaBytes;
 
     @Inject
     public TempFileAllocator(@ForSystemConfig ConfigSource systemConfig)
     {
-        // TODO get `temp_dirs` from system config
-        String s = System.getProperty("java.io.tmpdir");
-        if (s == null || s.isEmpty()) {
-            s = "/tmp";
+        // temp_dirs is a list of paths or a comma-separated string so that -X option can set it
+        ImmutableList.Builder<File> builder = ImmutableList.builder();
+        JsonNode tempDirs = systemConfig.get(JsonNode.class, "temp_dirs", null);
+        if (tempDirs != null && tempDirs.isArray()) {
+            for (JsonNode dir : tempDirs) {
+                builder.add(new File(dir.asText()));
+            }
+        } else if (tempDirs != null && tempDirs.isTextual()) {
+            for (String dir : Splitter.on(',').trimResults().omitEmptyStrings().split(tempDirs.asText())) {
+                builder.add(new File(dir));
+            }
         }
-        this.dirs = new File[] {
-            new File(s, "embulk")
-        };
+        List<File> configured = builder.build();
+
+        if (configured.isEmpty()) {
+            String s = System.getProperty("java.io.tmpdir");
+            if (s == null || s.isEmpty()) {
+                s = "/tmp";
+            }
+            this.dirs = ImmutableList.of(new File(s, "embulk"));
+        } else {
+            this.dirs = configured;
+        }
+
+        String selectionName = systemConfig.get(String.class, "temp_dir_selection", "round_robin");
+        try {
+            this.selection = TempFileSpace.DirectorySelection.valueOf(selectionName.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException ex) {
+            throw new ConfigException("temp_dir_selection must be round_robin or free_space: " + selectionName);
+        }
+
+        ByteSize quota = systemConfig.get(ByteSize.class, "temp_dir_quota", null);
+        this.quotaBytes = (quota == null ? 0 : quota.getBytes());
     }
 
     public TempFileSpace newSpace(String subdir)
     {
-        // TODO support multiple files
-        return new TempFileSpace(new File(dirs[0], subdir));
+        ImmutableList.Builder<File> spaceDirs = ImmutableList.builder();
+        for (File dir : dirs) {
+            spaceDirs.add(new File(dir, subdir));
+        }
+        return new TempFileSpace(spaceDirs.build(), selection, quotaBytes);
     }
 }
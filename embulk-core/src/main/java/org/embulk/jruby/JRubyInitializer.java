@@ -0,0 +1,84 @@
+package org.embulk.jruby;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+import com.google.inject.Injector;
+import org.jruby.embed.ScriptingContainer;
+import org.embulk.config.ModelManager;
+import org.embulk.spi.BufferAllocator;
+
+/**
+ * Loads embulk.rb into a ScriptingContainer on first use.
+ *
+ * ScriptingContainer doesn't start the Ruby runtime until it runs a script.
+ * Code which runs Embulk's Ruby scripts calls initialize(jruby) beforehand
+ * so that a job using only Java plugins and strptime formats supported by
+ * StrptimeParser never boots JRuby.
+ */
+public class JRubyInitializer
+{
+    private final Injector injector;
+    private final Logger logger;
+    private boolean initialized;
+
+    JRubyInitializer(Injector injector)
+    {
+        this.injector = injector;
+        this.logger = injector.getInstance(ILoggerFactory.class).getLogger(JRubyInitializer.class.getName());
+    }
+
+    static void register(ScriptingContainer jruby, JRubyInitializer initializer)
+    {
+        jruby.setAttribute(JRubyInitializer.class, initializer);
+    }
+
+    public static ScriptingContainer initialize(ScriptingContainer jruby)
+    {
+        Object initializer = jruby.getAttribute(JRubyInitializer.class);
+        if (initializer != null) {
+            ((JRubyInitializer) initializer).run(jruby);
+        }
+        return jruby;
+    }
+
+    private synchronized void run(ScriptingContainer jruby)
+    {
+        if (initialized) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        // jruby searches embulk/java/bootstrap.rb from the beginning of $LOAD_PATH.
+        jruby.runScriptlet("require 'embulk/java/bootstrap'");
+
+        // TODO validate Embulk::Java::Injected::Injector doesn't exist? If it already exists,
+        //      Injector is created more than once in this JVM although use_global_ruby_runtime
+        //      is set to true.
+
+        // set some constants
+        jruby.callMethod(
+                jruby.runScriptlet("Embulk::Java::Injected"),
+                "const_set", "Injector", injector);
+        jruby.callMethod(
+                jruby.runScriptlet("Embulk::Java::Injected"),
+                "const_set", "ModelManager", injector.getInstance(ModelManager.class));
+        jruby.callMethod(
+                jruby.runScriptlet("Embulk::Java::Injected"),
+                "const_set", "BufferAllocator", injector.getInstance(BufferAllocator.class));
+
+        // load embulk.rb
+        jruby.runScriptlet("require 'embulk'");
+
+        // initialize logger
+        jruby.callMethod(
+                jruby.runScriptlet("Embulk"),
+                "logger=",
+                    jruby.callMethod(
+                        jruby.runScriptlet("Embulk::Logger"),
+                        "new", injector.getInstance(ILoggerFactory.class).getLogger("ruby")));
+
+        initialized = true;
+        logger.info("Initialized JRuby runtime in {} ms", System.currentTimeMillis() - startTime);
+    }
+}
@@ -20,18 +20,25 @@ public class JRubyPluginSource
         implements PluginSource
 {
     private final ScriptingContainer jruby;
-    private final Object rubyPluginManager;
+    private Object rubyPluginManager;
 
     @Inject
     public JRubyPluginSource(ScriptingContainer jruby)
     {
+        // JRuby is initialized when a plugin is not found in other PluginSources
         this.jruby = jruby;
+    }
 
-        // get Embulk::Plugin
-        //this.rubyPluginManager = ((RubyModule) jruby.get("Embulk")).const_get(
-        //        RubySymbol.newSymbol(
-        //            jruby.getProvider().getRuntime(), "Plugin"));
-        this.rubyPluginManager = jruby.runScriptlet("Embulk::Plugin");
+    private synchronized Object getRubyPluginManager()
+    {
+        if (rubyPluginManager == null) {
+            // get Embulk::Plugin
+            //this.rubyPluginManager = ((RubyModule) jruby.get("Embulk")).const_get(
+            //        RubySymbol.newSymbol(
+            //            jruby.getProvider().getRuntime(), "Plugin"));
+            this.rubyPluginManager = JRubyInitializer.initialize(jruby).runScriptlet("Embulk::Plugin");
+        }
+        return rubyPluginManager;
     }
 
     public <T> T newPlugin(Class<T> iface, PluginType type) throws PluginSourceNotMatchException
@@ -64,7 +71,7 @@ public class JRubyPluginSource
 
         String methodName = "new_java_" + category;
         try {
-            return jruby.callMethod(rubyPluginManager, methodName, name, iface);
+            return jruby.callMethod(getRubyPluginManager(), methodName, name, iface);
         } catch (InvokeFailedException ex) {
             throw new PluginSourceNotMatchException(ex.getCause());
         }
@@ -4,7 +4,6 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
 import java.io.File;
-import org.slf4j.ILoggerFactory;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Module;
 import com.google.inject.Binder;
@@ -78,34 +77,9 @@ public class JRubyScriptingModule
             }
             jruby.setLoadPaths(loadPaths);
 
-            // jruby searches embulk/java/bootstrap.rb from the beginning of $LOAD_PATH.
-            jruby.runScriptlet("require 'embulk/java/bootstrap'");
-
-            // TODO validate Embulk::Java::Injected::Injector doesn't exist? If it already exists,
-            //      Injector is created more than once in this JVM although use_global_ruby_runtime
-            //      is set to true.
-
-            // set some constants
-            jruby.callMethod(
-                    jruby.runScriptlet("Embulk::Java::Injected"),
-                    "const_set", "Injector", injector);
-            jruby.callMethod(
-                    jruby.runScriptlet("Embulk::Java::Injected"),
-                    "const_set", "ModelManager", injector.getInstance(ModelManager.class));
-            jruby.callMethod(
-                    jruby.runScriptlet("Embulk::Java::Injected"),
-                    "const_set", "BufferAllocator", injector.getInstance(BufferAllocator.class));
-
-            // load embulk.rb
-            jruby.runScriptlet("require 'embulk'");
-
-            // initialize logger
-            jruby.callMethod(
-                    jruby.runScriptlet("Embulk"),
-                    "logger=",
-                        jruby.callMethod(
-                            jruby.runScriptlet("Embulk::Logger"),
-                            "new", injector.getInstance(ILoggerFactory.class).getLogger("ruby")));
+            // embulk.rb is loaded when JRubyInitializer.initialize(jruby) is called first time.
+            // ScriptingContainer doesn't boot the Ruby runtime until then.
+            JRubyInitializer.register(jruby, new JRubyInitializer(injector));
 
             return jruby;
         }
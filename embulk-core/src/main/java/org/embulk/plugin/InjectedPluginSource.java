@@ -1,5 +1,7 @@
 package org.embulk.plugin;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import com.google.inject.Binder;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
@@ -30,6 +32,7 @@ public class InjectedPluginSource
         implements PluginSource
 {
     private final Injector injector;
+    private final ConcurrentMap<Named, PluginFactory<?>> factories = new ConcurrentHashMap<>();
 
     @Inject
     public InjectedPluginSource(Injector injector)
@@ -42,17 +45,20 @@ public class InjectedPluginSource
         public T newPlugin(Injector injector);
     }
 
+    @SuppressWarnings("unchecked")
     public <T> T newPlugin(Class<T> iface, PluginType type) throws PluginSourceNotMatchException
     {
-        String name = type.getName();
-        try {
-            @SuppressWarnings("unchecked")
-            PluginFactory<T> factory = (PluginFactory<T>) injector.getInstance(
-                    Key.get(PluginFactory.class, pluginFactoryName(iface, name)));
-            return factory.newPlugin(injector);
-        } catch (com.google.inject.ConfigurationException ex) {
-            throw new PluginSourceNotMatchException();
+        Named name = pluginFactoryName(iface, type.getName());
+        PluginFactory<T> factory = (PluginFactory<T>) factories.get(name);
+        if (factory == null) {
+            try {
+                factory = (PluginFactory<T>) injector.getInstance(Key.get(PluginFactory.class, name));
+            } catch (com.google.inject.ConfigurationException ex) {
+                throw new PluginSourceNotMatchException();
+            }
+            factories.put(name, factory);
         }
+        return factory.newPlugin(injector);
     }
 
     public static <T> void registerPluginTo(Binder binder, Class<T> iface, String name, final Class<?> impl)
@@ -3,6 +3,8 @@ package org.embulk.plugin;
 import java.util.Set;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
@@ -13,6 +15,10 @@ public class PluginManager
     private final List<PluginSource> sources;
     private final Injector injector;
 
+    // PluginSource which returned a plugin for "iface.name". PluginManager
+    // is created for each ExecSession and newPlugin is called for every task.
+    private final ConcurrentMap<String, PluginSource> matchedSources = new ConcurrentHashMap<>();
+
     // Set<PluginSource> is injected by BuiltinPluginSourceModule or extensions
     // using Multibinder<PluginSource>.
     @Inject
@@ -32,10 +38,22 @@ public class PluginManager
             throw new ConfigException(String.format("%s type is not set (if you intend to use NullOutputPlugin, you should enclose null in quotes such as {type: \"null\"}.", iface.getSimpleName()));
         }
 
+        String key = iface.getName() + "." + type.getName();
+        PluginSource matched = matchedSources.get(key);
+        if (matched != null) {
+            try {
+                return matched.newPlugin(iface, type);
+            } catch (PluginSourceNotMatchException e) {
+                matchedSources.remove(key, matched);
+            }
+        }
+
         List<PluginSourceNotMatchException> exceptions = new ArrayList<>();
         for (PluginSource source : sources) {
             try {
-                return source.newPlugin(iface, type);
+                T plugin = source.newPlugin(iface, type);
+                matchedSources.put(key, source);
+                return plugin;
             } catch (PluginSourceNotMatchException e) {
                 exceptions.add(e);
             }
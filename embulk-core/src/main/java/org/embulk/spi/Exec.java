@@ -30,6 +30,12 @@ public class Exec
         }
     }
 
+    // returns null if this is used outside of Exec.doWith
+    static ExecSession sessionOrNull()
+    {
+        return Exec.session.get();
+    }
+
     public static ExecSession session()
     {
         ExecSession session = Exec.session.get();
@@ -34,6 +34,7 @@ public class ExecSession
     private final TempFileSpace tempFileSpace;
 
     private final boolean preview;
+    private final int previewSampleRows;
 
     @Deprecated
     public interface SessionTask
@@ -104,9 +105,10 @@ public class ExecSession
         this.tempFileSpace = tempFileAllocator.newSpace(transactionTime.toString());
 
         this.preview = false;
+        this.previewSampleRows = 0;
     }
 
-    private ExecSession(ExecSession copy, boolean preview)
+    private ExecSession(ExecSession copy, boolean preview, int previewSampleRows)
     {
         this.injector = copy.injector;
         this.loggerFactory = copy.loggerFactory;
@@ -118,11 +120,19 @@ public class ExecSession
         this.tempFileSpace = copy.tempFileSpace;
 
         this.preview = preview;
+        this.previewSampleRows = previewSampleRows;
     }
 
     public ExecSession forPreview()
     {
-        return new ExecSession(this, true);
+        return new ExecSession(this, true, 0);
+    }
+
+    // PageBuilder flushes a page when it has sampleRows records so that
+    // preview stops reading input as soon as it gets enough records
+    public ExecSession forPreview(int sampleRows)
+    {
+        return new ExecSession(this, true, sampleRows);
     }
 
     public ConfigSource getSessionExecConfig()
@@ -204,6 +214,12 @@ public class ExecSession
         return preview;
     }
 
+    // 0 if the number of records to preview is unknown
+    public int getPreviewSampleRows()
+    {
+        return previewSampleRows;
+    }
+
     public void cleanup()
     {
         tempFileSpace.cleanup();
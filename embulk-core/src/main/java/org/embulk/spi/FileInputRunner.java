@@ -10,7 +10,10 @@ import org.embulk.config.CommitReport;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
 import org.embulk.plugin.PluginType;
+import org.embulk.spi.unit.ByteSize;
 import org.embulk.spi.util.Decoders;
+import org.embulk.spi.util.ReadAheadFileInput;
+import org.embulk.spi.util.SharedTaskValues;
 import org.embulk.exec.GuessExecutor;
 import org.embulk.exec.SamplingParserPlugin;
 import org.embulk.exec.NoSampleException;
@@ -25,7 +28,9 @@ public class FileInputRunner
         this.fileInputPlugin = fileInputPlugin;
     }
 
-    private interface RunnerTask extends Task
+    // fields which run() uses. The task of the file input plugin is not
+    // included so that it isn't deserialized again for each task.
+    private interface RunTask extends Task
     {
         // TODO "type" needed?
 
@@ -36,8 +41,14 @@ public class FileInputRunner
         @Config("parser")
         public ConfigSource getParserConfig();
 
-        public void setFileInputTaskSource(TaskSource v);
-        public TaskSource getFileInputTaskSource();
+        // number of decoded buffers read ahead on a background thread. 0 disables read-ahead
+        @Config("read_ahead_buffers")
+        @ConfigDefault("0")
+        public int getReadAheadBuffers();
+
+        @Config("read_ahead_bytes")
+        @ConfigDefault("\"16MB\"")
+        public ByteSize getReadAheadBytes();
 
         public void setDecoderTaskSources(List<TaskSource> v);
         public List<TaskSource> getDecoderTaskSources();
@@ -46,12 +57,18 @@ public class FileInputRunner
         public TaskSource getParserTaskSource();
     }
 
-    protected List<DecoderPlugin> newDecoderPlugins(RunnerTask task)
+    private interface RunnerTask extends RunTask
+    {
+        public void setFileInputTaskSource(TaskSource v);
+        public TaskSource getFileInputTaskSource();
+    }
+
+    protected List<DecoderPlugin> newDecoderPlugins(RunTask task)
     {
         return Decoders.newDecoderPlugins(Exec.session(), task.getDecoderConfigs());
     }
 
-    protected ParserPlugin newParserPlugin(RunnerTask task)
+    protected ParserPlugin newParserPlugin(RunTask task)
     {
         return Exec.newPlugin(ParserPlugin.class, task.getParserConfig().get(PluginType.class, "type"));
     }
@@ -75,13 +92,13 @@ public class FileInputRunner
     @Override
     public ConfigDiff guess(ConfigSource config)
     {
-        Buffer sample = SamplingParserPlugin.runFileInputSampling(this, config);
-        if (sample.limit() == 0) {
+        GuessExecutor guessExecutor = Exec.getInjector().getInstance(GuessExecutor.class);
+        List<Buffer> samples = SamplingParserPlugin.runFileInputSampling(this, config, guessExecutor.getSampleFiles());
+        if (samples.get(0).limit() == 0) {
             throw new NoSampleException("Can't get sample data because the first input file is empty");
         }
 
-        GuessExecutor guessExecutor = Exec.getInjector().getInstance(GuessExecutor.class);
-        return guessExecutor.guessParserConfig(sample, config, Exec.session().getSessionExecConfig());
+        return guessExecutor.guessParserConfig(samples, config, Exec.session().getSessionExecConfig());
     }
 
     private class RunnerControl
@@ -134,21 +151,40 @@ public class FileInputRunner
     public CommitReport run(TaskSource taskSource, Schema schema, int taskIndex,
             PageOutput output)
     {
-        final RunnerTask task = taskSource.loadTask(RunnerTask.class);
+        final RunTask task = taskSource.loadTask(RunTask.class);
         List<DecoderPlugin> decoderPlugins = newDecoderPlugins(task);
         ParserPlugin parserPlugin = newParserPlugin(task);
 
-        TransactionalFileInput tran = fileInputPlugin.open(task.getFileInputTaskSource(), taskIndex);
+        // the copy shares arrays such as a list of all files with the other
+        // tasks instead of deserializing them for each task. Nested objects
+        // are copied so that setting attributes doesn't change the other tasks.
+        TaskSource fileInputTaskSource = SharedTaskValues.copy(taskSource.getNested("FileInputTaskSource"));
+        TransactionalFileInput tran = fileInputPlugin.open(fileInputTaskSource, taskIndex);
         FileInput fileInput = tran;
+        ReadAheadFileInput readAhead = null;
         try {
             fileInput = Decoders.open(decoderPlugins, task.getDecoderTaskSources(), fileInput);
+            // reading ahead is useless in preview which stops after the first records
+            if (task.getReadAheadBuffers() > 0 && !Exec.isPreview()) {
+                readAhead = new ReadAheadFileInput(fileInput, task.getReadAheadBuffers(), task.getReadAheadBytes().getBytes());
+                fileInput = readAhead;
+            }
             parserPlugin.run(task.getParserTaskSource(), schema, fileInput, output);
 
+            if (readAhead != null) {
+                // parsers may return before the end of files. The background
+                // thread must not read tran while or after it's committed.
+                readAhead.stop();
+            }
             CommitReport report = tran.commit();  // TODO check output.finish() is called. wrap
             tran = null;
             return report;
         } finally {
             try {
+                if (readAhead != null) {
+                    // the background thread may still be reading tran
+                    readAhead.stop();
+                }
                 if (tran != null) {
                     tran.abort();
                 }
@@ -2,6 +2,7 @@ package org.embulk.spi;
 
 import java.util.List;
 import java.util.ArrayList;
+import com.google.common.base.Optional;
 import org.embulk.config.Task;
 import org.embulk.config.TaskSource;
 import org.embulk.config.ConfigSource;
@@ -9,7 +10,9 @@ import org.embulk.config.ConfigDiff;
 import org.embulk.config.CommitReport;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
+import org.embulk.config.ConfigException;
 import org.embulk.plugin.PluginType;
+import org.embulk.spi.unit.ByteSize;
 import org.embulk.spi.util.Encoders;
 
 public class FileOutputRunner
@@ -34,6 +37,16 @@ public class FileOutputRunner
         @Config("formatter")
         public ConfigSource getFormatterConfig();
 
+        // a task starts a new file if the current file has this number of
+        // records, or has this size of formatted data when a page is added
+        @Config("file_size_threshold")
+        @ConfigDefault("null")
+        public Optional<ByteSize> getFileSizeThreshold();
+
+        @Config("max_file_records")
+        @ConfigDefault("null")
+        public Optional<Long> getMaxFileRecords();
+
         public void setFileOutputTaskSource(TaskSource v);
         public TaskSource getFileOutputTaskSource();
 
@@ -60,6 +73,12 @@ public class FileOutputRunner
             final OutputPlugin.Control control)
     {
         final RunnerTask task = config.loadConfig(RunnerTask.class);
+        if (task.getMaxFileRecords().isPresent() && task.getMaxFileRecords().get() <= 0) {
+            throw new ConfigException("max_file_records must be larger than 0");
+        }
+        if (task.getFileSizeThreshold().isPresent() && task.getFileSizeThreshold().get().getBytes() <= 0) {
+            throw new ConfigException("file_size_threshold must be larger than 0");
+        }
         return fileOutputPlugin.transaction(config, taskCount, new RunnerControl(schema, task, control));
     }
 
@@ -133,7 +152,13 @@ public class FileOutputRunner
             fileOutput = tran = fileOutputPlugin.open(task.getFileOutputTaskSource(), taskIndex);
 
             fileOutput = Encoders.open(encoderPlugins, task.getEncoderTaskSources(), fileOutput);
-            output = formatterPlugin.open(task.getFormatterTaskSource(), schema, fileOutput);
+            if (task.getFileSizeThreshold().isPresent() || task.getMaxFileRecords().isPresent()) {
+                output = new RollingPageOutput(formatterPlugin, task.getFormatterTaskSource(), schema, fileOutput,
+                        task.getFileSizeThreshold().isPresent() ? task.getFileSizeThreshold().get().getBytes() : 0,
+                        task.getMaxFileRecords().or(0L));
+            } else {
+                output = formatterPlugin.open(task.getFormatterTaskSource(), schema, fileOutput);
+            }
             fileOutput = null;
 
             TransactionalPageOutput ret = new DelegateTransactionalPageOutput(tran, output);
@@ -21,6 +21,7 @@ public class PageBuilder
     private final Schema schema;
     private final int[] columnOffsets;
     private final int fixedRecordSize;
+    private final int maxRecords;
 
     private Buffer buffer;
     private Slice bufferSlice;
@@ -42,9 +43,21 @@ public class PageBuilder
         Arrays.fill(nullBitSet, (byte) -1);
         this.fixedRecordSize = PageFormat.recordHeaderSize(schema) + PageFormat.totalColumnSize(schema);
         this.nextVariableLengthDataOffset = fixedRecordSize;
+        this.maxRecords = getPreviewSampleRows();
         newBuffer();
     }
 
+    private static int getPreviewSampleRows()
+    {
+        // pages are flushed early in preview so that PreviewExecutor can stop
+        // input as soon as it gets enough records
+        ExecSession session = Exec.sessionOrNull();
+        if (session != null && session.isPreview()) {
+            return session.getPreviewSampleRows();
+        }
+        return 0;
+    }
+
     private void newBuffer()
     {
         this.buffer = allocator.allocate(PageFormat.PAGE_HEADER_SIZE + fixedRecordSize);
@@ -191,6 +204,8 @@ public class PageBuilder
         // flush if next record will not fit in this buffer
         if (buffer.capacity() < position + nextVariableLengthDataOffset + stringReferenceSize) {
             flush();
+        } else if (maxRecords > 0 && count >= maxRecords) {
+            flush();
         }
     }
 
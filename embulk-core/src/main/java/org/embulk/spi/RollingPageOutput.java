@@ -0,0 +1,239 @@
+package org.embulk.spi;
+
+import org.embulk.config.TaskSource;
+
+/**
+ * PageOutput that starts a new output file when the current file has
+ * maxFileRecords records or fileSizeThreshold bytes.
+ *
+ * To start a new file, it finishes the current output of the formatter and
+ * opens a new one on the same FileOutput so that the formatter writes
+ * headers to every file. finish() and close() called by the formatter are
+ * not forwarded to the FileOutput except for the last file.
+ *
+ * maxFileRecords is a hard limit. A page which has more records than the
+ * current file can take is split into pages at the limit.
+ *
+ * fileSizeThreshold is a soft threshold checked before a page is added.
+ * Size of a file is counted using formatted data before encoders, and data
+ * which formatters still buffer is not counted yet. So a file can be larger
+ * than the threshold by a page and the buffered data.
+ *
+ * A new file starts only when a record is added so that a file is never empty.
+ */
+class RollingPageOutput
+        implements PageOutput
+{
+    private final FormatterPlugin formatterPlugin;
+    private final TaskSource formatterTaskSource;
+    private final Schema schema;
+    private final FileOutput fileOutput;
+    private final long fileSizeThreshold;
+    private final long maxFileRecords;
+
+    private final CountingFileOutput countingOutput = new CountingFileOutput();
+    private PageOutput current;
+    private long records;
+    private boolean rolling;
+
+    // fileSizeThreshold and maxFileRecords are ignored if they are 0
+    public RollingPageOutput(FormatterPlugin formatterPlugin, TaskSource formatterTaskSource,
+            Schema schema, FileOutput fileOutput, long fileSizeThreshold, long maxFileRecords)
+    {
+        this.formatterPlugin = formatterPlugin;
+        this.formatterTaskSource = formatterTaskSource;
+        this.schema = schema;
+        this.fileOutput = fileOutput;
+        this.fileSizeThreshold = fileSizeThreshold;
+        this.maxFileRecords = maxFileRecords;
+        this.current = formatterPlugin.open(formatterTaskSource, schema, countingOutput);
+    }
+
+    @Override
+    public void add(Page page)
+    {
+        if (records > 0 && isFull()) {
+            nextFile();
+        }
+        int count = PageReader.getRecordCount(page);
+        if (maxFileRecords > 0 && records + count > maxFileRecords) {
+            splitPage(page);
+        } else {
+            records += count;
+            current.add(page);
+        }
+    }
+
+    private void splitPage(Page page)
+    {
+        try (PageReader reader = new PageReader(schema);
+                PageBuilder builder = new PageBuilder(Exec.getBufferAllocator(), schema, new CurrentPageOutput())) {
+            reader.setPage(page);
+            ColumnVisitor copier = new RecordCopier(reader, builder);
+            while (reader.nextRecord()) {
+                if (records >= maxFileRecords) {
+                    // records built so far belong to the current file
+                    builder.flush();
+                    nextFile();
+                }
+                schema.visitColumns(copier);
+                builder.addRecord();
+                records++;
+            }
+            builder.flush();
+        }
+    }
+
+    private boolean isFull()
+    {
+        return (fileSizeThreshold > 0 && countingOutput.bytes >= fileSizeThreshold) ||
+            (maxFileRecords > 0 && records >= maxFileRecords);
+    }
+
+    private void nextFile()
+    {
+        rolling = true;
+        try {
+            current.finish();
+            current.close();
+        } finally {
+            rolling = false;
+        }
+        records = 0;
+        countingOutput.bytes = 0;
+        // the formatter calls nextFile() of the FileOutput
+        current = formatterPlugin.open(formatterTaskSource, schema, countingOutput);
+    }
+
+    @Override
+    public void finish()
+    {
+        current.finish();
+    }
+
+    @Override
+    public void close()
+    {
+        current.close();
+    }
+
+    // PageBuilder of splitPage flushes pages to the formatter of the current file
+    private class CurrentPageOutput
+            implements PageOutput
+    {
+        @Override
+        public void add(Page page)
+        {
+            current.add(page);
+        }
+
+        @Override
+        public void finish()
+        {
+            // the current file is finished by nextFile() and finish() of RollingPageOutput
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    private static class RecordCopier
+            implements ColumnVisitor
+    {
+        private final PageReader reader;
+        private final PageBuilder builder;
+
+        RecordCopier(PageReader reader, PageBuilder builder)
+        {
+            this.reader = reader;
+            this.builder = builder;
+        }
+
+        @Override
+        public void booleanColumn(Column column)
+        {
+            if (reader.isNull(column)) {
+                builder.setNull(column);
+            } else {
+                builder.setBoolean(column, reader.getBoolean(column));
+            }
+        }
+
+        @Override
+        public void longColumn(Column column)
+        {
+            if (reader.isNull(column)) {
+                builder.setNull(column);
+            } else {
+                builder.setLong(column, reader.getLong(column));
+            }
+        }
+
+        @Override
+        public void doubleColumn(Column column)
+        {
+            if (reader.isNull(column)) {
+                builder.setNull(column);
+            } else {
+                builder.setDouble(column, reader.getDouble(column));
+            }
+        }
+
+        @Override
+        public void stringColumn(Column column)
+        {
+            if (reader.isNull(column)) {
+                builder.setNull(column);
+            } else {
+                builder.setString(column, reader.getString(column));
+            }
+        }
+
+        @Override
+        public void timestampColumn(Column column)
+        {
+            if (reader.isNull(column)) {
+                builder.setNull(column);
+            } else {
+                builder.setTimestamp(column, reader.getTimestamp(column));
+            }
+        }
+    }
+
+    private class CountingFileOutput
+            implements FileOutput
+    {
+        private long bytes;
+
+        @Override
+        public void nextFile()
+        {
+            fileOutput.nextFile();
+        }
+
+        @Override
+        public void add(Buffer buffer)
+        {
+            bytes += buffer.limit();
+            fileOutput.add(buffer);
+        }
+
+        @Override
+        public void finish()
+        {
+            if (!rolling) {
+                fileOutput.finish();
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            if (!rolling) {
+                fileOutput.close();
+            }
+        }
+    }
+}
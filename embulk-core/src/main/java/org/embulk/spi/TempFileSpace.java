@@ -2,7 +2,10 @@ package org.embulk.spi;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
@@ -11,16 +14,48 @@ import java.nio.file.FileVisitResult;
 import java.io.File;
 import java.io.IOException;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 
+/**
+ * Creates temporary files in one or more directories.
+ *
+ * If multiple directories are given, a directory is selected for each file
+ * in turn (ROUND_ROBIN) or by the largest usable space (FREE_SPACE). A
+ * directory is not selected if the files created in it use more than
+ * quotaBytes bytes, unless quotaBytes is 0. Sizes of files are checked
+ * when a directory is selected because files grow after they're created.
+ * Deleted files are forgotten at the check.
+ */
 public class TempFileSpace
 {
-    private final File dir;
+    public enum DirectorySelection
+    {
+        ROUND_ROBIN,
+        FREE_SPACE;
+    }
+
+    private final List<File> dirs;
+    private final DirectorySelection selection;
+    private final long quotaBytes;
+    private final List<List<File>> createdFiles;  // each list is locked by itself
+    private int nextIndex;
     private boolean dirCreated;
 
     public TempFileSpace(File dir)
     {
-        Preconditions.checkArgument(dir != null, "dir is null");
-        this.dir = dir;
+        this(ImmutableList.of(Preconditions.checkNotNull(dir, "dir is null")), DirectorySelection.ROUND_ROBIN, 0);
+    }
+
+    public TempFileSpace(List<File> dirs, DirectorySelection selection, long quotaBytes)
+    {
+        Preconditions.checkArgument(dirs != null && !dirs.isEmpty(), "dirs is empty");
+        this.dirs = ImmutableList.copyOf(dirs);
+        this.selection = selection;
+        this.quotaBytes = quotaBytes;
+        this.createdFiles = new ArrayList<List<File>>();
+        for (int i = 0; i < dirs.size(); i++) {
+            createdFiles.add(new ArrayList<File>());
+        }
     }
 
     public File createTempFile()
@@ -36,17 +71,121 @@ public class TempFileSpace
     public File createTempFile(String prefix, String fileExt)
     {
         try {
-            if (!dirCreated) {
-                dir.mkdirs();
-                dirCreated = true;
+            int index = selectDirectory();
+            File file = File.createTempFile(prefix, "."+fileExt, dirs.get(index));
+            if (quotaBytes > 0) {
+                List<File> files = createdFiles.get(index);
+                synchronized (files) {
+                    files.add(file);
+                }
             }
-            return File.createTempFile(prefix, "."+fileExt, dir);
+            return file;
         } catch (IOException ex) {
             throw new TempFileException(ex);
         }
     }
 
+    private int selectDirectory() throws IOException
+    {
+        int startIndex;
+        synchronized (this) {
+            if (!dirCreated) {
+                for (File dir : dirs) {
+                    dir.mkdirs();
+                }
+                dirCreated = true;
+            }
+            if (dirs.size() == 1 && quotaBytes <= 0) {
+                return 0;
+            }
+            startIndex = nextIndex;
+        }
+
+        int selected = -1;
+        long selectedSpace = -1;
+        for (int i = 0; i < dirs.size(); i++) {
+            int index = (startIndex + i) % dirs.size();
+            if (quotaBytes > 0 && isQuotaExceeded(index)) {
+                continue;
+            }
+            if (selection == DirectorySelection.ROUND_ROBIN) {
+                selected = index;
+                break;
+            }
+            long space = dirs.get(index).getUsableSpace();
+            if (space > selectedSpace) {
+                selected = index;
+                selectedSpace = space;
+            }
+        }
+        if (selected < 0) {
+            throw new IOException(String.format("All temporary directories %s use more than %d bytes", dirs, quotaBytes));
+        }
+        synchronized (this) {
+            nextIndex = selected + 1;
+        }
+        return selected;
+    }
+
+    private boolean isQuotaExceeded(int index)
+    {
+        List<File> files = createdFiles.get(index);
+        synchronized (files) {
+            long total = 0;
+            Iterator<File> ite = files.iterator();
+            while (ite.hasNext()) {
+                File file = ite.next();
+                // length is 0 if the file is deleted
+                long length = file.length();
+                if (length == 0 && !file.exists()) {
+                    ite.remove();
+                    continue;
+                }
+                total += length;
+                if (total >= quotaBytes) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     public void cleanup()
+    {
+        if (dirs.size() == 1) {
+            deleteDirectory(dirs.get(0));
+        } else {
+            // directories are usually on different disks
+            ExecutorService executor = Executors.newFixedThreadPool(dirs.size());
+            try {
+                for (final File dir : dirs) {
+                    executor.submit(new Runnable() {
+                        public void run()
+                        {
+                            deleteDirectory(dir);
+                        }
+                    });
+                }
+            } finally {
+                executor.shutdown();
+            }
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (List<File> files : createdFiles) {
+            synchronized (files) {
+                files.clear();
+            }
+        }
+        synchronized (this) {
+            dirCreated = false;
+        }
+    }
+
+    private void deleteDirectory(File dir)
     {
         try {
             deleteFilesIfExistsRecursively(dir);
@@ -54,7 +193,6 @@ public class TempFileSpace
         catch (IOException ex) {
             // ignore IOException
         }
-        dirCreated = false;
     }
 
     private void deleteFilesIfExistsRecursively(File dir)
@@ -0,0 +1,215 @@
+package org.embulk.spi.guess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Guesses column types of sample records.
+ *
+ * This is a Java implementation of lib/embulk/guess/schema_guess.rb. Ruby
+ * guess plugins call this class through Embulk::Guess::SchemaGuess.
+ * Columns are guessed in parallel if the sample is large.
+ */
+public class SchemaGuess
+{
+    private SchemaGuess() { }
+
+    public static class TypeMatch
+    {
+        private final String name;
+        private final String format;
+
+        public TypeMatch(String name, String format)
+        {
+            this.name = name;
+            this.format = format;
+        }
+
+        // boolean, long, double, timestamp or string
+        public String getName()
+        {
+            return name;
+        }
+
+        // strptime format if the type is timestamp. Otherwise null
+        public String getFormat()
+        {
+            return format;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof TypeMatch)) {
+                return false;
+            }
+            TypeMatch o = (TypeMatch) obj;
+            return name.equals(o.name) && Objects.equal(format, o.format);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hashCode(name, format);
+        }
+
+        @Override
+        public String toString()
+        {
+            return format == null ? name : name + "(" + format + ")";
+        }
+    }
+
+    // columns are guessed in parallel if a sample has more values than this
+    private static final int PARALLEL_THRESHOLD = 10000;
+
+    public static List<TypeMatch> typesFromArrayRecords(final List<? extends List<String>> samples)
+    {
+        int columnCount = 0;
+        int valueCount = 0;
+        for (List<String> record : samples) {
+            columnCount = Math.max(columnCount, record.size());
+            valueCount += record.size();
+        }
+
+        int threads = Math.min(columnCount, Runtime.getRuntime().availableProcessors());
+        if (valueCount <= PARALLEL_THRESHOLD || threads <= 1) {
+            ImmutableList.Builder<TypeMatch> types = ImmutableList.builder();
+            for (int i = 0; i < columnCount; i++) {
+                types.add(guessColumnType(samples, i));
+            }
+            return types.build();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<TypeMatch>> futures = new ArrayList<Future<TypeMatch>>();
+            for (int i = 0; i < columnCount; i++) {
+                final int column = i;
+                futures.add(executor.submit(new Callable<TypeMatch>() {
+                    public TypeMatch call()
+                    {
+                        return guessColumnType(samples, column);
+                    }
+                }));
+            }
+            ImmutableList.Builder<TypeMatch> types = ImmutableList.builder();
+            for (Future<TypeMatch> future : futures) {
+                types.add(future.get());
+            }
+            return types.build();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(ex);
+        } catch (ExecutionException ex) {
+            throw Throwables.propagate(ex.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static TypeMatch guessColumnType(List<? extends List<String>> samples, int column)
+    {
+        String merged = null;
+        List<String> timestamps = new ArrayList<String>();
+        for (List<String> record : samples) {
+            if (column >= record.size()) {
+                continue;
+            }
+            String value = record.get(column);
+            String type = guessType(value == null ? "" : value);
+            if (type == null) {
+                continue;
+            }
+            if (type.equals("timestamp")) {
+                timestamps.add(value);
+            }
+            merged = mergeType(merged, type);
+        }
+
+        if (merged == null) {
+            return new TypeMatch("string", null);
+        } else if (merged.equals("timestamp")) {
+            return new TypeMatch("timestamp", TimeFormatGuess.guess(timestamps));
+        } else {
+            return new TypeMatch(merged, null);
+        }
+    }
+
+    // taken from CsvParserPlugin.TRUE_STRINGS
+    private static final Set<String> TRUE_STRINGS = ImmutableSet.of(
+            "true", "True", "TRUE",
+            "yes", "Yes", "YES",
+            "t", "T", "y", "Y",
+            "on", "On", "ON");
+
+    private static final Set<String> FALSE_STRINGS = ImmutableSet.of(
+            "false", "False", "FALSE",
+            "no", "No", "NO",
+            "f", "N", "n",
+            "off", "Off", "OFF");
+
+    // same with str.to_i.to_s == str in Ruby
+    private static final Pattern INTEGER = Pattern.compile("0|-?[1-9][0-9]*");
+
+    // returns null if the value is empty
+    static String guessType(String str)
+    {
+        if (TRUE_STRINGS.contains(str) || FALSE_STRINGS.contains(str)) {
+            return "boolean";
+        }
+
+        if (TimeFormatGuess.guess(str) != null) {
+            return "timestamp";
+        }
+
+        if (INTEGER.matcher(str).matches()) {
+            return "long";
+        }
+
+        int dot = str.indexOf('.');
+        if (dot >= 0) {
+            if (INTEGER.matcher(str.substring(0, dot)).matches() &&
+                    INTEGER.matcher(str.substring(dot + 1)).matches()) {
+                return "double";
+            }
+        }
+
+        if (str.isEmpty()) {
+            return null;
+        }
+
+        return "string";
+    }
+
+    static String mergeType(String type1, String type2)
+    {
+        if (type1 == null || type2 == null) {
+            return type1 != null ? type1 : type2;
+        } else if (type1.equals(type2)) {
+            return type1;
+        } else if (isPair(type1, type2, "long", "double")) {
+            return "double";
+        } else if (isPair(type1, type2, "boolean", "long")) {
+            return "long";
+        } else {
+            return "string";
+        }
+    }
+
+    private static boolean isPair(String type1, String type2, String a, String b)
+    {
+        return (type1.equals(a) && type2.equals(b)) || (type1.equals(b) && type2.equals(a));
+    }
+}
@@ -0,0 +1,515 @@
+package org.embulk.spi.guess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Guesses strptime format of timestamp strings.
+ *
+ * This is a Java implementation of lib/embulk/guess/time_format_guess.rb.
+ * Ruby guess plugins call this class through Embulk::Guess::TimeFormatGuess.
+ */
+public class TimeFormatGuess
+{
+    private TimeFormatGuess() { }
+
+    public static String guess(String text)
+    {
+        return guess(ImmutableList.of(text));
+    }
+
+    // returns null if no texts match
+    public static String guess(List<String> texts)
+    {
+        List<Match> matches = new ArrayList<Match>();
+        for (String text : texts) {
+            if (text == null || text.isEmpty()) {
+                continue;
+            }
+            for (MatchPattern pattern : PATTERNS) {
+                Match match = pattern.match(text);
+                if (match != null) {
+                    matches.add(match);
+                }
+            }
+        }
+
+        if (matches.isEmpty()) {
+            return null;
+        } else if (matches.size() == 1) {
+            return matches.get(0).getFormat();
+        }
+
+        Map<Object, List<Match>> groups = new LinkedHashMap<Object, List<Match>>();
+        for (Match match : matches) {
+            Object key = match.getMergeableGroup();
+            List<Match> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<Match>();
+                groups.put(key, group);
+            }
+            group.add(match);
+        }
+
+        // the most frequent group. the last one wins if sizes are same
+        List<Match> best = null;
+        for (List<Match> group : groups.values()) {
+            if (best == null || group.size() >= best.size()) {
+                best = group;
+            }
+        }
+
+        Match bestMatch = best.get(0);
+        for (Match match : best.subList(1, best.size())) {
+            bestMatch.merge(match);
+        }
+        return bestMatch.getFormat();
+    }
+
+    private static String group(String regexp)
+    {
+        return "(?:" + regexp + ")";
+    }
+
+    // Ruby's ^ and $ match at beginning and end of lines
+    private static Pattern compile(String regexp)
+    {
+        return Pattern.compile(regexp, Pattern.MULTILINE | Pattern.UNIX_LINES);
+    }
+
+    private static final String YEAR = group("[1-4][0-9]{3}");
+    private static final String MONTH = group("10|11|12|[0 ]?[0-9]");
+    private static final String MONTH_NODELIM = group("10|11|12|[0][0-9]");
+    private static final String DAY = group("31|30|[1-2][0-9]|[0 ]?[1-9]");
+    private static final String DAY_NODELIM = group("31|30|[1-2][0-9]|[0][1-9]");
+    private static final String HOUR = group("20|21|22|23|24|1[0-9]|[0 ]?[0-9]");
+    private static final String HOUR_NODELIM = group("20|21|22|23|24|1[0-9]|[0][0-9]");
+    private static final String MINUTE = group("60|[1-5][0-9]|[0 ]?[0-9]");
+    private static final String MINUTE_NODELIM = group("60|[1-5][0-9]|[0][0-9]");
+    private static final String SECOND = MINUTE;
+    private static final String SECOND_NODELIM = MINUTE_NODELIM;
+
+    private static final String MONTH_NAME_SHORT = group("Jan|Feb|Mar|Apr|May|Jun|Jul|Aug|Sep|Oct|Nov|Dec");
+    private static final String WEEKDAY_NAME_SHORT = group("Sun|Mon|Tue|Wed|Thu|Fri|Sat");
+
+    private static final String ZONE_OFF = group("(?:Z|[\\-\\+]\\d\\d(?::?\\d\\d)?)");
+    private static final String ZONE_ABB = group("[A-Z]{1,3}");
+
+    private enum Part
+    {
+        YEAR, MONTH, DAY, HOUR, MINUTE, SECOND, FRAC, ZONE_OFF, ZONE_ABB;
+    }
+
+    private enum HeadingOption
+    {
+        ZERO, BLANK, NONE;
+    }
+
+    private static final List<Part> DMY_SEQUENCE = ImmutableList.of(Part.DAY, Part.MONTH, Part.YEAR);
+    private static final List<Part> MDY_SEQUENCE = ImmutableList.of(Part.MONTH, Part.DAY, Part.YEAR);
+
+    private interface Match
+    {
+        String getFormat();
+
+        // matches which have the same group are merged
+        Object getMergeableGroup();
+
+        void merge(Match anotherInGroup);
+    }
+
+    private interface MatchPattern
+    {
+        // returns null if text doesn't match
+        Match match(String text);
+    }
+
+    private static class GuessMatch
+            implements Match
+    {
+        private final List<String> delimiters;
+        private final List<Part> parts;
+        // HeadingOption, Integer (number of digits of FRAC) or null
+        private final List<Object> partOptions;
+
+        public GuessMatch(List<String> delimiters, List<Part> parts, List<Object> partOptions)
+        {
+            this.delimiters = delimiters;
+            this.parts = parts;
+            this.partOptions = partOptions;
+        }
+
+        @Override
+        public String getFormat()
+        {
+            StringBuilder format = new StringBuilder();
+            for (int i = 0; i < parts.size(); i++) {
+                if (i != 0) {
+                    format.append(delimiters.get(i - 1));
+                }
+                Object option = partOptions.get(i);
+
+                switch (parts.get(i)) {
+                case YEAR:
+                    format.append("%Y");
+                    break;
+                case MONTH:
+                    // %_m and %-m are not supported
+                    format.append("%m");
+                    break;
+                case DAY:
+                    if (option == HeadingOption.BLANK) {
+                        format.append("%e");
+                    } else {
+                        // %-d is not supported
+                        format.append("%d");
+                    }
+                    break;
+                case HOUR:
+                    if (option == HeadingOption.BLANK || option == HeadingOption.NONE) {
+                        // %-H is not supported
+                        format.append("%k");
+                    } else {
+                        format.append("%H");
+                    }
+                    break;
+                case MINUTE:
+                    // heading options are not supported
+                    format.append("%M");
+                    break;
+                case SECOND:
+                    // heading options are not supported
+                    format.append("%S");
+                    break;
+                case FRAC:
+                    if ((Integer) option <= 3) {
+                        format.append("%L");
+                    } else {
+                        format.append("%N");
+                    }
+                    break;
+                case ZONE_OFF:
+                    format.append("%z");
+                    break;
+                case ZONE_ABB:
+                    format.append("%Z");
+                    break;
+                }
+            }
+            return format.toString();
+        }
+
+        @Override
+        public Object getMergeableGroup()
+        {
+            // MDY is mergeable with DMY
+            int i = sequenceIndex(parts, DMY_SEQUENCE);
+            List<Part> ps = parts;
+            if (i >= 0) {
+                ps = new ArrayList<Part>(parts);
+                replaceSequence(ps, i, MDY_SEQUENCE);
+            }
+            return Arrays.asList(delimiters, ps);
+        }
+
+        @Override
+        public void merge(Match anotherInGroup)
+        {
+            GuessMatch another = (GuessMatch) anotherInGroup;
+            for (int i = 0; i < partOptions.size(); i++) {
+                if (partOptions.get(i) == null) {
+                    partOptions.set(i, another.partOptions.get(i));
+                }
+            }
+
+            // if DMY matches, MDY is likely false match of DMY.
+            int dmy = sequenceIndex(another.parts, DMY_SEQUENCE);
+            int mdy = sequenceIndex(parts, MDY_SEQUENCE);
+            if (mdy >= 0 && dmy >= 0) {
+                replaceSequence(parts, mdy, DMY_SEQUENCE);
+            }
+        }
+
+        private static int sequenceIndex(List<Part> parts, List<Part> sequence)
+        {
+            for (int i = 0; i + sequence.size() <= parts.size(); i++) {
+                if (parts.subList(i, i + sequence.size()).equals(sequence)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static void replaceSequence(List<Part> parts, int index, List<Part> sequence)
+        {
+            for (int i = 0; i < sequence.size(); i++) {
+                parts.set(index + i, sequence.get(i));
+            }
+        }
+    }
+
+    private static class GuessPattern
+            implements MatchPattern
+    {
+        private static final String DATE_DELIMS = group("[\\/\\-\\.]");
+
+        // yyyy-MM-dd
+        private static final String YMD = group("(?<year>" + YEAR + ")(?<dateDelim>" + DATE_DELIMS + ")(?<month>" + MONTH + ")\\k<dateDelim>(?<day>" + DAY + ")");
+        private static final String YMD_NODELIM = group("(?<year>" + YEAR + ")(?<month>" + MONTH_NODELIM + ")(?<day>" + DAY_NODELIM + ")");
+        // MM/dd/yyyy
+        private static final String MDY = group("(?<month>" + MONTH + ")(?<dateDelim>" + DATE_DELIMS + ")(?<day>" + DAY + ")\\k<dateDelim>(?<year>" + YEAR + ")");
+        private static final String MDY_NODELIM = group("(?<month>" + MONTH_NODELIM + ")(?<day>" + DAY_NODELIM + ")(?<year>" + YEAR + ")");
+        // dd.MM.yyyy
+        private static final String DMY = group("(?<day>" + DAY + ")(?<dateDelim>" + DATE_DELIMS + ")(?<month>" + MONTH + ")\\k<dateDelim>(?<year>" + YEAR + ")");
+        private static final String DMY_NODELIM = group("(?<day>" + DAY_NODELIM + ")(?<month>" + MONTH_NODELIM + ")(?<year>" + YEAR + ")");
+
+        private static final String FRAC = group("[0-9]{1,9}");
+        private static final String TIME_DELIMS = group("[\\:\\-]");
+        private static final String FRAC_DELIMS = group("[\\.\\,]");
+        private static final String TIME = group("(?<hour>" + HOUR + ")(?:(?<timeDelim>" + TIME_DELIMS + ")(?<minute>" + MINUTE + ")(?:\\k<timeDelim>(?<second>" + SECOND + ")(?:(?<fracDelim>" + FRAC_DELIMS + ")(?<frac>" + FRAC + "))?)?)?");
+        private static final String TIME_NODELIM = group("(?<hour>" + HOUR_NODELIM + ")(?:(?<minute>" + MINUTE_NODELIM + ")((?<second>" + SECOND_NODELIM + ")(?:(?<fracDelim>" + FRAC_DELIMS + ")(?<frac>" + FRAC + "))?)?)?");
+
+        private static final String ZONE = group("(?<zoneSpace> )?(?<zone>(?<zoneOff>" + ZONE_OFF + ")|(?<zoneAbb>" + ZONE_ABB + "))");
+
+        private static final String DATE_TIME_DELIMS = group("(:? |_|T|\\. ?)");
+
+        private static final Pattern YMD_PATTERN = compile("^" + YMD + "(?<rest>.*?)$");
+        private static final Pattern YMD_NODELIM_PATTERN = compile("^" + YMD_NODELIM + "(?<rest>.*?)$");
+        private static final Pattern MDY_PATTERN = compile("^" + MDY + "(?<rest>.*?)$");
+        private static final Pattern MDY_NODELIM_PATTERN = compile("^" + MDY_NODELIM + "(?<rest>.*?)$");
+        private static final Pattern DMY_PATTERN = compile("^" + DMY + "(?<rest>.*?)$");
+        private static final Pattern DMY_NODELIM_PATTERN = compile("^" + DMY_NODELIM + "(?<rest>.*?)$");
+
+        private static final Pattern TIME_PATTERN = compile("^(?<dateTimeDelim>" + DATE_TIME_DELIMS + ")" + TIME + "(?<rest>.*?)?$");
+        private static final Pattern TIME_NODELIM_PATTERN = compile("^(?<dateTimeDelim>" + DATE_TIME_DELIMS + ")" + TIME_NODELIM + "(?<rest>.*?)?$");
+        private static final Pattern TIME_NODELIM_NO_DATE_TIME_DELIM_PATTERN = compile("^" + TIME_NODELIM + "(?<rest>.*?)?$");
+
+        private static final Pattern ZONE_PATTERN = compile("^" + ZONE + "$");
+        private static final Pattern BLANK_PATTERN = compile("^\\s*$");
+
+        @Override
+        public Match match(String text)
+        {
+            List<String> delimiters = new ArrayList<String>();
+            List<Part> parts = new ArrayList<Part>();
+            List<Object> partOptions = new ArrayList<Object>();
+
+            Matcher dm;
+            String dateDelim;
+            if ((dm = find(YMD_PATTERN, text)) != null || (dm = find(YMD_NODELIM_PATTERN, text)) != null) {
+                dateDelim = (dm.pattern() == YMD_PATTERN ? dm.group("dateDelim") : "");
+
+                parts.add(Part.YEAR);
+                partOptions.add(null);
+
+                delimiters.add(dateDelim);
+                parts.add(Part.MONTH);
+                partOptions.add(partHeadingOption(dm.group("month")));
+
+                delimiters.add(dateDelim);
+                parts.add(Part.DAY);
+                partOptions.add(partHeadingOption(dm.group("day")));
+
+            } else if ((dm = find(MDY_PATTERN, text)) != null || (dm = find(MDY_NODELIM_PATTERN, text)) != null) {
+                dateDelim = (dm.pattern() == MDY_PATTERN ? dm.group("dateDelim") : "");
+
+                parts.add(Part.MONTH);
+                partOptions.add(partHeadingOption(dm.group("month")));
+
+                delimiters.add(dateDelim);
+                parts.add(Part.DAY);
+                partOptions.add(partHeadingOption(dm.group("day")));
+
+                delimiters.add(dateDelim);
+                parts.add(Part.YEAR);
+                partOptions.add(null);
+
+            } else if ((dm = find(DMY_PATTERN, text)) != null || (dm = find(DMY_NODELIM_PATTERN, text)) != null) {
+                dateDelim = (dm.pattern() == DMY_PATTERN ? dm.group("dateDelim") : "");
+
+                parts.add(Part.DAY);
+                partOptions.add(partHeadingOption(dm.group("day")));
+
+                delimiters.add(dateDelim);
+                parts.add(Part.MONTH);
+                partOptions.add(partHeadingOption(dm.group("month")));
+
+                delimiters.add(dateDelim);
+                parts.add(Part.YEAR);
+                partOptions.add(null);
+
+            } else {
+                return null;
+            }
+            String rest = dm.group("rest");
+
+            Matcher tm;
+            if ((tm = find(TIME_PATTERN, rest)) != null ||
+                    (tm = find(TIME_NODELIM_PATTERN, rest)) != null ||
+                    (dateDelim.isEmpty() && (tm = find(TIME_NODELIM_NO_DATE_TIME_DELIM_PATTERN, rest)) != null)) {
+                String dateTimeDelim = (tm.pattern() == TIME_NODELIM_NO_DATE_TIME_DELIM_PATTERN ? "" : tm.group("dateTimeDelim"));
+                String timeDelim = (tm.pattern() == TIME_PATTERN ? tm.group("timeDelim") : "");
+
+                delimiters.add(dateTimeDelim);
+                parts.add(Part.HOUR);
+                partOptions.add(partHeadingOption(tm.group("hour")));
+
+                if (tm.group("minute") != null) {
+                    delimiters.add(timeDelim);
+                    parts.add(Part.MINUTE);
+                    partOptions.add(partHeadingOption(tm.group("minute")));
+
+                    if (tm.group("second") != null) {
+                        delimiters.add(timeDelim);
+                        parts.add(Part.SECOND);
+                        partOptions.add(partHeadingOption(tm.group("second")));
+
+                        if (tm.group("frac") != null) {
+                            delimiters.add(tm.group("fracDelim"));
+                            parts.add(Part.FRAC);
+                            partOptions.add(tm.group("frac").length());
+                        }
+                    }
+                }
+
+                rest = (tm.group("rest") == null ? "" : tm.group("rest"));
+            }
+
+            Matcher zm;
+            if ((zm = find(ZONE_PATTERN, rest)) != null) {
+                delimiters.add(zm.group("zoneSpace") == null ? "" : zm.group("zoneSpace"));
+                if (zm.group("zoneOff") != null) {
+                    parts.add(Part.ZONE_OFF);
+                } else {
+                    parts.add(Part.ZONE_ABB);
+                }
+                partOptions.add(null);
+                return new GuessMatch(delimiters, parts, partOptions);
+
+            } else if (rest.isEmpty() || BLANK_PATTERN.matcher(rest).find()) {
+                // ^ of Java doesn't match empty input in MULTILINE mode
+                return new GuessMatch(delimiters, parts, partOptions);
+
+            } else {
+                return null;
+            }
+        }
+
+        private static Matcher find(Pattern pattern, String text)
+        {
+            Matcher m = pattern.matcher(text);
+            return m.find() ? m : null;
+        }
+
+        private static HeadingOption partHeadingOption(String text)
+        {
+            if (text.charAt(0) == '0') {
+                return HeadingOption.ZERO;
+            } else if (text.charAt(0) == ' ') {
+                return HeadingOption.BLANK;
+            } else if (text.length() == 1) {
+                return HeadingOption.NONE;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    private static class SimpleMatch
+            implements Match
+    {
+        private final String format;
+
+        public SimpleMatch(String format)
+        {
+            this.format = format;
+        }
+
+        @Override
+        public String getFormat()
+        {
+            return format;
+        }
+
+        @Override
+        public Object getMergeableGroup()
+        {
+            return format;
+        }
+
+        @Override
+        public void merge(Match anotherInGroup)
+        { }
+    }
+
+    private static class Rfc2822Pattern
+            implements MatchPattern
+    {
+        private static final Pattern PATTERN = compile("^(?<weekday>" + WEEKDAY_NAME_SHORT + ", )?\\d\\d " + MONTH_NAME_SHORT + " \\d\\d\\d\\d(?<time> \\d\\d:\\d\\d(?<second>:\\d\\d)? (?:(?<zoneOff>" + ZONE_OFF + ")|(?<zoneAbb>" + ZONE_ABB + ")))?$");
+
+        @Override
+        public Match match(String text)
+        {
+            Matcher m = PATTERN.matcher(text);
+            if (!m.find()) {
+                return null;
+            }
+            StringBuilder format = new StringBuilder();
+            if (m.group("weekday") != null) {
+                format.append("%a, ");
+            }
+            format.append("%d %b %Y");
+            if (m.group("time") != null) {
+                format.append(" %H:%M");
+            }
+            if (m.group("second") != null) {
+                format.append(":%S");
+            }
+            if (m.group("zoneOff") != null) {
+                format.append(" %z");
+            }
+            if (m.group("zoneAbb") != null) {
+                format.append(" %Z");
+            }
+            return new SimpleMatch(format.toString());
+        }
+    }
+
+    private static class RegexpPattern
+            implements MatchPattern
+    {
+        private final Pattern pattern;
+        private final SimpleMatch match;
+
+        public RegexpPattern(String regexp, String format)
+        {
+            this.pattern = compile(regexp);
+            this.match = new SimpleMatch(format);
+        }
+
+        @Override
+        public Match match(String text)
+        {
+            if (pattern.matcher(text).find()) {
+                return match;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    private static final String APACHE_CLF = "^\\d\\d\\/" + MONTH_NAME_SHORT + "\\/\\d\\d\\d\\d:\\d\\d:\\d\\d:\\d\\d " + ZONE_OFF + "?$";
+    private static final String ANSI_C_ASCTIME = "^" + WEEKDAY_NAME_SHORT + " " + MONTH_NAME_SHORT + " \\d\\d? \\d\\d:\\d\\d:\\d\\d \\d\\d\\d\\d$";
+
+    private static final List<MatchPattern> PATTERNS = ImmutableList.of(
+            new GuessPattern(),
+            new Rfc2822Pattern(),
+            new RegexpPattern(APACHE_CLF, "%d/%b/%Y:%H:%M:%S %z"),
+            new RegexpPattern(ANSI_C_ASCTIME, "%a %b %e %H:%M:%S %Y"));
+}
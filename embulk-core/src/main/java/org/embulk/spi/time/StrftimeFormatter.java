@@ -0,0 +1,263 @@
+package org.embulk.spi.time;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * Pure-Java formatter for a subset of strftime formats.
+ *
+ * It accepts %Y, %m, %d, %H, %M, %S, %L, %N, %&lt;width&gt;N, %s, %z, %:z,
+ * %%, literal characters and %Z if the time zone is UTC or a fixed offset. Output is
+ * the same with RubyDateFormat. format appends to a given StringBuilder without
+ * allocating objects, and returns false without appending anything for values
+ * out of the supported range (years before 1000 or after 9999) so that callers
+ * can fall back to RubyDateFormat.
+ *
+ * Instances cache the UTC offset of the last hour and are not thread-safe.
+ */
+class StrftimeFormatter
+{
+    private static final int YEAR = 0;
+    private static final int MONTH = 1;
+    private static final int DAY = 2;
+    private static final int HOUR = 3;
+    private static final int MINUTE = 4;
+    private static final int SECOND = 5;
+    private static final int FRACTION = 6;
+    private static final int EPOCH_SECOND = 7;
+    private static final int OFFSET = 8;
+    private static final int OFFSET_COLON = 9;
+    private static final int LITERAL = 10;
+    private static final int STRING = 11;
+
+    private static final int[] POWERS_OF_TEN = {
+        1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000,
+    };
+
+    private final int[] ops;
+    private final char[] literals;
+    private final int[] widths;
+    private final String zoneName;
+    private final DateTimeZone timeZone;
+
+    private long offsetCacheHour = Long.MIN_VALUE;
+    private int offsetCacheSecond;
+
+    private StrftimeFormatter(int[] ops, char[] literals, int[] widths, String zoneName, DateTimeZone timeZone)
+    {
+        this.ops = ops;
+        this.literals = literals;
+        this.widths = widths;
+        this.zoneName = zoneName;
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Returns null if the format includes a directive out of the supported subset.
+     */
+    public static StrftimeFormatter compile(String format, DateTimeZone timeZone)
+    {
+        int[] ops = new int[format.length()];
+        char[] literals = new char[format.length()];
+        int[] widths = new int[format.length()];
+        String zoneName = null;
+        int n = 0;
+        for (int i = 0; i < format.length(); i++) {
+            char c = format.charAt(i);
+            if (c != '%') {
+                ops[n] = LITERAL;
+                literals[n] = c;
+                n++;
+                continue;
+            }
+            i++;
+            int width = 0;
+            int widthBegin = i;
+            while (i < format.length() && '0' <= format.charAt(i) && format.charAt(i) <= '9') {
+                width = width * 10 + (format.charAt(i) - '0');
+                i++;
+            }
+            boolean hasWidth = i > widthBegin;
+            if (i >= format.length() || (hasWidth && (format.charAt(i) != 'N' || width < 1 || width > 9))) {
+                // widths of other directives and paddings longer than 9 digits are left to RubyDateFormat
+                return null;
+            }
+            switch (format.charAt(i)) {
+            case 'Y':
+                ops[n] = YEAR;
+                break;
+            case 'm':
+                ops[n] = MONTH;
+                break;
+            case 'd':
+                ops[n] = DAY;
+                break;
+            case 'H':
+                ops[n] = HOUR;
+                break;
+            case 'M':
+                ops[n] = MINUTE;
+                break;
+            case 'S':
+                ops[n] = SECOND;
+                break;
+            case 'L':
+                ops[n] = FRACTION;
+                widths[n] = 3;
+                break;
+            case 'N':
+                ops[n] = FRACTION;
+                widths[n] = width > 0 ? width : 9;
+                break;
+            case 's':
+                ops[n] = EPOCH_SECOND;
+                break;
+            case 'z':
+                ops[n] = OFFSET;
+                break;
+            case ':':
+                if (i + 1 >= format.length() || format.charAt(i + 1) != 'z') {
+                    return null;
+                }
+                i++;
+                ops[n] = OFFSET_COLON;
+                break;
+            case 'Z':
+                if (timeZone == DateTimeZone.UTC) {
+                    zoneName = "UTC";
+                } else if (timeZone.isFixed() && (timeZone.getID().startsWith("+") || timeZone.getID().startsWith("-"))) {
+                    zoneName = timeZone.getID();
+                } else {
+                    // short names of DST-aware zones depend on the instant
+                    return null;
+                }
+                ops[n] = STRING;
+                break;
+            case '%':
+                ops[n] = LITERAL;
+                literals[n] = '%';
+                break;
+            default:
+                return null;
+            }
+            n++;
+        }
+        int[] compactOps = new int[n];
+        char[] compactLiterals = new char[n];
+        int[] compactWidths = new int[n];
+        System.arraycopy(ops, 0, compactOps, 0, n);
+        System.arraycopy(literals, 0, compactLiterals, 0, n);
+        System.arraycopy(widths, 0, compactWidths, 0, n);
+        return new StrftimeFormatter(compactOps, compactLiterals, compactWidths, zoneName, timeZone);
+    }
+
+    public boolean format(long epochSecond, int nano, StringBuilder sb)
+    {
+        if (nano < 0) {
+            return false;
+        }
+        long hour = floorDiv(epochSecond, 3600);
+        int offset;
+        if (hour == offsetCacheHour) {
+            offset = offsetCacheSecond;
+        } else {
+            long millis = epochSecond * 1000;
+            int offsetMillis = timeZone.getOffset(millis);
+            if (offsetMillis % 1000 != 0) {
+                return false;
+            }
+            offset = offsetMillis / 1000;
+            long hourBegin = hour * 3600 * 1000;
+            long hourEnd = hourBegin + 3600 * 1000;
+            if (timeZone.isFixed() || (timeZone.getOffset(hourBegin) == offsetMillis && timeZone.nextTransition(hourBegin) >= hourEnd)) {
+                offsetCacheHour = hour;
+                offsetCacheSecond = offset;
+            }
+        }
+
+        long localSecond = epochSecond + offset;
+        long days = floorDiv(localSecond, 86400);
+        int secondOfDay = (int) (localSecond - days * 86400);
+
+        // civil from days in the proleptic Gregorian calendar
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int doe = (int) (z - era * 146097);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 1000 || 9999 < year) {
+            return false;
+        }
+
+        for (int i = 0; i < ops.length; i++) {
+            switch (ops[i]) {
+            case LITERAL:
+                sb.append(literals[i]);
+                break;
+            case YEAR:
+                sb.append((int) year);
+                break;
+            case MONTH:
+                appendTwoDigits(sb, month);
+                break;
+            case DAY:
+                appendTwoDigits(sb, day);
+                break;
+            case HOUR:
+                appendTwoDigits(sb, secondOfDay / 3600);
+                break;
+            case MINUTE:
+                appendTwoDigits(sb, secondOfDay / 60 % 60);
+                break;
+            case SECOND:
+                appendTwoDigits(sb, secondOfDay % 60);
+                break;
+            case FRACTION:
+                appendDigits(sb, nano / POWERS_OF_TEN[9 - widths[i]], widths[i]);
+                break;
+            case EPOCH_SECOND:
+                sb.append(epochSecond);
+                break;
+            case OFFSET:
+            case OFFSET_COLON:
+                int abs = Math.abs(offset);
+                sb.append(offset < 0 ? '-' : '+');
+                appendTwoDigits(sb, abs / 3600);
+                if (ops[i] == OFFSET_COLON) {
+                    sb.append(':');
+                }
+                appendTwoDigits(sb, abs / 60 % 60);
+                break;
+            case STRING:
+                sb.append(zoneName);
+                break;
+            }
+        }
+        return true;
+    }
+
+    private static void appendTwoDigits(StringBuilder sb, int v)
+    {
+        sb.append((char) ('0' + v / 10));
+        sb.append((char) ('0' + v % 10));
+    }
+
+    private static void appendDigits(StringBuilder sb, int v, int width)
+    {
+        for (int i = width - 1; i >= 0; i--) {
+            sb.append((char) ('0' + v / POWERS_OF_TEN[i] % 10));
+        }
+    }
+
+    private static long floorDiv(long x, long y)
+    {
+        long q = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            q--;
+        }
+        return q;
+    }
+}
@@ -0,0 +1,442 @@
+package org.embulk.spi.time;
+
+/**
+ * Pure-Java parser for a subset of strptime formats.
+ *
+ * It accepts %Y, %m, %d, %H, %M, %S, %N, %L, %z, %Z, %% and literal characters.
+ * Parsing is strict: every numeric field must have its canonical width and the
+ * whole text must be consumed. parse returns false instead of throwing for any
+ * text outside of the subset so that callers can fall back to Date._strptime.
+ * A successful parse never disagrees with the Ruby implementation. getNano
+ * returns all of the 9 fractional digits and TimestampParser truncates them to
+ * microseconds as the Ruby implementation does.
+ *
+ * Instances keep the result of the last parse and are not thread-safe.
+ */
+class StrptimeParser
+{
+    private static final int YEAR = 0;
+    private static final int MONTH = 1;
+    private static final int DAY = 2;
+    private static final int HOUR = 3;
+    private static final int MINUTE = 4;
+    private static final int SECOND = 5;
+    private static final int FRACTION = 6;
+    private static final int ZONE = 7;
+    private static final int LITERAL = 8;
+    private static final int FIXED_YEAR = 9;
+
+    private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+    private final int[] ops;
+    private final char[] literals;
+    private final int datePrefixOps;
+
+    // date part of the last parsed text. Log-style inputs repeat it on every line
+    private String lastText;
+    private int lastPrefixEnd;
+    private int lastYear;
+    private int lastMonth;
+    private int lastDay;
+    private long parseCount;
+    private long datePrefixHitCount;
+
+    private long localSecond;
+    private int nano;
+    private boolean hasOffset;
+    private int offsetSecond;
+    private int zoneBegin;
+    private int zoneEnd;
+
+    private StrptimeParser(int[] ops, char[] literals)
+    {
+        this.ops = ops;
+        this.literals = literals;
+        this.datePrefixOps = datePrefixOps(ops);
+    }
+
+    // number of leading ops that consist of %Y, %m, %d and literals
+    private static int datePrefixOps(int[] ops)
+    {
+        int end = 0;
+        int fields = 0;
+        while (end < ops.length && (ops[end] == LITERAL || isDateOp(ops[end]))) {
+            if (ops[end] != LITERAL) {
+                fields++;
+            }
+            end++;
+        }
+        for (int i = end; i < ops.length; i++) {
+            if (isDateOp(ops[i])) {
+                return 0;
+            }
+        }
+        return fields == 3 ? end : 0;
+    }
+
+    private static boolean isDateOp(int op)
+    {
+        return op == YEAR || op == FIXED_YEAR || op == MONTH || op == DAY;
+    }
+
+    /**
+     * Returns null if the format includes a directive out of the supported subset.
+     */
+    public static StrptimeParser compile(String format)
+    {
+        int[] ops = new int[format.length()];
+        char[] literals = new char[format.length()];
+        int n = 0;
+        boolean hasZone = false;
+        for (int i = 0; i < format.length(); i++) {
+            char c = format.charAt(i);
+            if (c != '%') {
+                ops[n] = LITERAL;
+                literals[n] = c;
+                n++;
+                continue;
+            }
+            i++;
+            if (i >= format.length()) {
+                return null;
+            }
+            switch (format.charAt(i)) {
+            case 'Y':
+                ops[n] = YEAR;
+                break;
+            case 'm':
+                ops[n] = MONTH;
+                break;
+            case 'd':
+                ops[n] = DAY;
+                break;
+            case 'H':
+                ops[n] = HOUR;
+                break;
+            case 'M':
+                ops[n] = MINUTE;
+                break;
+            case 'S':
+                ops[n] = SECOND;
+                break;
+            case 'N':
+            case 'L':
+                ops[n] = FRACTION;
+                break;
+            case 'z':
+            case 'Z':
+                if (hasZone) {
+                    return null;
+                }
+                hasZone = true;
+                ops[n] = ZONE;
+                break;
+            case '%':
+                ops[n] = LITERAL;
+                literals[n] = '%';
+                break;
+            default:
+                return null;
+            }
+            n++;
+        }
+        boolean[] beforeNumber = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            // Date._strptime limits the width of %Y and %N only if the next directive
+            // is numeric (num_pattern?). Otherwise %Y and %N consume all digits.
+            beforeNumber[i] = i + 1 < n && (
+                    (ops[i + 1] != LITERAL && ops[i + 1] != ZONE) ||
+                    (ops[i + 1] == LITERAL && isDigit(literals[i + 1])));
+            if (ops[i] == FRACTION && beforeNumber[i]) {
+                return null;
+            }
+            // Date._strptime matches a whitespace in the format with any number of
+            // whitespaces. Exact match is equivalent only for a single space.
+            if (ops[i] == LITERAL && Character.isWhitespace(literals[i]) && literals[i] != ' ') {
+                return null;
+            }
+        }
+        int[] compactOps = new int[n];
+        char[] compactLiterals = new char[n];
+        System.arraycopy(ops, 0, compactOps, 0, n);
+        System.arraycopy(literals, 0, compactLiterals, 0, n);
+        for (int i = 0; i < n; i++) {
+            if (compactOps[i] == YEAR && beforeNumber[i]) {
+                compactOps[i] = FIXED_YEAR;
+            }
+        }
+        return new StrptimeParser(compactOps, compactLiterals);
+    }
+
+    public boolean parse(String text)
+    {
+        int year = 1970;
+        int month = 1;
+        int day = 1;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int fraction = 0;
+        hasOffset = false;
+        zoneBegin = -1;
+        zoneEnd = -1;
+
+        final int length = text.length();
+        int pos = 0;
+        int i = 0;
+        parseCount++;
+        if (lastText != null && text.regionMatches(0, lastText, 0, lastPrefixEnd)) {
+            // same date as the last text. parse only the time part
+            datePrefixHitCount++;
+            year = lastYear;
+            month = lastMonth;
+            day = lastDay;
+            pos = lastPrefixEnd;
+            i = datePrefixOps;
+        }
+        for (; i < ops.length; i++) {
+            switch (ops[i]) {
+            case LITERAL:
+                if (pos >= length || text.charAt(pos) != literals[i]) {
+                    return false;
+                }
+                pos++;
+                break;
+
+            case YEAR:
+            case FIXED_YEAR:
+                year = parseDigits(text, pos, 4);
+                if (year < 1970) {
+                    // pre-epoch fractions are represented differently by the Ruby helper
+                    return false;
+                }
+                pos += 4;
+                if (ops[i] == YEAR && pos < length && isDigit(text.charAt(pos))) {
+                    return false;
+                }
+                break;
+
+            case MONTH:
+            case DAY:
+            case HOUR:
+            case MINUTE:
+            case SECOND:
+                // Date._strptime consumes at most 2 digits regardless of the next character
+                int v = parseDigits(text, pos, 2);
+                if (v < 0) {
+                    return false;
+                }
+                pos += 2;
+                switch (ops[i]) {
+                case MONTH:
+                    month = v;
+                    break;
+                case DAY:
+                    day = v;
+                    break;
+                case HOUR:
+                    hour = v;
+                    break;
+                case MINUTE:
+                    minute = v;
+                    break;
+                default:
+                    second = v;
+                    break;
+                }
+                break;
+
+            case FRACTION:
+                int begin = pos;
+                fraction = 0;
+                while (pos < length && isDigit(text.charAt(pos))) {
+                    if (pos - begin < 9) {
+                        fraction = fraction * 10 + (text.charAt(pos) - '0');
+                    }
+                    pos++;
+                }
+                if (pos == begin) {
+                    return false;
+                }
+                for (int d = pos - begin; d < 9; d++) {
+                    fraction *= 10;
+                }
+                break;
+
+            case ZONE:
+                pos = parseZone(text, pos);
+                if (pos < 0) {
+                    return false;
+                }
+                break;
+            }
+            if (i + 1 == datePrefixOps) {
+                lastText = text;
+                lastPrefixEnd = pos;
+                lastYear = year;
+                lastMonth = month;
+                lastDay = day;
+            }
+        }
+        if (pos != length) {
+            return false;
+        }
+
+        if (month < 1 || 12 < month || day < 1 || 23 < hour || 59 < minute || 59 < second) {
+            return false;
+        }
+        int monthDays = DAYS_IN_MONTH[month - 1];
+        if (month == 2 && isLeapYear(year)) {
+            monthDays = 29;
+        }
+        if (day > monthDays) {
+            return false;
+        }
+
+        localSecond = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+        nano = fraction;
+        return true;
+    }
+
+    public long getParseCount()
+    {
+        return parseCount;
+    }
+
+    public long getDatePrefixHitCount()
+    {
+        return datePrefixHitCount;
+    }
+
+    public long getLocalSecond()
+    {
+        return localSecond;
+    }
+
+    public int getNano()
+    {
+        return nano;
+    }
+
+    /**
+     * True if the last parsed text included a numeric UTC offset.
+     */
+    public boolean hasOffset()
+    {
+        return hasOffset;
+    }
+
+    public int getOffsetSecond()
+    {
+        return offsetSecond;
+    }
+
+    /**
+     * True if the last parsed text included a time zone name such as "UTC" or "PST".
+     */
+    public boolean hasZoneName()
+    {
+        return zoneBegin >= 0;
+    }
+
+    public int getZoneNameBegin()
+    {
+        return zoneBegin;
+    }
+
+    public int getZoneNameEnd()
+    {
+        return zoneEnd;
+    }
+
+    private int parseZone(String text, int pos)
+    {
+        final int length = text.length();
+        if (pos >= length) {
+            return -1;
+        }
+        char c = text.charAt(pos);
+        if (c == '+' || c == '-') {
+            // +HH:MM or +HHMM
+            int h = parseDigits(text, pos + 1, 2);
+            if (h < 0 || 23 < h) {
+                return -1;
+            }
+            int p = pos + 3;
+            if (p < length && text.charAt(p) == ':') {
+                p++;
+            }
+            int m = parseDigits(text, p, 2);
+            if (m < 0 || 59 < m) {
+                return -1;
+            }
+            p += 2;
+            if (p < length && (isDigit(text.charAt(p)) || text.charAt(p) == ':' || text.charAt(p) == ',' || text.charAt(p) == '.')) {
+                return -1;
+            }
+            hasOffset = true;
+            offsetSecond = (h * 3600 + m * 60) * (c == '-' ? -1 : 1);
+            return p;
+        }
+
+        int p = pos;
+        while (p < length && isAsciiAlpha(text.charAt(p))) {
+            p++;
+        }
+        if (p == pos || (p < length && !isZoneNameTerminator(text.charAt(p)))) {
+            return -1;
+        }
+        zoneBegin = pos;
+        zoneEnd = p;
+        return p;
+    }
+
+    private static boolean isZoneNameTerminator(char c)
+    {
+        // zone names followed by "+9", " dst", " standard time", etc. are
+        // left to the Ruby implementation
+        return c != '+' && c != '-' && c != ' ' && c != '.' && c != '_' && !Character.isLetterOrDigit(c);
+    }
+
+    private static int parseDigits(String text, int pos, int width)
+    {
+        if (pos + width > text.length()) {
+            return -1;
+        }
+        int v = 0;
+        for (int i = pos; i < pos + width; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return '0' <= c && c <= '9';
+    }
+
+    private static boolean isAsciiAlpha(char c)
+    {
+        return ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z');
+    }
+
+    private static boolean isLeapYear(int year)
+    {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    // days since 1970-01-01 in the proleptic Gregorian calendar
+    static long daysFromCivil(int year, int month, int day)
+    {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097L + doe - 719468;
+    }
+}
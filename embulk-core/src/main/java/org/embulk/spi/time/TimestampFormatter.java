@@ -52,7 +52,9 @@ public class TimestampFormatter
     }
 
     private final RubyDateFormat dateFormat;
+    private final StrftimeFormatter strftime;
     private final DateTimeZone timeZone;
+    private final StringBuilder buffer = new StringBuilder();
 
     @Deprecated
     public TimestampFormatter(String format, FormatterTask task)
@@ -75,6 +77,7 @@ public class TimestampFormatter
     {
         this.timeZone = timeZone;
         this.dateFormat = new RubyDateFormat(format, Locale.ENGLISH, true);
+        this.strftime = StrftimeFormatter.compile(format, timeZone);
     }
 
     public DateTimeZone getTimeZone()
@@ -84,13 +87,27 @@ public class TimestampFormatter
 
     public void format(Timestamp value, LineEncoder encoder)
     {
-        // TODO optimize by directly appending to internal buffer
-        encoder.addText(format(value));
+        buffer.setLength(0);
+        format(value, buffer);
+        encoder.addText(buffer);
+    }
+
+    public void format(Timestamp value, StringBuilder sb)
+    {
+        if (strftime == null || !strftime.format(value.getEpochSecond(), value.getNano(), sb)) {
+            sb.append(formatWithRubyDateFormat(value));
+        }
     }
 
     public String format(Timestamp value)
     {
-        // TODO optimize by using reused StringBuilder
+        buffer.setLength(0);
+        format(value, buffer);
+        return buffer.toString();
+    }
+
+    private String formatWithRubyDateFormat(Timestamp value)
+    {
         dateFormat.setDateTime(new DateTime(value.getEpochSecond()*1000, timeZone));
         dateFormat.setNSec(value.getNano());
         return dateFormat.format(null);
@@ -1,8 +1,11 @@
 package org.embulk.spi.time;
 
+import java.util.Map;
+import java.util.HashMap;
 import org.joda.time.DateTimeZone;
 import com.google.common.base.Optional;
 import org.jruby.embed.ScriptingContainer;
+import org.embulk.jruby.JRubyInitializer;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigInject;
 import org.embulk.config.ConfigDefault;
@@ -48,8 +51,27 @@ public class TimestampParser
         public Optional<String> getFormat();
     }
 
-    private final JRubyTimeParserHelper helper;
+    private static final int MAX_ZONE_CACHE_SIZE = 256;
+
+    private final ScriptingContainer jruby;
+    private final String format;
+    private final StrptimeParser strptime;
     private final DateTimeZone defaultTimeZone;
+    private JRubyTimeParserHelper helper;
+
+    // resolved time zones for each zone name in the text
+    private final Map<String, DateTimeZone> zoneCache = new HashMap<String, DateTimeZone>();
+    private String lastZoneName;
+    private DateTimeZone lastZone;
+    private long zoneLookupCount;
+    private long zoneHitCount;
+
+    // UTC offset of the last local hour. Valid only if the offset doesn't change in the hour
+    private DateTimeZone offsetCacheZone;
+    private long offsetCacheLocalHour;
+    private long offsetCacheSecond;
+    private long offsetLookupCount;
+    private long offsetHitCount;
 
     @Deprecated
     public TimestampParser(String format, ParserTask task)
@@ -71,10 +93,20 @@ public class TimestampParser
 
     public TimestampParser(ScriptingContainer jruby, String format, DateTimeZone defaultTimeZone)
     {
-        JRubyTimeParserHelperFactory helperFactory = (JRubyTimeParserHelperFactory) jruby.runScriptlet("Embulk::Java::TimeParserHelper::Factory.new");
-        // TODO get default current time from ExecTask.getExecTimestamp
-        this.helper = (JRubyTimeParserHelper) helperFactory.newInstance(format, 1970, 1, 1, 0, 0, 0, 0);  // TODO default time zone
+        this.jruby = jruby;
+        this.format = format;
+        this.strptime = StrptimeParser.compile(format);
         this.defaultTimeZone = defaultTimeZone;
+        if (strptime == null) {
+            this.helper = newHelper();
+        }
+    }
+
+    private JRubyTimeParserHelper newHelper()
+    {
+        JRubyTimeParserHelperFactory helperFactory = (JRubyTimeParserHelperFactory) JRubyInitializer.initialize(jruby).runScriptlet("Embulk::Java::TimeParserHelper::Factory.new");
+        // TODO get default current time from ExecTask.getExecTimestamp
+        return (JRubyTimeParserHelper) helperFactory.newInstance(format, 1970, 1, 1, 0, 0, 0, 0);  // TODO default time zone
     }
 
     public DateTimeZone getDefaultTimeZone()
@@ -84,22 +116,128 @@ public class TimestampParser
 
     public Timestamp parse(String text) throws TimestampParseException
     {
+        if (strptime != null && strptime.parse(text)) {
+            return parseFast(text);
+        }
+        // text doesn't match the subset of StrptimeParser. Date._strptime
+        // parses it or reports the error.
+        return parseWithHelper(text);
+    }
+
+    private Timestamp parseFast(String text) throws TimestampParseException
+    {
+        long localSec = strptime.getLocalSecond();
+        long sec;
+        if (strptime.hasOffset()) {
+            sec = localSec - strptime.getOffsetSecond();
+        } else {
+            DateTimeZone timeZone = defaultTimeZone;
+            if (strptime.hasZoneName()) {
+                timeZone = lookupZone(text, strptime.getZoneNameBegin(), strptime.getZoneNameEnd());
+            }
+            sec = convertLocalToUTC(timeZone, localSec);
+        }
+        // the Ruby helper returns microseconds. truncate so that the result doesn't
+        // depend on which path parsed the text
+        return Timestamp.ofEpochSecond(sec, strptime.getNano() / 1000 * 1000);
+    }
+
+    private Timestamp parseWithHelper(String text) throws TimestampParseException
+    {
+        if (helper == null) {
+            helper = newHelper();
+        }
         long localUsec = helper.strptimeUsec(text);
         String zone = helper.getZone();
 
         DateTimeZone timeZone = defaultTimeZone;
         if (zone != null) {
-            // TODO cache parsed zone?
-            timeZone = parseDateTimeZone(zone);
-            if (timeZone == null) {
-                throw new TimestampParseException("Invalid time zone name '" + text + "'");
-            }
+            timeZone = lookupZone(zone, 0, zone.length());
         }
 
         long localSec = localUsec / 1000000;
         long usec = localUsec % 1000000;
-        long sec = timeZone.convertLocalToUTC(localSec*1000, false) / 1000;
+        long sec = convertLocalToUTC(timeZone, localSec);
 
         return Timestamp.ofEpochSecond(sec, usec * 1000);
     }
+
+    private DateTimeZone lookupZone(String text, int begin, int end) throws TimestampParseException
+    {
+        zoneLookupCount++;
+        if (lastZoneName != null && lastZoneName.length() == end - begin &&
+                text.regionMatches(begin, lastZoneName, 0, end - begin)) {
+            zoneHitCount++;
+            return lastZone;
+        }
+        String name = text.substring(begin, end);
+        DateTimeZone zone = zoneCache.get(name);
+        if (zone != null) {
+            zoneHitCount++;
+        } else {
+            zone = parseDateTimeZone(name);
+            if (zone == null) {
+                throw new TimestampParseException("Invalid time zone name '" + text + "'");
+            }
+            if (zoneCache.size() >= MAX_ZONE_CACHE_SIZE) {
+                zoneCache.clear();
+            }
+            zoneCache.put(name, zone);
+        }
+        lastZoneName = name;
+        lastZone = zone;
+        return zone;
+    }
+
+    private long convertLocalToUTC(DateTimeZone timeZone, long localSec)
+    {
+        offsetLookupCount++;
+        long localHour = localSec >= 0 ? localSec / 3600 : (localSec - 3599) / 3600;
+        if (timeZone == offsetCacheZone && localHour == offsetCacheLocalHour) {
+            offsetHitCount++;
+            return localSec - offsetCacheSecond;
+        }
+
+        long sec = timeZone.convertLocalToUTC(localSec*1000, false) / 1000;
+
+        long hourBeginMillis = localHour * 3600 * 1000;
+        long utcBegin = timeZone.convertLocalToUTC(hourBeginMillis, false);
+        long utcEnd = timeZone.convertLocalToUTC(hourBeginMillis + 3600 * 1000 - 1, false);
+        long offsetMillis = hourBeginMillis - utcBegin;
+        if (offsetMillis % 1000 == 0 && localSec - sec == offsetMillis / 1000 &&
+                (timeZone.isFixed() || timeZone.nextTransition(utcBegin) > utcEnd)) {
+            offsetCacheZone = timeZone;
+            offsetCacheLocalHour = localHour;
+            offsetCacheSecond = offsetMillis / 1000;
+        } else {
+            offsetCacheZone = null;
+        }
+        return sec;
+    }
+
+    /**
+     * Ratio of texts whose date part was the same as the previous text and skipped.
+     */
+    public double getDatePrefixCacheHitRatio()
+    {
+        if (strptime == null) {
+            return 0.0;
+        }
+        return ratio(strptime.getDatePrefixHitCount(), strptime.getParseCount());
+    }
+
+    public double getZoneCacheHitRatio()
+    {
+        return ratio(zoneHitCount, zoneLookupCount);
+    }
+
+    public double getOffsetCacheHitRatio()
+    {
+        return ratio(offsetHitCount, offsetLookupCount);
+    }
+
+    private static double ratio(long hits, long total)
+    {
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
 }
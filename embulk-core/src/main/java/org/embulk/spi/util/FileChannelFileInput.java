@@ -0,0 +1,189 @@
+package org.embulk.spi.util;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.BufferAllocator;
+
+/**
+ * FileInput that reads a local file using NIO.
+ *
+ * With CHANNEL mode, it reads large blocks into a direct buffer so that the
+ * number of read system calls is smaller than reading pooled buffers from an
+ * InputStream. With MMAP mode, it maps regions of the file to memory and
+ * doesn't issue read system calls at all. In both modes, Buffers returned by
+ * poll are allocated from the BufferAllocator and filled from the NIO buffer.
+ *
+ * MMAP mode maps regions of mapSize bytes regardless of windowSize, and
+ * unmaps each region before mapping the next one so that a large file
+ * doesn't keep thousands of mappings until they are garbage-collected.
+ */
+public class FileChannelFileInput
+        implements FileInput
+{
+    public enum Mode
+    {
+        CHANNEL,
+        MMAP;
+    }
+
+    private final BufferAllocator allocator;
+    private final Path path;
+    private final Mode mode;
+    // 128MB
+    public static final int DEFAULT_MAP_SIZE = 128 * 1024 * 1024;
+
+    private final int windowSize;
+    private final int mapSize;
+
+    private boolean opened;
+    private FileChannel channel;
+    private ByteBuffer window;
+    private long position;
+
+    public FileChannelFileInput(BufferAllocator allocator, Path path, Mode mode, int windowSize)
+    {
+        this(allocator, path, mode, windowSize, DEFAULT_MAP_SIZE);
+    }
+
+    public FileChannelFileInput(BufferAllocator allocator, Path path, Mode mode, int windowSize, int mapSize)
+    {
+        this.allocator = allocator;
+        this.path = path;
+        this.mode = mode;
+        this.windowSize = windowSize;
+        this.mapSize = mapSize;
+    }
+
+    public Buffer poll()
+    {
+        if (channel == null) {
+            throw new IllegalStateException("nextFile() must be called before poll()");
+        }
+        try {
+            if (window == null || !window.hasRemaining()) {
+                if (!fillWindow()) {
+                    return null;
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        Buffer buffer = allocator.allocate();
+        int n = Math.min(buffer.capacity(), window.remaining());
+        window.get(buffer.array(), buffer.offset(), n);
+        buffer.limit(n);
+        return buffer;
+    }
+
+    private boolean fillWindow() throws IOException
+    {
+        switch (mode) {
+        case MMAP:
+            releaseMappedWindow();
+            long size = channel.size();
+            if (position >= size) {
+                return false;
+            }
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mapSize, size - position));
+            position += window.remaining();
+            return true;
+
+        default:
+            if (window == null) {
+                window = ByteBuffer.allocateDirect(windowSize);
+            }
+            window.clear();
+            while (window.hasRemaining()) {
+                if (channel.read(window) < 0) {
+                    break;
+                }
+            }
+            window.flip();
+            return window.hasRemaining();
+        }
+    }
+
+    public boolean nextFile()
+    {
+        closeChannel();
+        if (opened) {
+            return false;
+        }
+        opened = true;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        return true;
+    }
+
+    public void close()
+    {
+        closeChannel();
+    }
+
+    private void closeChannel()
+    {
+        if (mode == Mode.MMAP) {
+            releaseMappedWindow();
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    private void releaseMappedWindow()
+    {
+        if (window != null) {
+            // Buffers returned by poll are copies. Nothing refers to the region
+            unmap(window);
+            window = null;
+        }
+    }
+
+    // unmaps a mapped region without waiting for GC. If the JVM doesn't
+    // allow it, the region is unmapped when it's garbage-collected.
+    private static void unmap(ByteBuffer buffer)
+    {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                // Java 9 or later
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException ex) {
+                invokeCleaner = null;
+            }
+            if (invokeCleaner != null) {
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } else {
+                // Java 7 and 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // left to GC
+        }
+    }
+}
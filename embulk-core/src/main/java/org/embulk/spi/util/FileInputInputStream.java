@@ -84,6 +84,46 @@ public class FileInputInputStream
         return skipped > 0 ? skipped : 0;
     }
 
+    /**
+     * Returns a Buffer of the next unread bytes of the current file without
+     * copying them, or null if no more bytes are in the current file.
+     *
+     * Ownership of the returned buffer moves to the caller. The caller must
+     * release it, or give it back using unreadBuffer(Buffer) if it doesn't
+     * consume all of the bytes.
+     */
+    public Buffer pollBuffer()
+    {
+        while (pos >= buffer.limit()) {
+            if (!nextBuffer()) {
+                return null;
+            }
+        }
+        Buffer b = buffer;
+        // limit() is relative to offset. this excludes bytes already read
+        b.offset(b.offset() + pos);
+        buffer = Buffer.EMPTY;
+        pos = 0;
+        return b;
+    }
+
+    /**
+     * Gives back a buffer returned by pollBuffer(). Bytes from buffer.offset()
+     * to buffer.offset() + buffer.limit() are read again before the next
+     * buffer. Ownership of the buffer moves back to this stream.
+     *
+     * To give back only unconsumed bytes, set buffer.offset(int) after the
+     * consumed bytes.
+     */
+    public void unreadBuffer(Buffer b)
+    {
+        if (pos < buffer.limit()) {
+            throw new IllegalStateException("unreadBuffer can't be called when bytes of a previous buffer remain");
+        }
+        releaseBuffer();
+        buffer = b;
+    }
+
     private boolean nextBuffer()
     {
         releaseBuffer();
@@ -32,6 +32,10 @@ public class FileOutputOutputStream
     public void nextFile()
     {
         out.nextFile();
+        if (buffer == Buffer.EMPTY) {
+            // close() of the previous file passed the buffer to out
+            buffer = allocator.allocate();
+        }
     }
 
     public void finish()
@@ -38,6 +38,7 @@ public class LineEncoder
     private final FileOutput underlyingFileOutput;
     private final FileOutputOutputStream outputStream;
     private Writer writer;
+    private char[] textBuffer = new char[64];
 
     public LineEncoder(FileOutput out, EncoderTask task)
     {
@@ -82,6 +83,24 @@ public class LineEncoder
         }
     }
 
+    public void addText(CharSequence text)
+    {
+        // Writer.append(CharSequence) calls toString. copies to a reused buffer instead
+        int length = text.length();
+        if (textBuffer.length < length) {
+            textBuffer = new char[Math.max(length, textBuffer.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            textBuffer[i] = text.charAt(i);
+        }
+        try {
+            writer.write(textBuffer, 0, length);
+        } catch (IOException ex) {
+            // unexpected
+            throw new RuntimeException(ex);
+        }
+    }
+
     public void nextFile()
     {
         try {
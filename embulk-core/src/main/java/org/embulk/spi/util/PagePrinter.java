@@ -2,18 +2,17 @@ package org.embulk.spi.util;
 
 import java.util.List;
 import java.util.ArrayList;
-import org.embulk.spi.time.Timestamp;
 import org.embulk.spi.time.TimestampFormatter;
 import org.embulk.spi.Schema;
 import org.embulk.spi.Column;
 import org.embulk.spi.PageReader;
-import org.embulk.spi.ColumnVisitor;
 import org.embulk.spi.type.TimestampType;
 
 public class PagePrinter
 {
     private final Schema schema;
     private final TimestampFormatter[] timestampFormatters;
+    private final RecordCodecs.ColumnPrinter[] printers;
     private final ArrayList<String> record;
 
     public PagePrinter(Schema schema, TimestampFormatter.FormatterTask task)
@@ -26,6 +25,7 @@ public class PagePrinter
                 timestampFormatters[i] = new TimestampFormatter(type.getFormat(), task);
             }
         }
+        this.printers = RecordCodecs.newColumnPrinters(schema, timestampFormatters);
 
         this.record = new ArrayList<String>(schema.getColumnCount());
         for (int i=0; i < schema.getColumnCount(); i++) {
@@ -58,45 +58,6 @@ public class PagePrinter
         if (reader.isNull(column)) {
             return "";
         }
-        ToStringColumnVisitor visitor = new ToStringColumnVisitor(reader);
-        column.visit(visitor);
-        return visitor.string;
-    }
-
-    private class ToStringColumnVisitor
-            implements ColumnVisitor
-    {
-        private final PageReader reader;
-        String string = "";
-
-        public ToStringColumnVisitor(PageReader reader)
-        {
-            this.reader = reader;
-        }
-
-        public void booleanColumn(Column column)
-        {
-            string = Boolean.toString(reader.getBoolean(column));
-        }
-
-        public void longColumn(Column column)
-        {
-            string = Long.toString(reader.getLong(column));
-        }
-
-        public void doubleColumn(Column column)
-        {
-            string = Double.toString(reader.getDouble(column));
-        }
-
-        public void stringColumn(Column column)
-        {
-            string = reader.getString(column);
-        }
-
-        public void timestampColumn(Column column)
-        {
-            string = timestampFormatters[column.getIndex()].format(reader.getTimestamp(column));
-        }
+        return printers[column.getIndex()].print(reader);
     }
 }
@@ -0,0 +1,198 @@
+package org.embulk.spi.util;
+
+import java.util.ArrayDeque;
+import com.google.common.base.Throwables;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileInput;
+
+/**
+ * FileInput that reads buffers of another FileInput ahead on a background thread.
+ *
+ * Up to maxBuffers buffers and maxBytes bytes are kept in the queue so that
+ * I/O and decoding of the wrapped input overlap with the caller. Exceptions
+ * thrown by the wrapped input are rethrown to the caller when it reaches the
+ * position. The wrapped input must not be used by anyone else until close.
+ */
+public class ReadAheadFileInput
+        implements FileInput
+{
+    // markers put in the queue. compared by identity
+    private static final Buffer NEXT_FILE = Buffer.allocate(0);
+    private static final Buffer END_OF_INPUT = Buffer.allocate(0);
+
+    private final FileInput input;
+    private final int maxBuffers;
+    private final long maxBytes;
+
+    private final ArrayDeque<Buffer> queue = new ArrayDeque<Buffer>();
+    private int queuedBuffers;
+    private long queuedBytes;
+    private Throwable error;
+    private boolean closed;
+
+    private Thread thread;
+    private boolean inFile;
+
+    public ReadAheadFileInput(FileInput input, int maxBuffers, long maxBytes)
+    {
+        this.input = input;
+        this.maxBuffers = Math.max(maxBuffers, 1);
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean nextFile()
+    {
+        if (thread == null) {
+            thread = new Thread(new Runnable() {
+                public void run()
+                {
+                    readAhead();
+                }
+            }, Thread.currentThread().getName() + "-read-ahead");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        while (true) {
+            Buffer buffer = take(true);
+            if (buffer == NEXT_FILE) {
+                inFile = true;
+                return true;
+            } else if (buffer == END_OF_INPUT) {
+                inFile = false;
+                return false;
+            }
+            // rest of the current file
+            buffer.release();
+        }
+    }
+
+    public Buffer poll()
+    {
+        if (!inFile) {
+            throw new IllegalStateException("nextFile() must be called before poll()");
+        }
+        Buffer buffer = take(false);
+        if (buffer == NEXT_FILE || buffer == END_OF_INPUT) {
+            return null;
+        }
+        return buffer;
+    }
+
+    /**
+     * Stops the background thread and waits until it exits so that the
+     * wrapped input is no longer used. The wrapped input is not closed.
+     */
+    public void stop()
+    {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        if (thread != null) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void close()
+    {
+        try {
+            stop();
+        } finally {
+            try {
+                synchronized (this) {
+                    for (Buffer buffer : queue) {
+                        if (buffer != NEXT_FILE && buffer != END_OF_INPUT) {
+                            buffer.release();
+                        }
+                    }
+                    queue.clear();
+                }
+            } finally {
+                input.close();
+            }
+        }
+    }
+
+    private void readAhead()
+    {
+        try {
+            while (input.nextFile()) {
+                if (!put(NEXT_FILE)) {
+                    return;
+                }
+                Buffer buffer;
+                while ((buffer = input.poll()) != null) {
+                    if (!put(buffer)) {
+                        buffer.release();
+                        return;
+                    }
+                }
+            }
+            put(END_OF_INPUT);
+        } catch (Throwable ex) {
+            synchronized (this) {
+                error = ex;
+                notifyAll();
+            }
+        }
+    }
+
+    // returns false if closed
+    private synchronized boolean put(Buffer buffer) throws InterruptedException
+    {
+        if (buffer != NEXT_FILE && buffer != END_OF_INPUT) {
+            while (!closed && (queuedBuffers >= maxBuffers ||
+                        (queuedBuffers > 0 && queuedBytes + buffer.limit() > maxBytes))) {
+                wait();
+            }
+            queuedBuffers++;
+            queuedBytes += buffer.limit();
+        }
+        if (closed) {
+            return false;
+        }
+        queue.addLast(buffer);
+        notifyAll();
+        return true;
+    }
+
+    // markers are left in the queue unless consumeMarker is true. END_OF_INPUT is never consumed.
+    private synchronized Buffer take(boolean consumeMarker)
+    {
+        try {
+            while (queue.isEmpty() && error == null) {
+                wait();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+        if (queue.isEmpty()) {
+            throw Throwables.propagate(error);
+        }
+
+        Buffer buffer = queue.peekFirst();
+        if (buffer == END_OF_INPUT || (buffer == NEXT_FILE && !consumeMarker)) {
+            return buffer;
+        }
+        queue.removeFirst();
+        if (buffer != NEXT_FILE) {
+            queuedBuffers--;
+            queuedBytes -= buffer.limit();
+            notifyAll();
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,319 @@
+package org.embulk.spi.util;
+
+import java.util.Set;
+import org.embulk.spi.Column;
+import org.embulk.spi.Schema;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageReader;
+import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.time.TimestampParser;
+import org.embulk.spi.time.TimestampFormatter;
+import org.embulk.spi.time.TimestampParseException;
+
+/**
+ * Builds per-schema arrays of type-specialized column parsers and printers.
+ *
+ * Schema is visited only once when the arrays are built. Record loops then
+ * call the array elements directly instead of dispatching every cell through
+ * a ColumnVisitor.
+ */
+public class RecordCodecs
+{
+    private RecordCodecs() { }
+
+    public static abstract class ColumnParser
+    {
+        protected final Column column;
+
+        protected ColumnParser(Column column)
+        {
+            this.column = column;
+        }
+
+        public Column getColumn()
+        {
+            return column;
+        }
+
+        // throws NumberFormatException if a long or double column can't be parsed
+        public abstract void parse(PageBuilder pageBuilder, String value)
+            throws TimestampParseException;
+    }
+
+    public static abstract class ColumnPrinter
+    {
+        protected final Column column;
+
+        protected ColumnPrinter(Column column)
+        {
+            this.column = column;
+        }
+
+        public Column getColumn()
+        {
+            return column;
+        }
+
+        // caller checks PageReader.isNull before calling this method
+        public abstract String print(PageReader pageReader);
+
+        // appends the value to the builder instead of creating a String
+        public abstract void append(PageReader pageReader, StringBuilder builder);
+    }
+
+    public static ColumnParser[] newColumnParsers(Schema schema,
+            final TimestampParser[] timestampParsers, final Set<String> trueStrings)
+    {
+        final ColumnParser[] parsers = new ColumnParser[schema.getColumnCount()];
+        schema.visitColumns(new ColumnVisitor() {
+            public void booleanColumn(Column column)
+            {
+                parsers[column.getIndex()] = new BooleanColumnParser(column, trueStrings);
+            }
+
+            public void longColumn(Column column)
+            {
+                parsers[column.getIndex()] = new LongColumnParser(column);
+            }
+
+            public void doubleColumn(Column column)
+            {
+                parsers[column.getIndex()] = new DoubleColumnParser(column);
+            }
+
+            public void stringColumn(Column column)
+            {
+                parsers[column.getIndex()] = new StringColumnParser(column);
+            }
+
+            public void timestampColumn(Column column)
+            {
+                parsers[column.getIndex()] = new TimestampColumnParser(column, timestampParsers[column.getIndex()]);
+            }
+        });
+        return parsers;
+    }
+
+    public static ColumnPrinter[] newColumnPrinters(Schema schema,
+            final TimestampFormatter[] timestampFormatters)
+    {
+        final ColumnPrinter[] printers = new ColumnPrinter[schema.getColumnCount()];
+        schema.visitColumns(new ColumnVisitor() {
+            public void booleanColumn(Column column)
+            {
+                printers[column.getIndex()] = new BooleanColumnPrinter(column);
+            }
+
+            public void longColumn(Column column)
+            {
+                printers[column.getIndex()] = new LongColumnPrinter(column);
+            }
+
+            public void doubleColumn(Column column)
+            {
+                printers[column.getIndex()] = new DoubleColumnPrinter(column);
+            }
+
+            public void stringColumn(Column column)
+            {
+                printers[column.getIndex()] = new StringColumnPrinter(column);
+            }
+
+            public void timestampColumn(Column column)
+            {
+                printers[column.getIndex()] = new TimestampColumnPrinter(column, timestampFormatters[column.getIndex()]);
+            }
+        });
+        return printers;
+    }
+
+    private static final class BooleanColumnParser
+            extends ColumnParser
+    {
+        private final Set<String> trueStrings;
+
+        BooleanColumnParser(Column column, Set<String> trueStrings)
+        {
+            super(column);
+            this.trueStrings = trueStrings;
+        }
+
+        @Override
+        public void parse(PageBuilder pageBuilder, String value)
+        {
+            pageBuilder.setBoolean(column, trueStrings.contains(value));
+        }
+    }
+
+    private static final class LongColumnParser
+            extends ColumnParser
+    {
+        LongColumnParser(Column column)
+        {
+            super(column);
+        }
+
+        @Override
+        public void parse(PageBuilder pageBuilder, String value)
+        {
+            pageBuilder.setLong(column, Long.parseLong(value));
+        }
+    }
+
+    private static final class DoubleColumnParser
+            extends ColumnParser
+    {
+        DoubleColumnParser(Column column)
+        {
+            super(column);
+        }
+
+        @Override
+        public void parse(PageBuilder pageBuilder, String value)
+        {
+            pageBuilder.setDouble(column, Double.parseDouble(value));
+        }
+    }
+
+    private static final class StringColumnParser
+            extends ColumnParser
+    {
+        StringColumnParser(Column column)
+        {
+            super(column);
+        }
+
+        @Override
+        public void parse(PageBuilder pageBuilder, String value)
+        {
+            pageBuilder.setString(column, value);
+        }
+    }
+
+    private static final class TimestampColumnParser
+            extends ColumnParser
+    {
+        private final TimestampParser timestampParser;
+
+        TimestampColumnParser(Column column, TimestampParser timestampParser)
+        {
+            super(column);
+            this.timestampParser = timestampParser;
+        }
+
+        @Override
+        public void parse(PageBuilder pageBuilder, String value)
+            throws TimestampParseException
+        {
+            pageBuilder.setTimestamp(column, timestampParser.parse(value));
+        }
+    }
+
+    private static final class BooleanColumnPrinter
+            extends ColumnPrinter
+    {
+        BooleanColumnPrinter(Column column)
+        {
+            super(column);
+        }
+
+        @Override
+        public String print(PageReader pageReader)
+        {
+            return Boolean.toString(pageReader.getBoolean(column));
+        }
+
+        @Override
+        public void append(PageReader pageReader, StringBuilder builder)
+        {
+            builder.append(pageReader.getBoolean(column));
+        }
+    }
+
+    private static final class LongColumnPrinter
+            extends ColumnPrinter
+    {
+        LongColumnPrinter(Column column)
+        {
+            super(column);
+        }
+
+        @Override
+        public String print(PageReader pageReader)
+        {
+            return Long.toString(pageReader.getLong(column));
+        }
+
+        @Override
+        public void append(PageReader pageReader, StringBuilder builder)
+        {
+            builder.append(pageReader.getLong(column));
+        }
+    }
+
+    private static final class DoubleColumnPrinter
+            extends ColumnPrinter
+    {
+        DoubleColumnPrinter(Column column)
+        {
+            super(column);
+        }
+
+        @Override
+        public String print(PageReader pageReader)
+        {
+            return Double.toString(pageReader.getDouble(column));
+        }
+
+        @Override
+        public void append(PageReader pageReader, StringBuilder builder)
+        {
+            builder.append(pageReader.getDouble(column));
+        }
+    }
+
+    private static final class StringColumnPrinter
+            extends ColumnPrinter
+    {
+        StringColumnPrinter(Column column)
+        {
+            super(column);
+        }
+
+        @Override
+        public String print(PageReader pageReader)
+        {
+            return pageReader.getString(column);
+        }
+
+        @Override
+        public void append(PageReader pageReader, StringBuilder builder)
+        {
+            builder.append(pageReader.getString(column));
+        }
+    }
+
+    private static final class TimestampColumnPrinter
+            extends ColumnPrinter
+    {
+        private final TimestampFormatter timestampFormatter;
+
+        TimestampColumnPrinter(Column column, TimestampFormatter timestampFormatter)
+        {
+            super(column);
+            this.timestampFormatter = timestampFormatter;
+        }
+
+        @Override
+        public String print(PageReader pageReader)
+        {
+            return timestampFormatter.format(pageReader.getTimestamp(column));
+        }
+
+        @Override
+        public void append(PageReader pageReader, StringBuilder builder)
+        {
+            timestampFormatter.format(pageReader.getTimestamp(column), builder);
+        }
+    }
+}
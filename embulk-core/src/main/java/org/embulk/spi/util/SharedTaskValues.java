@@ -0,0 +1,91 @@
+package org.embulk.spi.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ModelManager;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Exec;
+
+/**
+ * Loads values of a TaskSource which are shared by all tasks of a
+ * transaction and never modified, such as a list of input files.
+ *
+ * loadTask deserializes all fields again for each task. If a task has a
+ * list of N elements and each of N tasks uses one of them, the total cost
+ * grows with the square of N. Keep such a list out of the Task interface,
+ * set it to the TaskSource with DataSource.set, and get it here. It's
+ * deserialized once into an immutable list and cached by identity of its
+ * JSON node. A task uses only its own element of the list.
+ *
+ * The JSON node must not be modified in place. DataSource.set replaces the
+ * node, so the list is loaded again after that. Cached lists are released
+ * when the TaskSource is garbage-collected.
+ *
+ * copy makes a TaskSource for a task which shares the lists with the other
+ * tasks.
+ */
+public abstract class SharedTaskValues
+{
+    private SharedTaskValues() { }
+
+    // weak keys are compared by identity. a node is always loaded with the
+    // same element type because it's at the same attribute of the same task
+    private static final Cache<JsonNode, ImmutableList<?>> lists = CacheBuilder.newBuilder().weakKeys().build();
+
+    @SuppressWarnings("unchecked")
+    public static <E> List<E> getList(TaskSource taskSource, String attrName, final Class<E> elementType)
+    {
+        final JsonNode json = taskSource.getObjectNode().get(attrName);
+        if (json == null) {
+            throw new ConfigException("Attribute "+attrName+" is required but not set");
+        }
+        if (!json.isArray()) {
+            throw new ConfigException("Attribute "+attrName+" must be an array");
+        }
+        final ModelManager model = Exec.getModelManager();
+        try {
+            return (List<E>) lists.get(json, new Callable<ImmutableList<?>>() {
+                public ImmutableList<?> call()
+                {
+                    ImmutableList.Builder<E> builder = ImmutableList.builder();
+                    for (JsonNode element : json) {
+                        builder.add(model.readObject(elementType, element.traverse()));
+                    }
+                    return builder.build();
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            throw Throwables.propagate(ex.getCause());
+        }
+    }
+
+    /**
+     * Copies a TaskSource so that a task can set attributes to it, including
+     * attributes of nested objects, without changing the other tasks.
+     * Arrays are not copied but shared so that lists loaded by getList are
+     * reused. DataSource can only replace an array, not modify it in place.
+     */
+    public static TaskSource copy(TaskSource taskSource)
+    {
+        TaskSource copy = Exec.newTaskSource();
+        ObjectNode node = copy.getObjectNode();
+        for (Map.Entry<String, JsonNode> attr : taskSource.getAttributes()) {
+            JsonNode value = attr.getValue();
+            if (value.isObject()) {
+                value = value.deepCopy();
+            }
+            node.set(attr.getKey(), value);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,328 @@
+package org.embulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.inject.Binder;
+import com.google.inject.Module;
+import com.google.inject.multibindings.Multibinder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.embulk.config.CommitReport;
+import org.embulk.config.Config;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.Task;
+import org.embulk.config.TaskSource;
+import org.embulk.exec.ForGuess;
+import org.embulk.plugin.PluginType;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecSession;
+import org.embulk.spi.InputPlugin;
+import org.embulk.spi.OutputPlugin;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.embulk.spi.TransactionalPageOutput;
+import static org.embulk.plugin.InjectedPluginSource.registerPluginTo;
+import static org.embulk.spi.type.Types.LONG;
+
+public class TestEmbulkServer
+{
+    // checks that tasks run with the ExecSession of the job which started the transaction
+    public static class SessionInputPlugin
+            implements InputPlugin
+    {
+        public interface PluginTask
+                extends Task
+        {
+            @Config("job")
+            public String getJob();
+        }
+
+        static final ConcurrentMap<String, ExecSession> sessions = new ConcurrentHashMap<>();
+        static CountDownLatch transactions;
+
+        public ConfigDiff transaction(ConfigSource config, InputPlugin.Control control)
+        {
+            PluginTask task = config.loadConfig(PluginTask.class);
+            sessions.put(task.getJob(), Exec.session());
+
+            // waits for the other job so that both jobs run at once
+            transactions.countDown();
+            try {
+                transactions.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+
+            List<CommitReport> reports = control.run(task.dump(), Schema.builder().add("n", LONG).build(), 4);
+            int sameSession = 0;
+            for (CommitReport report : reports) {
+                if (report.get(boolean.class, "same_session")) {
+                    sameSession++;
+                }
+            }
+            return Exec.newConfigDiff().set("same_session_tasks", sameSession);
+        }
+
+        public ConfigDiff resume(TaskSource taskSource, Schema schema, int taskCount, InputPlugin.Control control)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public void cleanup(TaskSource taskSource, Schema schema, int taskCount, List<CommitReport> successCommitReports)
+        { }
+
+        public CommitReport run(TaskSource taskSource, Schema schema, int taskIndex, PageOutput output)
+        {
+            PluginTask task = taskSource.loadTask(PluginTask.class);
+            try (PageBuilder pageBuilder = new PageBuilder(Exec.getBufferAllocator(), schema, output)) {
+                pageBuilder.setLong(0, taskIndex);
+                pageBuilder.addRecord();
+                pageBuilder.finish();
+            }
+            return Exec.newCommitReport().set("same_session", Exec.session() == sessions.get(task.getJob()));
+        }
+
+        public ConfigDiff guess(ConfigSource config)
+        {
+            return Exec.newConfigDiff();
+        }
+    }
+
+    public static class DiscardOutputPlugin
+            implements OutputPlugin
+    {
+        public ConfigDiff transaction(ConfigSource config, Schema schema, int taskCount, OutputPlugin.Control control)
+        {
+            control.run(Exec.newTaskSource());
+            return Exec.newConfigDiff();
+        }
+
+        public ConfigDiff resume(TaskSource taskSource, Schema schema, int taskCount, OutputPlugin.Control control)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public void cleanup(TaskSource taskSource, Schema schema, int taskCount, List<CommitReport> successCommitReports)
+        { }
+
+        public TransactionalPageOutput open(TaskSource taskSource, Schema schema, int taskIndex)
+        {
+            return new TransactionalPageOutput() {
+                public void add(Page page)
+                {
+                    page.release();
+                }
+
+                public void finish() { }
+
+                public void close() { }
+
+                public void abort() { }
+
+                public CommitReport commit()
+                {
+                    return Exec.newCommitReport();
+                }
+            };
+        }
+    }
+
+    private static final String TOKEN = "test-token";
+
+    private static final Map<String, String> HEADERS = ImmutableMap.of(
+            "Authorization", "Bearer " + TOKEN,
+            "Content-Type", "application/x-yaml");
+
+    private EmbulkServer server;
+
+    @Before
+    public void setUp()
+    {
+        ConfigSource systemConfig = EmbulkEmbed.newSystemConfigLoader().newConfigSource()
+            .set("server_token", TOKEN)
+            .set("server_port", 0)
+            .set("server_max_jobs", 2)
+            .set("max_threads", 2);  // tasks of the jobs share threads
+        server = new EmbulkServer(systemConfig, new Module() {
+            public void configure(Binder binder)
+            {
+                // guess plugins are registered by embulk-standards
+                Multibinder.newSetBinder(binder, PluginType.class, ForGuess.class);
+                registerPluginTo(binder, InputPlugin.class, "test_session", SessionInputPlugin.class);
+                registerPluginTo(binder, OutputPlugin.class, "test_discard", DiscardOutputPlugin.class);
+            }
+        });
+        server.start();
+        SessionInputPlugin.sessions.clear();
+        SessionInputPlugin.transactions = new CountDownLatch(2);
+    }
+
+    @After
+    public void tearDown()
+    {
+        server.close();
+    }
+
+    private static class Response
+    {
+        private final int status;
+        private final String body;
+
+        Response(int status, String body)
+        {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private Response request(String method, String path, String body) throws IOException
+    {
+        return request(method, path, body, HEADERS);
+    }
+
+    private Response request(String method, String path, String body, Map<String, String> headers) throws IOException
+    {
+        InetSocketAddress address = server.getAddress();
+        URL url = new URL("http", address.getHostString(), address.getPort(), path);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod(method);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            conn.setRequestProperty(header.getKey(), header.getValue());
+        }
+        if (body != null) {
+            conn.setDoOutput(true);
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = conn.getResponseCode();
+        try (InputStream in = (status < 400 ? conn.getInputStream() : conn.getErrorStream())) {
+            return new Response(status, new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testMethodNotAllowed() throws IOException
+    {
+        assertEquals(405, request("GET", "/run", null).status);
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testTokenRequired()
+    {
+        new EmbulkServer(EmbulkEmbed.newSystemConfigLoader().newConfigSource().set("server_port", 0));
+    }
+
+    @Test
+    public void testUnauthorized() throws IOException
+    {
+        assertEquals(401, request("POST", "/run", runConfig("a"),
+                    ImmutableMap.of("Content-Type", "application/x-yaml")).status);
+        assertEquals(401, request("POST", "/run", runConfig("a"),
+                    ImmutableMap.of("Authorization", "Bearer wrong-token", "Content-Type", "application/x-yaml")).status);
+    }
+
+    @Test
+    public void testOriginRejected() throws IOException
+    {
+        // HttpURLConnection doesn't send Origin header. Writes the request to a socket
+        InetSocketAddress address = server.getAddress();
+        byte[] body = runConfig("a").getBytes(StandardCharsets.UTF_8);
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            String header = "POST /run HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Authorization: Bearer " + TOKEN + "\r\n" +
+                "Content-Type: application/x-yaml\r\n" +
+                "Origin: http://example.com\r\n" +
+                "Content-Length: " + body.length + "\r\n" +
+                "Connection: close\r\n" +
+                "\r\n";
+            out.write(header.getBytes(StandardCharsets.UTF_8));
+            out.write(body);
+            out.flush();
+            String response = new String(ByteStreams.toByteArray(socket.getInputStream()), StandardCharsets.UTF_8);
+            assertTrue(response, response.startsWith("HTTP/1.1 403 "));
+        }
+    }
+
+    @Test
+    public void testUnsupportedContentType() throws IOException
+    {
+        // browsers can send text/plain across origins without preflight
+        assertEquals(415, request("POST", "/run", runConfig("a"),
+                    ImmutableMap.of("Authorization", "Bearer " + TOKEN, "Content-Type", "text/plain")).status);
+    }
+
+    @Test
+    public void testConfigError() throws IOException
+    {
+        Response response = request("POST", "/preview", "in: {}\nout: {type: stdout}\n");
+        assertEquals(400, response.status);
+        assertTrue(response.body, response.body.startsWith("{\"error\":"));
+
+        // the server keeps running after errors
+        assertEquals(400, request("POST", "/run", "{\"in\": {}}",
+                    ImmutableMap.of("Authorization", "Bearer " + TOKEN, "Content-Type", "application/json; charset=utf-8")).status);
+    }
+
+    private static String runConfig(String job)
+    {
+        return "in: {type: test_session, job: " + job + "}\nout: {type: test_discard}\n";
+    }
+
+    @Test
+    public void testConcurrentRuns() throws Exception
+    {
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Response>> responses = new ArrayList<>();
+            for (final String job : new String[] { "a", "b" }) {
+                responses.add(clients.submit(new Callable<Response>() {
+                    public Response call() throws IOException
+                    {
+                        return request("POST", "/run", runConfig(job));
+                    }
+                }));
+            }
+            for (Future<Response> future : responses) {
+                Response response = future.get();
+                assertEquals(response.body, 200, response.status);
+                assertTrue(response.body, response.body.contains("\"same_session_tasks\":4"));
+            }
+        } finally {
+            clients.shutdown();
+        }
+
+        // next job reuses the threads which ran the previous jobs
+        Response response = request("POST", "/run", runConfig("c"));
+        assertEquals(response.body, 200, response.status);
+        assertTrue(response.body, response.body.contains("\"same_session_tasks\":4"));
+    }
+}
@@ -0,0 +1,87 @@
+package org.embulk.command;
+
+import static org.embulk.spi.type.Types.LONG;
+import static org.embulk.spi.type.Types.STRING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import org.yaml.snakeyaml.Yaml;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.CommitReport;
+import org.embulk.config.ConfigLoader;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.ModelManager;
+import org.embulk.config.TaskSource;
+import org.embulk.exec.ResumeState;
+import org.embulk.spi.Exec;
+import org.embulk.spi.Schema;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestRunner
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private static ResumeState newResumeState()
+    {
+        ConfigSource execConfig = Exec.newConfigSource().set("transaction_time", "2015-01-01 00:00:00 UTC");
+        TaskSource inputTask = Exec.newTaskSource().set("paths", ImmutableList.of("/data/a.csv", "/data/b.csv"));
+        TaskSource outputTask = Exec.newTaskSource().set("path_prefix", "/out/file");
+        Schema schema = Schema.builder().add("id", LONG).add("name", STRING).build();
+        List<Optional<CommitReport>> inputReports = ImmutableList.of(
+                Optional.of(Exec.newCommitReport().set("records", 10L)),
+                Optional.<CommitReport>absent());
+        List<Optional<CommitReport>> outputReports = ImmutableList.of(
+                Optional.<CommitReport>absent(),
+                Optional.<CommitReport>absent());
+        return new ResumeState(execConfig, inputTask, outputTask,
+                schema, schema, inputReports, outputReports);
+    }
+
+    private ResumeState read(byte[] data)
+    {
+        ModelManager model = runtime.getModelManager();
+        return Runner.readResumeState(model, new ConfigLoader(model), data);
+    }
+
+    private static void assertResumeState(ResumeState expected, ResumeState actual)
+    {
+        assertEquals(expected.getExecSessionConfigSource(), actual.getExecSessionConfigSource());
+        assertEquals(expected.getInputTaskSource(), actual.getInputTaskSource());
+        assertEquals(expected.getOutputTaskSource(), actual.getOutputTaskSource());
+        assertEquals(expected.getInputSchema(), actual.getInputSchema());
+        assertEquals(expected.getOutputSchema(), actual.getOutputSchema());
+        assertEquals(expected.getInputCommitReports(), actual.getInputCommitReports());
+        assertEquals(expected.getOutputCommitReports().size(), actual.getOutputCommitReports().size());
+    }
+
+    @Test
+    public void testReadSmileResumeState()
+    {
+        ResumeState state = newResumeState();
+        assertResumeState(state, read(runtime.getModelManager().writeObjectAsBytes(state)));
+    }
+
+    @Test
+    public void testReadYamlResumeState()
+    {
+        // older versions wrote resume state files in YAML
+        ResumeState state = newResumeState();
+        ModelManager model = runtime.getModelManager();
+        Map<?, ?> map = model.readObject(Map.class, model.writeObject(state));
+        byte[] yaml = new Yaml().dump(map).getBytes(StandardCharsets.UTF_8);
+        assertResumeState(state, read(yaml));
+    }
+
+    @Test
+    public void testReadEmptyResumeState()
+    {
+        // -r option creates an empty file if it doesn't exist
+        assertNull(read(new byte[0]));
+    }
+}
@@ -1,10 +1,14 @@
 package org.embulk.config;
 
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import org.junit.Rule;
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import com.google.inject.Inject;
+import com.google.common.collect.ImmutableList;
 import org.embulk.spi.Exec;
 import org.embulk.EmbulkTestRuntime;
 
@@ -56,6 +60,21 @@ public class TestConfigSource
         assertEquals("sf", config.get(String.class, "string"));
     }
 
+    @Test
+    public void testSetEqualsParsedJson() throws Exception
+    {
+        config.set("int", 3L);
+        config.set("long", Long.MAX_VALUE);
+        config.set("big", new BigInteger("10000000000000000000000"));
+        config.set("float", 0.1f);
+        config.set("list", ImmutableList.of(1L, 2L));
+
+        String json = "{\"int\":3,\"long\":9223372036854775807,\"big\":10000000000000000000000,\"float\":0.1,\"list\":[1,2]}";
+        ConfigSource parsed = new ConfigLoader(runtime.getModelManager()).fromJson(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(parsed, config);
+    }
+
     @Test
     public void testLoadConfig()
     {
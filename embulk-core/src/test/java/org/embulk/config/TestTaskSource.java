@@ -6,6 +6,7 @@ import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 import com.google.inject.Inject;
 import org.embulk.spi.Exec;
 import org.embulk.EmbulkTestRuntime;
@@ -31,6 +32,21 @@ public class TestTaskSource
         public void setString(String v);
     }
 
+    private static interface ExtendedFields
+            extends TypeFields
+    {
+        public String getExtra();
+        public void setExtra(String v);
+    }
+
+    private static interface WrongMethods
+            extends Task
+    {
+        public String getString(int v);
+        public void setString(String v1, String v2);
+        public void undefined();
+    }
+
     @Rule
     public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
 
@@ -67,4 +83,124 @@ public class TestTaskSource
         assertFalse(task.equals(task2));
         assertFalse(task.hashCode() == task2.hashCode());
     }
+
+    @Test
+    public void testInheritedAccessors()
+    {
+        taskSource.set("Extra", "e");
+        ExtendedFields task = taskSource.loadTask(ExtendedFields.class);
+        assertEquals("e", task.getExtra());
+        assertEquals(0.5, task.getDouble(), 0.0);
+
+        task.setExtra("x");
+        task.setInt(7);
+        ExtendedFields task2 = task.dump().loadTask(ExtendedFields.class);
+        assertEquals("x", task2.getExtra());
+        assertEquals(7, task2.getInt());
+        assertTrue(task.equals(task2));
+        assertTrue(task2.toString().startsWith(ExtendedFields.class.getName()));
+    }
+
+    @Test
+    public void testDumpIsCompatibleWithTaskSource()
+    {
+        TypeFields task = taskSource.loadTask(TypeFields.class);
+        task.setString("s");
+        TaskSource dumped = task.dump();
+        assertEquals("s", dumped.get(String.class, "String"));
+        assertEquals(0.5, dumped.get(double.class, "Double"), 0.0);
+    }
+
+    private static interface NestedFields
+            extends Task
+    {
+        public TaskSource getNested();
+        public void setNested(TaskSource v);
+    }
+
+    @Test
+    public void testLoadTaskReturnsCopies()
+    {
+        TypeFields task1 = taskSource.loadTask(TypeFields.class);
+        TypeFields task2 = taskSource.loadTask(TypeFields.class);
+        assertTrue(task1 != task2);
+        assertTrue(task1.equals(task2));
+
+        // setters don't change other tasks
+        task1.setString("a");
+        assertEquals("", task2.getString());
+        assertEquals("", taskSource.loadTask(TypeFields.class).getString());
+    }
+
+    @Test
+    public void testLoadTaskAfterModification()
+    {
+        assertEquals("", taskSource.loadTask(TypeFields.class).getString());
+        taskSource.set("String", "modified");
+        assertEquals("modified", taskSource.loadTask(TypeFields.class).getString());
+
+        // modification through a nested TaskSource
+        TaskSource parent = Exec.newTaskSource();
+        parent.setNested("Nested", taskSource);
+        NestedFields nested = parent.loadTask(NestedFields.class);
+        assertEquals("modified", nested.getNested().get(String.class, "String"));
+        parent.getNested("Nested").set("String", "nested");
+        assertEquals("nested", parent.loadTask(NestedFields.class).getNested().get(String.class, "String"));
+
+        // modification of a TaskSource after it's set to the parent
+        taskSource.set("String", "child");
+        assertEquals("child", parent.loadTask(NestedFields.class).getNested().get(String.class, "String"));
+
+        // modification through the ObjectNode
+        taskSource.getObjectNode().put("String", "node");
+        assertEquals("node", taskSource.loadTask(TypeFields.class).getString());
+        assertEquals("node", parent.loadTask(NestedFields.class).getNested().get(String.class, "String"));
+    }
+
+    @Test
+    public void testLoadTaskDoesNotShareValues()
+    {
+        TaskSource parent = Exec.newTaskSource();
+        parent.setNested("Nested", taskSource);
+        NestedFields task1 = parent.loadTask(NestedFields.class);
+        NestedFields task2 = parent.loadTask(NestedFields.class);
+        task1.getNested().set("String", "a");
+        assertEquals("", task2.getNested().get(String.class, "String"));
+        assertEquals("", parent.getNested("Nested").get(String.class, "String"));
+    }
+
+    @Test
+    public void testSmileRoundTrip()
+    {
+        ModelManager model = Exec.getModelManager();
+        byte[] smile = model.writeObjectAsBytes(taskSource);
+        assertTrue(ModelManager.isSmile(smile));
+        assertEquals(taskSource, model.readObject(TaskSource.class, smile));
+        assertEquals(taskSource.loadTask(TypeFields.class),
+                model.readObject(TaskSource.class, smile).loadTask(TypeFields.class));
+    }
+
+    @Test
+    public void testWrongMethods()
+    {
+        WrongMethods task = taskSource.loadTask(WrongMethods.class);
+        try {
+            task.getString(1);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Method 'getString' expected 0 argument but got 1 arguments", ex.getMessage());
+        }
+        try {
+            task.setString("a", "b");
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Method 'setString' expected 1 argument but got 2 arguments", ex.getMessage());
+        }
+        try {
+            task.undefined();
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Undefined method 'undefined'", ex.getMessage());
+        }
+    }
 }
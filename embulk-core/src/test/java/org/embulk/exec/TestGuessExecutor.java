@@ -0,0 +1,269 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.embulk.plugin.InjectedPluginSource.registerPluginTo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.CommitReport;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.DataSourceImpl;
+import org.embulk.config.ModelManager;
+import org.embulk.config.TaskSource;
+import org.embulk.plugin.PluginType;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.DecoderPlugin;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecAction;
+import org.embulk.spi.ExecSession;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.FileInputPlugin;
+import org.embulk.spi.FileInputRunner;
+import org.embulk.spi.GuessPlugin;
+import org.embulk.spi.TransactionalFileInput;
+
+public class TestGuessExecutor
+{
+    // guesses parser.a in the first call and parser.b in the next call
+    public static class OneStepGuessPlugin
+            implements GuessPlugin
+    {
+        static final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public ConfigDiff guess(ConfigSource config, Buffer sample)
+        {
+            calls.incrementAndGet();
+            ConfigSource parser = config.getNestedOrSetEmpty("parser");
+            ConfigDiff guessed = Exec.newConfigDiff();
+            if (!parser.has("a")) {
+                guessed.getNestedOrSetEmpty("parser").set("a", sample.limit());
+            } else if (!parser.has("b")) {
+                guessed.getNestedOrSetEmpty("parser").set("b", "b");
+            }
+            return guessed;
+        }
+    }
+
+    public static class DecoderGuessPlugin
+            implements GuessPlugin
+    {
+        @Override
+        public ConfigDiff guess(ConfigSource config, Buffer sample)
+        {
+            ConfigDiff guessed = Exec.newConfigDiff();
+            if (!config.has("decoders")) {
+                guessed.set("decoders", ImmutableList.of(ImmutableMap.of("type", "test_passthrough")));
+            }
+            return guessed;
+        }
+    }
+
+    public static class PassthroughDecoderPlugin
+            implements DecoderPlugin
+    {
+        static final AtomicInteger opens = new AtomicInteger();
+
+        @Override
+        public void transaction(ConfigSource config, DecoderPlugin.Control control)
+        {
+            control.run(Exec.newTaskSource());
+        }
+
+        @Override
+        public FileInput open(TaskSource taskSource, FileInput input)
+        {
+            opens.incrementAndGet();
+            return input;
+        }
+    }
+
+    private static class GuessTestModule
+            implements Module
+    {
+        @Override
+        public void configure(Binder binder)
+        {
+            registerPluginTo(binder, GuessPlugin.class, "test_one_step", OneStepGuessPlugin.class);
+            registerPluginTo(binder, GuessPlugin.class, "test_decoder", DecoderGuessPlugin.class);
+            registerPluginTo(binder, DecoderPlugin.class, "test_passthrough", PassthroughDecoderPlugin.class);
+        }
+    }
+
+    // each task reads one file of the given text
+    private static class TextFileInputPlugin
+            implements FileInputPlugin
+    {
+        private final List<String> files;
+
+        public TextFileInputPlugin(List<String> files)
+        {
+            this.files = files;
+        }
+
+        public ConfigDiff transaction(ConfigSource config, FileInputPlugin.Control control)
+        {
+            control.run(Exec.newTaskSource(), files.size());
+            return Exec.newConfigDiff();
+        }
+
+        public ConfigDiff resume(TaskSource taskSource, int taskCount, FileInputPlugin.Control control)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public void cleanup(TaskSource taskSource, int taskCount, List<CommitReport> successCommitReports)
+        { }
+
+        public TransactionalFileInput open(TaskSource taskSource, final int taskIndex)
+        {
+            return new TransactionalFileInput() {
+                private boolean opened;
+                private boolean polled;
+
+                public boolean nextFile()
+                {
+                    if (opened) {
+                        return false;
+                    }
+                    opened = true;
+                    return true;
+                }
+
+                public Buffer poll()
+                {
+                    if (polled) {
+                        return null;
+                    }
+                    polled = true;
+                    return Buffer.copyOf(files.get(taskIndex).getBytes());
+                }
+
+                public void close()
+                { }
+
+                public void abort()
+                { }
+
+                public CommitReport commit()
+                {
+                    return null;
+                }
+            };
+        }
+    }
+
+    private Injector injector;
+    private ExecSession exec;
+
+    @Before
+    public void setup()
+    {
+        injector = Guice.createInjector(new EmbulkTestRuntime.TestRuntimeModule(), new GuessTestModule());
+        exec = ExecSession.builder(injector)
+            .fromExecConfig(new DataSourceImpl(injector.getInstance(ModelManager.class)))
+            .build();
+        OneStepGuessPlugin.calls.set(0);
+        PassthroughDecoderPlugin.opens.set(0);
+    }
+
+    private <T> T doWith(ExecAction<T> action) throws ExecutionException
+    {
+        try {
+            return Exec.doWith(exec, action);
+        } finally {
+            exec.cleanup();
+        }
+    }
+
+    private ConfigDiff guessParserConfig(final String sample, final List<String> guessPlugins) throws ExecutionException
+    {
+        return doWith(new ExecAction<ConfigDiff>() {
+            public ConfigDiff run()
+            {
+                ConfigSource execConfig = Exec.newConfigSource().set("guess_plugins", guessPlugins);
+                GuessExecutor guessExecutor = new GuessExecutor(Exec.newConfigSource(), ImmutableSet.<PluginType>of());
+                return guessExecutor.guessParserConfig(Buffer.copyOf(sample.getBytes()), Exec.newConfigSource(), execConfig);
+            }
+        });
+    }
+
+    @Test
+    public void testRerunGuessPluginsOnDecodedSample() throws ExecutionException
+    {
+        ConfigDiff guessed = guessParserConfig("sample", ImmutableList.of("test_one_step"));
+        assertEquals(6, (int) guessed.getNested("parser").get(int.class, "a"));
+        assertEquals("b", guessed.getNested("parser").get(String.class, "b"));
+        // a, b and a call which doesn't change the config. Samples are decoded once
+        // because decoders don't change
+        assertEquals(3, OneStepGuessPlugin.calls.get());
+    }
+
+    @Test
+    public void testDecodeAgainOnlyIfDecodersChanged() throws ExecutionException
+    {
+        ConfigDiff guessed = guessParserConfig("sample", ImmutableList.of("test_decoder", "test_one_step"));
+        List<ConfigSource> decoders = guessed.get(ConfigSourceList.class, "decoders");
+        assertEquals(1, decoders.size());
+        assertEquals("test_passthrough", decoders.get(0).get(String.class, "type"));
+        assertEquals("b", guessed.getNested("parser").get(String.class, "b"));
+        // the first round stops at the decoder guess. The second round decodes samples
+        // with the guessed decoder and returns without another round
+        assertEquals(1, PassthroughDecoderPlugin.opens.get());
+        assertEquals(3, OneStepGuessPlugin.calls.get());
+    }
+
+    private static class ConfigSourceList extends ArrayList<ConfigSource> { }
+
+    @Test
+    public void testSampleMultipleFiles() throws ExecutionException
+    {
+        final List<String> files = ImmutableList.of(
+                "first file has more than forty bytes of text\n",
+                "small\n",
+                "third file has more than forty bytes of text\n",
+                "fourth file has more than forty bytes of text\n",
+                "fifth file has more than forty bytes of text\n");
+        List<Buffer> samples = doWith(new ExecAction<List<Buffer>>() {
+            public List<Buffer> run()
+            {
+                FileInputRunner runner = new FileInputRunner(new TextFileInputPlugin(files));
+                return SamplingParserPlugin.runFileInputSampling(runner, Exec.newConfigSource(), 3);
+            }
+        });
+        // files smaller than the minimum sample size are skipped. samples are ordered by task index
+        List<String> texts = new ArrayList<>();
+        for (Buffer sample : samples) {
+            texts.add(new String(sample.array(), sample.offset(), sample.limit()));
+        }
+        assertEquals(ImmutableList.of(files.get(0), files.get(2), files.get(3)), texts);
+    }
+
+    @Test
+    public void testSampleBufferBytes()
+    {
+        ModelManager model = injector.getInstance(ModelManager.class);
+        new SamplingParserPlugin(new DataSourceImpl(model).set("guess_sample_buffer_bytes", "41B"));
+        for (String size : new String[] { "0B", "40B", "2GB" }) {
+            try {
+                new SamplingParserPlugin(new DataSourceImpl(model).set("guess_sample_buffer_bytes", size));
+                fail();
+            } catch (ConfigException ex) {
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.embulk.exec;
+
+import static org.embulk.spi.type.Types.LONG;
+import static org.embulk.spi.type.Types.STRING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import java.util.List;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.CommitReport;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.ModelManager;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Exec;
+import org.embulk.spi.Schema;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestResumeState
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void testSmileRoundTrip()
+    {
+        ConfigSource execConfig = Exec.newConfigSource().set("transaction_time", "2015-01-01 00:00:00 UTC");
+        TaskSource inputTask = Exec.newTaskSource().set("paths", ImmutableList.of("/data/a.csv", "/data/b.csv"));
+        TaskSource outputTask = Exec.newTaskSource().set("path_prefix", "/out/file");
+        Schema schema = Schema.builder().add("id", LONG).add("name", STRING).build();
+        List<Optional<CommitReport>> inputReports = ImmutableList.of(
+                Optional.of(Exec.newCommitReport().set("records", 10L)),
+                Optional.<CommitReport>absent());
+        List<Optional<CommitReport>> outputReports = ImmutableList.of(
+                Optional.<CommitReport>absent(),
+                Optional.<CommitReport>absent());
+        ResumeState state = new ResumeState(execConfig, inputTask, outputTask,
+                schema, schema, inputReports, outputReports);
+
+        ModelManager model = Exec.getModelManager();
+        ResumeState loaded = model.readObject(ResumeState.class, model.writeObjectAsBytes(state));
+
+        assertEquals(execConfig, loaded.getExecSessionConfigSource());
+        assertEquals(inputTask, loaded.getInputTaskSource());
+        assertEquals(outputTask, loaded.getOutputTaskSource());
+        assertEquals(schema, loaded.getInputSchema());
+        assertEquals(schema, loaded.getOutputSchema());
+        assertEquals(inputReports, loaded.getInputCommitReports());
+        assertEquals(2, loaded.getOutputCommitReports().size());
+        assertFalse(loaded.getOutputCommitReports().get(0).isPresent());
+    }
+}
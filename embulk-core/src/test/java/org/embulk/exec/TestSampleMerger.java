@@ -0,0 +1,57 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import org.embulk.spi.Buffer;
+import org.junit.Test;
+
+public class TestSampleMerger
+{
+    private static String merge(String... samples)
+    {
+        ImmutableList.Builder<Buffer> builder = ImmutableList.builder();
+        for (String sample : samples) {
+            builder.add(Buffer.copyOf(sample.getBytes()));
+        }
+        Buffer merged = SampleMerger.merge(builder.build());
+        return new String(merged.array(), merged.offset(), merged.limit());
+    }
+
+    @Test
+    public void testSingleSample()
+    {
+        Buffer sample = Buffer.copyOf("a,b\n1,2\n3,".getBytes());
+        assertSame(sample, SampleMerger.merge(ImmutableList.of(sample)));
+    }
+
+    @Test
+    public void testCutTruncatedLines()
+    {
+        assertEquals("1,2\n3,4\n5,6\n", merge("1,2\n3,4\n5,", "5,6\n7,"));
+    }
+
+    @Test
+    public void testSkipHeaders()
+    {
+        assertEquals("id,name\r\n1,a\r\n2,b\r\n3,c\r\n",
+                merge("id,name\r\n1,a\r\n2,", "id,name\r\n2,b\r\n3,c\r\n4", "id,name\r\n"));
+    }
+
+    @Test
+    public void testSkipSamplesWithoutLineBreaks()
+    {
+        assertEquals("1,2\n", merge("1,2\n", "3,4"));
+        assertEquals("binary", merge("binary", "1,2\n"));
+    }
+
+    @Test
+    public void testBufferOffset()
+    {
+        byte[] bytes = "xx1,2\n3,4\nyy".getBytes();
+        List<Buffer> samples = ImmutableList.of(Buffer.wrap(bytes, 2, 8), Buffer.copyOf("5,6\n".getBytes()));
+        Buffer merged = SampleMerger.merge(samples);
+        assertEquals("1,2\n3,4\n5,6\n", new String(merged.array(), merged.offset(), merged.limit()));
+    }
+}
@@ -0,0 +1,43 @@
+package org.embulk.jruby;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import org.joda.time.DateTimeZone;
+import org.jruby.embed.ScriptingContainer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.time.TimestampParser;
+
+public class TestJRubyInitializer
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void testLazyInitialization() throws Exception
+    {
+        ScriptingContainer jruby = runtime.getInstance(ScriptingContainer.class);
+        assertFalse(jruby.getProvider().isRuntimeInitialized());
+
+        // StrptimeParser supports this format
+        new TimestampParser(jruby, "%Y-%m-%d %H:%M:%S", DateTimeZone.UTC).parse("2015-01-01 00:00:00");
+        assertFalse(jruby.getProvider().isRuntimeInitialized());
+
+        // StrptimeParser doesn't support %j
+        TimestampParser parser = new TimestampParser(jruby, "%Y-%j", DateTimeZone.UTC);
+        assertTrue(jruby.getProvider().isRuntimeInitialized());
+        assertEquals(1420070400L, parser.parse("2015-001").getEpochSecond());
+    }
+
+    @Test
+    public void testInitializeOnce()
+    {
+        ScriptingContainer jruby = runtime.getInstance(ScriptingContainer.class);
+        JRubyInitializer.initialize(jruby);
+        Object plugin = jruby.runScriptlet("Embulk::Plugin");
+        JRubyInitializer.initialize(jruby);
+        assertTrue(plugin == jruby.runScriptlet("Embulk::Plugin"));
+    }
+}
@@ -0,0 +1,71 @@
+package org.embulk.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.junit.Test;
+import org.embulk.config.ConfigException;
+
+public class TestPluginManager
+{
+    private static class CountingPluginSource
+            implements PluginSource
+    {
+        private final String name;
+        private final Object plugin;
+        private int calls;
+
+        CountingPluginSource(String name, Object plugin)
+        {
+            this.name = name;
+            this.plugin = plugin;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T newPlugin(Class<T> iface, PluginType type) throws PluginSourceNotMatchException
+        {
+            calls++;
+            if (!type.getName().equals(name)) {
+                throw new PluginSourceNotMatchException();
+            }
+            return (T) plugin;
+        }
+    }
+
+    @Test
+    public void testCacheMatchedSource()
+    {
+        CountingPluginSource a = new CountingPluginSource("a", "pluginA");
+        CountingPluginSource b = new CountingPluginSource("b", "pluginB");
+        Set<PluginSource> sources = new LinkedHashSet<>();
+        sources.add(a);
+        sources.add(b);
+        PluginManager manager = new PluginManager(sources, null);
+
+        for (int i = 0; i < 3; i++) {
+            assertSame("pluginB", manager.newPlugin(Object.class, new PluginType("b")));
+        }
+        // a is asked only once
+        assertEquals(1, a.calls);
+        assertEquals(3, b.calls);
+
+        // iface is a part of the key
+        assertSame("pluginB", manager.newPlugin(String.class, new PluginType("b")));
+        assertEquals(2, a.calls);
+    }
+
+    @Test
+    public void testNotFound()
+    {
+        Set<PluginSource> sources = new LinkedHashSet<>();
+        sources.add(new CountingPluginSource("a", "pluginA"));
+        PluginManager manager = new PluginManager(sources, null);
+        try {
+            manager.newPlugin(Object.class, new PluginType("x"));
+            fail();
+        } catch (ConfigException ex) {
+        }
+    }
+}
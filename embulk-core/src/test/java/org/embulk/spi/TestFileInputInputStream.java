@@ -2,6 +2,7 @@ package org.embulk.spi;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import java.io.ByteArrayOutputStream;
 import java.util.Random;
 import org.junit.Rule;
@@ -65,6 +66,52 @@ public class TestFileInputInputStream
         assertArrayEquals(expected, actual);
     }
 
+    @Test
+    public void testPollBuffer() throws Exception
+    {
+        newOutputStream();
+        out.nextFile();
+        out.write("abcdef".getBytes());
+        out.flush();
+        out.write("ghi".getBytes());
+        out.finish();
+
+        newInputStream();
+        in.nextFile();
+        assertEquals('a', in.read());
+
+        // returns unread bytes without copying
+        Buffer buffer = in.pollBuffer();
+        assertEquals("bcdef", new String(buffer.array(), buffer.offset(), buffer.limit()));
+
+        // gives back bytes after "bc"
+        buffer.offset(buffer.offset() + 2);
+        in.unreadBuffer(buffer);
+        byte[] b = new byte[3];
+        assertEquals(3, in.read(b, 0, 3));
+        assertEquals("def", new String(b));
+
+        buffer = in.pollBuffer();
+        assertEquals("ghi", new String(buffer.array(), buffer.offset(), buffer.limit()));
+        buffer.release();
+        assertNull(in.pollBuffer());
+        assertEquals(-1, in.read());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnreadBufferWithRemainingBytes() throws Exception
+    {
+        newOutputStream();
+        out.nextFile();
+        out.write("abc".getBytes());
+        out.finish();
+
+        newInputStream();
+        in.nextFile();
+        in.read();
+        in.unreadBuffer(Buffer.copyOf("x".getBytes()));
+    }
+
     @Test
     public void testSkipReturnsZeroForNoData() {
         FileInputInputStream in = new FileInputInputStream(new MockFileInput());
@@ -316,4 +316,28 @@ public class TestPageBuilderReader
         builder.flush();
         builder.flush();
     }
+
+    @Test
+    public void testFlushInPreview() throws Exception
+    {
+        final MockPageOutput output = new MockPageOutput();
+        Exec.doWith(runtime.getExec().forPreview(3), new ExecAction<Void>() {
+            public Void run()
+            {
+                builder = new PageBuilder(bufferAllocator,
+                        Schema.builder().add("col1", LONG).build(), output);
+                for (int i = 0; i < 7; i++) {
+                    builder.setLong(0, i);
+                    builder.addRecord();
+                }
+                builder.finish();
+                return null;
+            }
+        });
+
+        assertEquals(3, output.pages.size());
+        assertEquals(3, PageReader.getRecordCount(output.pages.get(0)));
+        assertEquals(3, PageReader.getRecordCount(output.pages.get(1)));
+        assertEquals(1, PageReader.getRecordCount(output.pages.get(2)));
+    }
 }
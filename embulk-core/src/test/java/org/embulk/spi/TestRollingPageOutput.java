@@ -0,0 +1,147 @@
+package org.embulk.spi;
+
+import static org.embulk.spi.type.Types.STRING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestRollingPageOutput
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private final Schema schema = Schema.builder().add("col1", STRING).build();
+
+    // writes a header and a line for each record
+    private static class LineFormatterPlugin
+            implements FormatterPlugin
+    {
+        private int finishCount = 0;
+
+        @Override
+        public void transaction(ConfigSource config, Schema schema, FormatterPlugin.Control control)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PageOutput open(TaskSource taskSource, final Schema schema, final FileOutput output)
+        {
+            output.nextFile();
+            output.add(Buffer.copyOf("header\n".getBytes()));
+            return new PageOutput() {
+                public void add(Page page)
+                {
+                    try (PageReader reader = new PageReader(schema)) {
+                        reader.setPage(page);
+                        while (reader.nextRecord()) {
+                            output.add(Buffer.copyOf((reader.getString(schema.getColumn(0)) + "\n").getBytes()));
+                        }
+                    }
+                }
+
+                public void finish()
+                {
+                    finishCount++;
+                    output.finish();
+                }
+
+                public void close()
+                {
+                    output.close();
+                }
+            };
+        }
+    }
+
+    private List<String> run(LineFormatterPlugin formatter, MockFileOutput fileOutput,
+            long fileSizeThreshold, long maxFileRecords, int pages, int recordsPerPage)
+    {
+        RollingPageOutput output = new RollingPageOutput(formatter, null, schema, fileOutput, fileSizeThreshold, maxFileRecords);
+        for (int i = 0; i < pages; i++) {
+            Object[] values = new Object[recordsPerPage];
+            for (int j = 0; j < recordsPerPage; j++) {
+                values[j] = "r" + (i * recordsPerPage + j);
+            }
+            for (Page page : PageTestUtils.buildPage(runtime.getBufferAllocator(), schema, values)) {
+                output.add(page);
+            }
+        }
+        output.finish();
+        output.close();
+
+        List<String> files = new ArrayList<String>();
+        for (List<Buffer> buffers : fileOutput.getFiles()) {
+            StringBuilder sb = new StringBuilder();
+            for (Buffer buffer : buffers) {
+                sb.append(new String(buffer.array(), buffer.offset(), buffer.limit()));
+            }
+            files.add(sb.toString());
+        }
+        return files;
+    }
+
+    @Test
+    public void testRollByRecords()
+    {
+        LineFormatterPlugin formatter = new LineFormatterPlugin();
+        MockFileOutput fileOutput = new MockFileOutput();
+        List<String> files = run(formatter, fileOutput, 0, 4, 5, 2);
+
+        assertEquals(3, files.size());
+        assertEquals("header\nr0\nr1\nr2\nr3\n", files.get(0));
+        assertEquals("header\nr4\nr5\nr6\nr7\n", files.get(1));
+        assertEquals("header\nr8\nr9\n", files.get(2));
+        assertEquals(3, formatter.finishCount);
+        assertTrue(fileOutput.isFinished());
+        assertTrue(fileOutput.isClosed());
+    }
+
+    @Test
+    public void testSplitPageByRecords()
+    {
+        LineFormatterPlugin formatter = new LineFormatterPlugin();
+        MockFileOutput fileOutput = new MockFileOutput();
+        // each page has more records than a file can take
+        List<String> files = run(formatter, fileOutput, 0, 3, 2, 5);
+
+        assertEquals(4, files.size());
+        assertEquals("header\nr0\nr1\nr2\n", files.get(0));
+        assertEquals("header\nr3\nr4\nr5\n", files.get(1));
+        assertEquals("header\nr6\nr7\nr8\n", files.get(2));
+        assertEquals("header\nr9\n", files.get(3));
+        assertEquals(4, formatter.finishCount);
+        assertTrue(fileOutput.isFinished());
+        assertTrue(fileOutput.isClosed());
+    }
+
+    @Test
+    public void testRollBySize()
+    {
+        LineFormatterPlugin formatter = new LineFormatterPlugin();
+        MockFileOutput fileOutput = new MockFileOutput();
+        // a header is 7 bytes and each page is 6 bytes. a file reaches 19 bytes with 2 pages
+        List<String> files = run(formatter, fileOutput, 19, 0, 4, 2);
+
+        assertEquals(2, files.size());
+        assertEquals("header\nr0\nr1\nr2\nr3\n", files.get(0));
+        assertEquals("header\nr4\nr5\nr6\nr7\n", files.get(1));
+    }
+
+    @Test
+    public void testNoEmptyFile()
+    {
+        LineFormatterPlugin formatter = new LineFormatterPlugin();
+        MockFileOutput fileOutput = new MockFileOutput();
+        List<String> files = run(formatter, fileOutput, 0, 2, 2, 2);
+
+        assertEquals(2, files.size());
+        assertEquals("header\nr2\nr3\n", files.get(1));
+    }
+}
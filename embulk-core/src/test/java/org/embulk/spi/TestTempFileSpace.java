@@ -0,0 +1,137 @@
+package org.embulk.spi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.exec.TempFileAllocator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestTempFileSpace
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private List<File> newDirs(int count)
+    {
+        ImmutableList.Builder<File> builder = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            builder.add(new File(temp.getRoot(), "dir" + i + "/space"));
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testRoundRobin()
+    {
+        List<File> dirs = newDirs(3);
+        TempFileSpace space = new TempFileSpace(dirs, TempFileSpace.DirectorySelection.ROUND_ROBIN, 0);
+        for (int i = 0; i < 6; i++) {
+            File file = space.createTempFile();
+            assertEquals(dirs.get(i % 3), file.getParentFile());
+        }
+    }
+
+    @Test
+    public void testFreeSpace()
+    {
+        List<File> dirs = newDirs(2);
+        TempFileSpace space = new TempFileSpace(dirs, TempFileSpace.DirectorySelection.FREE_SPACE, 0);
+        // directories on the same disk have the same usable space
+        assertTrue(dirs.contains(space.createTempFile().getParentFile()));
+    }
+
+    @Test
+    public void testQuota() throws IOException
+    {
+        List<File> dirs = newDirs(2);
+        TempFileSpace space = new TempFileSpace(dirs, TempFileSpace.DirectorySelection.ROUND_ROBIN, 100);
+
+        File file0 = space.createTempFile();
+        Files.write(file0.toPath(), new byte[100]);
+        assertEquals(dirs.get(0), file0.getParentFile());
+
+        // dir0 is full
+        File file1 = space.createTempFile();
+        assertEquals(dirs.get(1), file1.getParentFile());
+        assertEquals(dirs.get(1), space.createTempFile().getParentFile());
+
+        Files.write(file1.toPath(), new byte[100]);
+        try {
+            space.createTempFile();
+            fail();
+        } catch (TempFileException ex) {
+        }
+
+        // deleted files don't use the quota
+        Files.delete(file0.toPath());
+        assertEquals(dirs.get(0), space.createTempFile().getParentFile());
+    }
+
+    @Test
+    public void testDeletedFilesAreForgotten() throws IOException
+    {
+        List<File> dirs = newDirs(1);
+        TempFileSpace space = new TempFileSpace(dirs, TempFileSpace.DirectorySelection.ROUND_ROBIN, 100);
+        for (int i = 0; i < 1000; i++) {
+            File file = space.createTempFile();
+            Files.write(file.toPath(), new byte[99]);
+            Files.delete(file.toPath());
+        }
+        File file = space.createTempFile();
+        Files.write(file.toPath(), new byte[100]);
+        try {
+            space.createTempFile();
+            fail();
+        } catch (TempFileException ex) {
+        }
+    }
+
+    @Test
+    public void testCleanup()
+    {
+        List<File> dirs = newDirs(3);
+        TempFileSpace space = new TempFileSpace(dirs, TempFileSpace.DirectorySelection.ROUND_ROBIN, 0);
+        for (int i = 0; i < 6; i++) {
+            space.createTempFile();
+        }
+        space.cleanup();
+        for (File dir : dirs) {
+            assertFalse(dir.exists());
+        }
+
+        // the space is usable after cleanup
+        assertTrue(space.createTempFile().exists());
+    }
+
+    @Test
+    public void testAllocatorTempDirs()
+    {
+        String dir0 = new File(temp.getRoot(), "a").getPath();
+        String dir1 = new File(temp.getRoot(), "b").getPath();
+
+        TempFileAllocator allocator = new TempFileAllocator(Exec.newConfigSource()
+                .set("temp_dirs", ImmutableList.of(dir0, dir1)));
+        TempFileSpace space = allocator.newSpace("sub");
+        assertEquals(new File(dir0, "sub"), space.createTempFile().getParentFile());
+        assertEquals(new File(dir1, "sub"), space.createTempFile().getParentFile());
+
+        // comma-separated string given by -X option
+        allocator = new TempFileAllocator(Exec.newConfigSource()
+                .set("temp_dirs", dir1 + "," + dir0)
+                .set("temp_dir_quota", "1MB"));
+        space = allocator.newSpace("sub");
+        assertEquals(new File(dir1, "sub"), space.createTempFile().getParentFile());
+    }
+}
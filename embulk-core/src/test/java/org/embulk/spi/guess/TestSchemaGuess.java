@@ -0,0 +1,56 @@
+package org.embulk.spi.guess;
+
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import org.embulk.spi.guess.SchemaGuess.TypeMatch;
+import org.junit.Test;
+
+public class TestSchemaGuess
+{
+    private static TypeMatch type(String name)
+    {
+        return new TypeMatch(name, null);
+    }
+
+    @Test
+    public void testGuessType()
+    {
+        assertEquals("boolean", SchemaGuess.guessType("true"));
+        assertEquals("boolean", SchemaGuess.guessType("N"));
+        assertEquals("long", SchemaGuess.guessType("-12"));
+        assertEquals("string", SchemaGuess.guessType("+12"));
+        assertEquals("string", SchemaGuess.guessType("012"));
+        assertEquals("double", SchemaGuess.guessType("1.5"));
+        assertEquals("string", SchemaGuess.guessType("1.05"));
+        assertEquals("timestamp", SchemaGuess.guessType("2015-01-01"));
+        assertEquals(null, SchemaGuess.guessType(""));
+    }
+
+    @Test
+    public void testMergeTypes()
+    {
+        List<List<String>> samples = ImmutableList.<List<String>>of(
+                Arrays.asList("1", "1", "true", "2015-01-01 00:00:00", "a", null),
+                Arrays.asList("2", "1.5", "1", "2015-01-02 00:00:00", "1"),
+                Arrays.asList("", "2", "0", "2015-01-03 00:00:00", "b", null));
+        assertEquals(ImmutableList.of(
+                    type("long"), type("double"), type("long"),
+                    new TypeMatch("timestamp", "%Y-%m-%d %H:%M:%S"), type("string"), type("string")),
+                SchemaGuess.typesFromArrayRecords(samples));
+    }
+
+    @Test
+    public void testParallel()
+    {
+        List<List<String>> samples = new ArrayList<List<String>>();
+        for (int i = 0; i < 5000; i++) {
+            samples.add(Arrays.asList(Integer.toString(i), "name" + i, i + ".5", "2015-01-01"));
+        }
+        assertEquals(ImmutableList.of(
+                    type("long"), type("string"), type("double"), new TypeMatch("timestamp", "%Y-%m-%d")),
+                SchemaGuess.typesFromArrayRecords(samples));
+    }
+}
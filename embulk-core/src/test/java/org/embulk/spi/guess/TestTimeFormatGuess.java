@@ -0,0 +1,81 @@
+package org.embulk.spi.guess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class TestTimeFormatGuess
+{
+    private static void assertGuess(String format, String... texts)
+    {
+        assertEquals(format, TimeFormatGuess.guess(Arrays.asList(texts)));
+    }
+
+    @Test
+    public void testFormatDelims()
+    {
+        assertGuess("%Y-%m-%d %H:%M:%S.%N", "2014-01-01 01:01:01.000000001");
+        assertGuess("%Y-%m-%d %H:%M:%S.%L", "2014-01-01 01:01:01.001");
+        assertGuess("%Y-%m-%d %H:%M", "2014-01-01 01:01");
+        assertGuess("%Y/%m/%d %H-%M-%S,%N", "2014/01/01 01-01-01,000001");
+        assertGuess("%Y.%m.%d.%H:%M:%S", "2014.01.01.01:01:01");
+        assertGuess("%Y%m%d", "20140101");
+        assertGuess("%Y%m%d%H%M%S", "20140101010101");
+        assertGuess("%Y-%m-%d %k:%M:%S", "2014-01-01 1:01:01");
+    }
+
+    @Test
+    public void testFormatYmdOrders()
+    {
+        assertGuess("%Y-%m-%d", "2014-01-01");
+        assertGuess("%m/%d/%Y", "01/01/2014");
+        assertGuess("%m.%d.%Y", "01.01.2014");
+        assertGuess("%d/%m/%Y", "13/01/2014");
+        assertGuess("%d/%m/%Y %H-%M-%S,%L", "21/01/2014 01-01-01,001");
+    }
+
+    @Test
+    public void testFormatIso8601()
+    {
+        assertGuess("%Y-%m-%dT%H", "2007-04-06T13");
+        assertGuess("%Y-%m-%dT%H:%M", "2007-04-05T24:00");
+        assertGuess("%Y-%m-%dT%H:%M:%S%z", "2007-04-06T13:47:30Z");
+        assertGuess("%Y-%m-%dT%H:%M:%S%z", "2007-04-06T13:47:30+00:00");
+        assertGuess("%Y-%m-%dT%H:%M:%S%z", "2007-04-06T13:47:30-0130");
+    }
+
+    @Test
+    public void testFormatRfc2822()
+    {
+        assertGuess("%a, %d %b %Y %H:%M:%S %Z", "Fri, 20 Feb 2015 14:02:34 PST");
+        assertGuess("%d %b %Y %H:%M %Z", "20 Feb 2015 22:02 GMT");
+        assertGuess("%d %b %Y", "20 Feb 2015");
+        assertGuess("%a, %d %b %Y %H:%M %z", "Fri, 20 Feb 2015 22:02 +00:00");
+    }
+
+    @Test
+    public void testFormatStandardPatterns()
+    {
+        assertGuess("%d/%b/%Y:%H:%M:%S %z", "07/Mar/2004:16:05:50 -0800");
+        assertGuess("%a %b %e %H:%M:%S %Y", "Fri May 11 21:44:53 2001");
+    }
+
+    @Test
+    public void testMerge()
+    {
+        assertGuess("%Y-%m-%d %H:%M:%S", "2014-01-01", "2014-01-01 00:00:00", "2014-01-01 00:00:00");
+        // DMY has higher priority than MDY
+        assertGuess("%d/%m/%Y", "01/01/2014", "01/01/2014", "13/01/2014");
+        // but frequency is more important if delimiter is different
+        assertGuess("%m/%d/%Y", "01/01/2014", "01/01/2014", "13.01.2014");
+    }
+
+    @Test
+    public void testNoMatch()
+    {
+        assertNull(TimeFormatGuess.guess("abc"));
+        assertNull(TimeFormatGuess.guess("2014-01-01 abc"));
+        assertNull(TimeFormatGuess.guess(Arrays.asList("", null)));
+    }
+}
@@ -0,0 +1,81 @@
+package org.embulk.spi.time;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.Locale;
+import java.util.Random;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+public class TestStrftimeFormatter
+{
+    private static final String[] FORMATS = new String[] {
+        "%Y-%m-%d %H:%M:%S.%N %z",
+        "%Y-%m-%d %H:%M:%S.%6N %Z",
+        "%Y%m%dT%H%M%S.%L%:z",
+        "%s.%3N %% %1N",
+    };
+
+    private static final DateTimeZone[] ZONES = new DateTimeZone[] {
+        DateTimeZone.UTC,
+        DateTimeZone.forID("+09:00"),
+        DateTimeZone.forID("-03:30"),
+        DateTimeZone.forID("America/Los_Angeles"),
+        DateTimeZone.forID("Asia/Tokyo"),
+    };
+
+    @Test
+    public void testCompile()
+    {
+        assertTrue(StrftimeFormatter.compile("%Y-%m-%d %H:%M:%S.%6N %z", DateTimeZone.UTC) != null);
+        assertTrue(StrftimeFormatter.compile("%Y-%m-%d %Z", DateTimeZone.UTC) != null);
+        assertNull(StrftimeFormatter.compile("%Y-%m-%d %Z", DateTimeZone.forID("Asia/Tokyo")));
+        assertNull(StrftimeFormatter.compile("%b %e", DateTimeZone.UTC));
+        assertNull(StrftimeFormatter.compile("%12N", DateTimeZone.UTC));
+        assertNull(StrftimeFormatter.compile("%3S", DateTimeZone.UTC));
+    }
+
+    @Test
+    public void testOutOfRange()
+    {
+        StrftimeFormatter formatter = StrftimeFormatter.compile("%Y", DateTimeZone.UTC);
+        StringBuilder sb = new StringBuilder();
+        assertFalse(formatter.format(-62170156800L, 0, sb));
+        assertEquals(0, sb.length());
+    }
+
+    @Test
+    public void testSameResultsAsRubyDateFormat()
+    {
+        Random random = new Random(1);
+        for (String format : FORMATS) {
+            for (DateTimeZone zone : ZONES) {
+                StrftimeFormatter formatter = StrftimeFormatter.compile(format, zone);
+                if (formatter == null) {
+                    continue;
+                }
+                long sec = 1425805200L;  // 2015-03-08 09:00:00 UTC
+                for (int i = 0; i < 2000; i++) {
+                    sec += i < 1000 ? random.nextInt(600) : random.nextInt(100000000);
+                    int nano = random.nextInt(1000000000);
+                    StringBuilder sb = new StringBuilder();
+                    assertTrue(formatter.format(sec, nano, sb));
+                    assertEquals(format + " " + zone + " " + sec, formatWithRubyDateFormat(format, zone, sec, nano), sb.toString());
+                }
+            }
+        }
+    }
+
+    // RubyDateFormat is deprecated but it's what TimestampFormatter falls back to
+    @SuppressWarnings("deprecation")
+    private static String formatWithRubyDateFormat(String format, DateTimeZone zone, long sec, int nano)
+    {
+        org.jruby.util.RubyDateFormat dateFormat = new org.jruby.util.RubyDateFormat(format, Locale.ENGLISH, true);
+        dateFormat.setDateTime(new DateTime(sec * 1000, zone));
+        dateFormat.setNSec(nano);
+        return dateFormat.format(null);
+    }
+}
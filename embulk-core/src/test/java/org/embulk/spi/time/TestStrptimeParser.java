@@ -0,0 +1,105 @@
+package org.embulk.spi.time;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.joda.time.DateTimeZone;
+import org.jruby.embed.ScriptingContainer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.Task;
+import org.embulk.jruby.JRubyInitializer;
+import org.embulk.spi.Exec;
+
+public class TestStrptimeParser
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private interface ParserTestTask
+            extends Task, TimestampParser.Task
+    { }
+
+    @Test
+    public void testCompile()
+    {
+        assertTrue(StrptimeParser.compile("%Y-%m-%d %H:%M:%S.%N %z") != null);
+        assertTrue(StrptimeParser.compile("%Y-%m-%dT%H:%M:%S%z") != null);
+        assertNull(StrptimeParser.compile("%s"));
+        assertNull(StrptimeParser.compile("%b %e %Y"));
+        assertTrue(StrptimeParser.compile("%Y%m%d") != null);
+        assertNull(StrptimeParser.compile("%N%H"));
+        assertNull(StrptimeParser.compile("%Y-%m-%d%"));
+    }
+
+    @Test
+    public void testRejectsNonCanonicalText()
+    {
+        StrptimeParser parser = StrptimeParser.compile("%Y-%m-%d %H:%M:%S %z");
+        assertTrue(parser.parse("2014-11-19 02:46:29 +0900"));
+        assertFalse(parser.parse("2014-11-19 2:46:29 +0900"));
+        assertFalse(parser.parse("2014-11-19 02:46:29 +09"));
+        assertFalse(parser.parse("2014-11-19 02:46:29 +0900 "));
+        assertFalse(parser.parse("2014-02-30 02:46:29 +0900"));
+        assertFalse(parser.parse("2014-11-19 24:00:00 +0900"));
+        assertFalse(parser.parse("2014-11-19 02:46:29 UTC+9"));
+        assertFalse(parser.parse("1969-12-31 23:59:59 UTC"));
+    }
+
+    @Test
+    public void testNanoseconds()
+    {
+        StrptimeParser parser = StrptimeParser.compile("%H:%M:%S.%N");
+        assertTrue(parser.parse("00:00:01.123456789"));
+        assertEquals(1L, parser.getLocalSecond());
+        assertEquals(123456789, parser.getNano());
+        assertTrue(parser.parse("00:00:01.5"));
+        assertEquals(500000000, parser.getNano());
+    }
+
+    @Test
+    public void testSameResultsAsJRuby() throws Exception
+    {
+        ScriptingContainer jruby = JRubyInitializer.initialize(Exec.newConfigSource().loadConfig(ParserTestTask.class).getJRuby());
+        check(jruby, "%Y-%m-%d %H:%M:%S.%N %z", "2014-11-19 02:46:29.123456 +0900");
+        check(jruby, "%Y-%m-%d %H:%M:%S.%N %z", "2014-11-19 02:46:29.5 -03:30");
+        check(jruby, "%Y-%m-%d %H:%M:%S.%N %z", "2014-11-19 02:46:29.1234567 +0900");
+        check(jruby, "%Y-%m-%d %H:%M:%S.%N %z", "2014-11-19 02:46:29.12345678 +0900");
+        check(jruby, "%Y-%m-%d %H:%M:%S.%N", "2014-11-19 02:46:29.123456789");
+        check(jruby, "%Y-%m-%d %H:%M:%S %Z", "2014-11-19 02:46:29 UTC");
+        check(jruby, "%Y-%m-%d %H:%M:%S %Z", "2014-11-19 02:46:29 PST");
+        check(jruby, "%Y-%m-%d %H:%M:%S %Z", "2016-02-29 23:59:59 Asia");
+        check(jruby, "%Y-%m-%dT%H:%M:%S%z", "2000-03-01T00:00:00Z");
+        check(jruby, "%Y/%m/%d", "2015/07/31");
+        check(jruby, "%H:%M", "12:34");
+        check(jruby, "%d/%m/%Y:%H:%M:%S", "31/12/2099:23:59:59");
+        check(jruby, "%Y%m%d%H%M%S", "20150731235958");
+    }
+
+    private void check(ScriptingContainer jruby, String format, String text) throws Exception
+    {
+        StrptimeParser strptime = StrptimeParser.compile(format);
+        assertTrue(format, strptime != null);
+        assertTrue(text, strptime.parse(text));
+
+        JRubyTimeParserHelperFactory factory = (JRubyTimeParserHelperFactory) jruby.runScriptlet("Embulk::Java::TimeParserHelper::Factory.new");
+        JRubyTimeParserHelper helper = factory.newInstance(format, 1970, 1, 1, 0, 0, 0, 0);
+        long localUsec = helper.strptimeUsec(text);
+        DateTimeZone zone = helper.getZone() == null ? DateTimeZone.UTC : TimestampFormat.parseDateTimeZone(helper.getZone());
+        Timestamp expected = zone == null ? null : Timestamp.ofEpochSecond(
+                zone.convertLocalToUTC(localUsec / 1000000 * 1000, false) / 1000, localUsec % 1000000 * 1000);
+
+        TimestampParser parser = new TimestampParser(jruby, format, DateTimeZone.UTC);
+        if (expected == null) {
+            try {
+                parser.parse(text);
+                assertTrue(text, false);
+            } catch (TimestampParseException ex) {
+            }
+        } else {
+            assertEquals(text, expected, parser.parse(text));
+        }
+    }
+}
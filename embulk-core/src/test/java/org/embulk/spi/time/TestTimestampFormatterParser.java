@@ -10,6 +10,9 @@ import org.embulk.config.Config;
 import org.embulk.config.ConfigSource;
 import org.embulk.spi.Exec;
 import org.embulk.EmbulkTestRuntime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 
 public class TestTimestampFormatterParser
 {
@@ -60,4 +63,48 @@ public class TestTimestampFormatterParser
         TimestampParser parser = new TimestampParser(ptask);
         assertEquals(Timestamp.ofEpochSecond(1416365189), parser.parse("1416365189"));
     }
+
+    @Test
+    public void testParseCache() throws Exception
+    {
+        ConfigSource config = Exec.newConfigSource()
+            .set("default_timestamp_format", "%Y-%m-%d %H:%M:%S %Z");
+        ParserTestTask task = config.loadConfig(ParserTestTask.class);
+
+        TimestampParser parser = new TimestampParser(task);
+        for (int i = 0; i < 10; i++) {
+            String text = String.format("2014-11-19 02:46:%02d UTC", i);
+            assertEquals(Timestamp.ofEpochSecond(1416365160 + i, 0), parser.parse(text));
+        }
+        assertEquals(0.9, parser.getDatePrefixCacheHitRatio(), 0.001);
+        assertEquals(0.9, parser.getZoneCacheHitRatio(), 0.001);
+        assertEquals(0.9, parser.getOffsetCacheHitRatio(), 0.001);
+    }
+
+    @Test
+    public void testParseCacheAroundDstTransition() throws Exception
+    {
+        ConfigSource config = Exec.newConfigSource()
+            .set("default_timestamp_format", "%Y-%m-%d %H:%M:%S")
+            .set("default_timezone", "America/Los_Angeles");
+        ParserTestTask task = config.loadConfig(ParserTestTask.class);
+
+        TimestampParser parser = new TimestampParser(task);
+        DateTimeZone zone = DateTimeZone.forID("America/Los_Angeles");
+        DateTimeFormatter local = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss").withZoneUTC();
+        for (String text : new String[] {
+                    "2015-03-08 01:59:59",
+                    "2015-03-08 02:30:00",
+                    "2015-03-08 03:00:00",
+                    "2015-03-08 03:00:01",
+                    "2015-11-01 00:59:59",
+                    "2015-11-01 01:30:00",
+                    "2015-11-01 01:59:59",
+                    "2015-11-01 02:00:00",
+                    "2015-11-01 02:00:01",
+                }) {
+            long utc = zone.convertLocalToUTC(local.parseMillis(text), false);
+            assertEquals(text, Timestamp.ofEpochSecond(utc / 1000, 0), parser.parse(text));
+        }
+    }
 }
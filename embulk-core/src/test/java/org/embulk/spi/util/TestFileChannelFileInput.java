@@ -0,0 +1,78 @@
+package org.embulk.spi.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.Buffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestFileChannelFileInput
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testChannel() throws IOException
+    {
+        checkRead(FileChannelFileInput.Mode.CHANNEL, 1000, 300);
+        checkRead(FileChannelFileInput.Mode.CHANNEL, 100000, 1024 * 1024);
+    }
+
+    @Test
+    public void testMmap() throws IOException
+    {
+        checkRead(FileChannelFileInput.Mode.MMAP, 1000, 300);
+        checkRead(FileChannelFileInput.Mode.MMAP, 100000, 1024 * 1024);
+    }
+
+    @Test
+    public void testMmapMultipleRegions() throws IOException
+    {
+        // regions are mapped regardless of windowSize and released one by one
+        checkRead(FileChannelFileInput.Mode.MMAP, 100000, 300, 4096);
+        checkRead(FileChannelFileInput.Mode.MMAP, 4096 * 3, 1024 * 1024, 4096);
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException
+    {
+        checkRead(FileChannelFileInput.Mode.CHANNEL, 0, 300);
+        checkRead(FileChannelFileInput.Mode.MMAP, 0, 300);
+    }
+
+    private void checkRead(FileChannelFileInput.Mode mode, int size, int windowSize) throws IOException
+    {
+        checkRead(mode, size, windowSize, FileChannelFileInput.DEFAULT_MAP_SIZE);
+    }
+
+    private void checkRead(FileChannelFileInput.Mode mode, int size, int windowSize, int mapSize) throws IOException
+    {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        File file = temp.newFile();
+        Files.write(file.toPath(), data);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileChannelFileInput input = new FileChannelFileInput(runtime.getBufferAllocator(), file.toPath(), mode, windowSize, mapSize)) {
+            assertTrue(input.nextFile());
+            Buffer buffer;
+            while ((buffer = input.poll()) != null) {
+                out.write(buffer.array(), buffer.offset(), buffer.limit());
+                buffer.release();
+            }
+            assertFalse(input.nextFile());
+        }
+        assertArrayEquals(data, out.toByteArray());
+    }
+}
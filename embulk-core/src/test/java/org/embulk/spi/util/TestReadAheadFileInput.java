@@ -0,0 +1,153 @@
+package org.embulk.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.google.common.collect.ImmutableList;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileInput;
+import org.junit.Test;
+
+public class TestReadAheadFileInput
+{
+    private static List<Buffer> buffers(String... texts)
+    {
+        ImmutableList.Builder<Buffer> builder = ImmutableList.builder();
+        for (String text : texts) {
+            builder.add(Buffer.copyOf(text.getBytes()));
+        }
+        return builder.build();
+    }
+
+    private static String read(FileInput input)
+    {
+        StringBuilder sb = new StringBuilder();
+        Buffer buffer;
+        while ((buffer = input.poll()) != null) {
+            sb.append(new String(buffer.array(), buffer.offset(), buffer.limit()));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testFiles()
+    {
+        ListFileInput list = new ListFileInput(ImmutableList.of(
+                    buffers("a", "bc", "def"),
+                    buffers(),
+                    buffers("g", "hi")));
+        try (ReadAheadFileInput input = new ReadAheadFileInput(list, 2, 1024)) {
+            assertTrue(input.nextFile());
+            assertEquals("abcdef", read(input));
+            assertNull(input.poll());
+            assertTrue(input.nextFile());
+            assertEquals("", read(input));
+            assertTrue(input.nextFile());
+            assertEquals("ghi", read(input));
+            assertFalse(input.nextFile());
+            assertFalse(input.nextFile());
+        }
+    }
+
+    @Test
+    public void testSkipRestOfFile()
+    {
+        ListFileInput list = new ListFileInput(ImmutableList.of(
+                    buffers("a", "bc", "def"),
+                    buffers("g", "hi")));
+        try (ReadAheadFileInput input = new ReadAheadFileInput(list, 1, 1)) {
+            assertTrue(input.nextFile());
+            assertEquals("a", new String(input.poll().array()));
+            assertTrue(input.nextFile());
+            assertEquals("ghi", read(input));
+            assertFalse(input.nextFile());
+        }
+    }
+
+    @Test
+    public void testCloseBeforeEnd()
+    {
+        ListFileInput list = new ListFileInput(ImmutableList.of(
+                    buffers("a", "bc", "def"),
+                    buffers("g", "hi")));
+        ReadAheadFileInput input = new ReadAheadFileInput(list, 1, 1024);
+        assertTrue(input.nextFile());
+        input.close();
+    }
+
+    @Test
+    public void testStopDoesNotCloseInput() throws InterruptedException
+    {
+        final AtomicInteger polls = new AtomicInteger();
+        final AtomicBoolean closed = new AtomicBoolean();
+        FileInput endless = new FileInput() {
+            public boolean nextFile()
+            {
+                return true;
+            }
+
+            public Buffer poll()
+            {
+                polls.incrementAndGet();
+                return Buffer.copyOf("a".getBytes());
+            }
+
+            public void close()
+            {
+                closed.set(true);
+            }
+        };
+        ReadAheadFileInput input = new ReadAheadFileInput(endless, 1, 1024);
+        assertTrue(input.nextFile());
+        input.poll().release();
+        input.stop();
+        assertFalse(closed.get());
+
+        // the background thread doesn't read the input after stop
+        int count = polls.get();
+        Thread.sleep(50);
+        assertEquals(count, polls.get());
+
+        input.close();
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testException()
+    {
+        FileInput failing = new FileInput() {
+            private boolean opened;
+
+            public boolean nextFile()
+            {
+                if (opened) {
+                    return false;
+                }
+                opened = true;
+                return true;
+            }
+
+            public Buffer poll()
+            {
+                throw new IllegalStateException("read failure");
+            }
+
+            public void close()
+            { }
+        };
+        try (ReadAheadFileInput input = new ReadAheadFileInput(failing, 4, 1024)) {
+            assertTrue(input.nextFile());
+            try {
+                input.poll();
+                fail();
+            } catch (IllegalStateException ex) {
+                assertEquals("read failure", ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.embulk.spi.util;
+
+import static org.embulk.spi.type.Types.BOOLEAN;
+import static org.embulk.spi.type.Types.DOUBLE;
+import static org.embulk.spi.type.Types.LONG;
+import static org.embulk.spi.type.Types.STRING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageReader;
+import org.embulk.spi.Schema;
+import org.embulk.spi.TestPageBuilderReader.MockPageOutput;
+import org.embulk.spi.time.TimestampFormatter;
+import org.embulk.spi.time.TimestampParser;
+import org.embulk.spi.time.TimestampParseException;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestRecordCodecs
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private final Schema schema = Schema.builder()
+        .add("b", BOOLEAN)
+        .add("l", LONG)
+        .add("d", DOUBLE)
+        .add("s", STRING)
+        .build();
+
+    @Test
+    public void testParseAndPrint() throws TimestampParseException
+    {
+        RecordCodecs.ColumnParser[] parsers = RecordCodecs.newColumnParsers(schema,
+                new TimestampParser[schema.getColumnCount()], ImmutableSet.of("yes"));
+        RecordCodecs.ColumnPrinter[] printers = RecordCodecs.newColumnPrinters(schema,
+                new TimestampFormatter[schema.getColumnCount()]);
+        assertEquals(schema.getColumnCount(), parsers.length);
+        assertEquals(schema.getColumnCount(), printers.length);
+
+        List<String> values = ImmutableList.of("yes", "-12", "1.5", "abc");
+        MockPageOutput output = new MockPageOutput();
+        try (PageBuilder builder = new PageBuilder(runtime.getBufferAllocator(), schema, output)) {
+            for (int i = 0; i < parsers.length; i++) {
+                assertEquals(i, parsers[i].getColumn().getIndex());
+                parsers[i].parse(builder, values.get(i));
+            }
+            builder.addRecord();
+            builder.finish();
+        }
+
+        try (PageReader reader = new PageReader(schema)) {
+            reader.setPage(output.pages.get(0));
+            assertTrue(reader.nextRecord());
+            assertEquals("true", printers[0].print(reader));
+            assertEquals("-12", printers[1].print(reader));
+            assertEquals("1.5", printers[2].print(reader));
+            assertEquals("abc", printers[3].print(reader));
+
+            StringBuilder builder = new StringBuilder("prefix:");
+            for (RecordCodecs.ColumnPrinter printer : printers) {
+                printer.append(reader, builder);
+            }
+            assertEquals("prefix:true-121.5abc", builder.toString());
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseInvalidLong() throws TimestampParseException
+    {
+        RecordCodecs.ColumnParser[] parsers = RecordCodecs.newColumnParsers(schema,
+                new TimestampParser[schema.getColumnCount()], ImmutableSet.<String>of());
+        try (PageBuilder builder = new PageBuilder(runtime.getBufferAllocator(), schema, new MockPageOutput())) {
+            parsers[1].parse(builder, "x");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.embulk.spi.util;
+
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Exec;
+import org.embulk.EmbulkTestRuntime;
+
+public class TestSharedTaskValues
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void testListIsLoadedOnce()
+    {
+        TaskSource taskSource = Exec.newTaskSource().set("files", ImmutableList.of("a", "b"));
+        List<String> files = SharedTaskValues.getList(taskSource, "files", String.class);
+        assertEquals(ImmutableList.of("a", "b"), files);
+        assertSame(files, SharedTaskValues.getList(taskSource, "files", String.class));
+
+        // a shallow copy shares the list
+        TaskSource copy = Exec.newTaskSource().setAll(taskSource);
+        assertSame(files, SharedTaskValues.getList(copy, "files", String.class));
+
+        // a deep copy has another node
+        assertEquals(files, SharedTaskValues.getList(taskSource.deepCopy(), "files", String.class));
+    }
+
+    @Test
+    public void testListIsLoadedAgainAfterSet()
+    {
+        TaskSource taskSource = Exec.newTaskSource().set("files", ImmutableList.of("a", "b"));
+        SharedTaskValues.getList(taskSource, "files", String.class);
+        taskSource.set("files", ImmutableList.of("c"));
+        assertEquals(ImmutableList.of("c"), SharedTaskValues.getList(taskSource, "files", String.class));
+    }
+
+    @Test
+    public void testListIsImmutable()
+    {
+        TaskSource taskSource = Exec.newTaskSource().set("files", ImmutableList.of("a", "b"));
+        try {
+            SharedTaskValues.getList(taskSource, "files", String.class).set(0, "c");
+            fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        assertEquals(ImmutableList.of("a", "b"), SharedTaskValues.getList(taskSource, "files", String.class));
+    }
+
+    @Test
+    public void testCopySharesListsOnly()
+    {
+        TaskSource taskSource = Exec.newTaskSource().set("files", ImmutableList.of("a", "b"));
+        taskSource.getNestedOrSetEmpty("nested").set("key", "value");
+        List<String> files = SharedTaskValues.getList(taskSource, "files", String.class);
+
+        TaskSource copy = SharedTaskValues.copy(taskSource);
+        assertEquals(taskSource, copy);
+        assertSame(files, SharedTaskValues.getList(copy, "files", String.class));
+
+        copy.set("added", 1);
+        copy.getNested("nested").set("key", "changed");
+        assertFalse(taskSource.has("added"));
+        assertEquals("value", taskSource.getNested("nested").get(String.class, "key"));
+    }
+}
@@ -0,0 +1,96 @@
+package org.embulk.standards;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import com.github.luben.zstd.ZstdInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.embulk.config.Task;
+import org.embulk.config.TaskSource;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.ConfigInject;
+import org.embulk.spi.DecoderPlugin;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.util.FileInputInputStream;
+import org.embulk.spi.util.InputStreamFileInput;
+
+// decompresses each file with the codec selected by the magic number at the
+// head of the file, so that a directory with gzip, lz4, bzip2, zstd and plain
+// files can be read using one config. Files with unknown headers are read as is.
+public class AutoFileDecoderPlugin
+        implements DecoderPlugin
+{
+    private static final int MAGIC_LENGTH = 4;
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    public interface PluginTask
+            extends Task
+    {
+        @ConfigInject
+        public BufferAllocator getBufferAllocator();
+    }
+
+    @Override
+    public void transaction(ConfigSource config, DecoderPlugin.Control control)
+    {
+        PluginTask task = config.loadConfig(PluginTask.class);
+        control.run(task.dump());
+    }
+
+    @Override
+    public FileInput open(TaskSource taskSource, FileInput fileInput)
+    {
+        PluginTask task = taskSource.loadTask(PluginTask.class);
+        final FileInputInputStream files = new FileInputInputStream(fileInput);
+        return new InputStreamFileInput(
+                task.getBufferAllocator(),
+                new InputStreamFileInput.Provider() {
+                    public InputStream openNext() throws IOException
+                    {
+                        if (!files.nextFile()) {
+                            return null;
+                        }
+                        return openDecoder(new BufferedInputStream(FileInputStreams.currentFile(files)));
+                    }
+
+                    public void close() throws IOException
+                    {
+                        files.close();
+                    }
+                });
+    }
+
+    static InputStream openDecoder(BufferedInputStream in) throws IOException
+    {
+        byte[] magic = new byte[MAGIC_LENGTH];
+        in.mark(MAGIC_LENGTH);
+        int length = 0;
+        while (length < MAGIC_LENGTH) {
+            int n = in.read(magic, length, MAGIC_LENGTH - length);
+            if (n < 0) {
+                break;
+            }
+            length += n;
+        }
+        in.reset();
+
+        if (length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            // GZIPInputStream reads concatenated members
+            return new GZIPInputStream(in, GZIP_BUFFER_SIZE);
+        }
+        if (length >= 4 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h' && magic[3] >= '1' && magic[3] <= '9') {
+            return new BZip2CompressorInputStream(in, true);
+        }
+        if (length >= 4 && magic[0] == 0x04 && magic[1] == 0x22 && magic[2] == 0x4d && magic[3] == 0x18) {
+            return new FramedLZ4CompressorInputStream(in, true);
+        }
+        if (length >= 4 && magic[0] == 0x28 && (magic[1] & 0xff) == 0xb5 && magic[2] == 0x2f && (magic[3] & 0xff) == 0xfd) {
+            return new ZstdInputStream(in);
+        }
+        return in;
+    }
+}
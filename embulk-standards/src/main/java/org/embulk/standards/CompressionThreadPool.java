@@ -0,0 +1,61 @@
+package org.embulk.standards;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.google.common.base.Throwables;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecAction;
+
+/**
+ * Thread pool shared by encoders and decoders in the JVM to compress or
+ * decompress blocks concurrently. Threads are daemon threads.
+ *
+ * Threads are created when a job submits a block and inherit the
+ * ExecSession of the job. Blocks don't use Exec, so threads clear it not
+ * to keep the session as long as the pool lives.
+ */
+class CompressionThreadPool
+{
+    private static ExecutorService pool;
+
+    private CompressionThreadPool() { }
+
+    public static synchronized ExecutorService get()
+    {
+        if (pool == null) {
+            final AtomicInteger count = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                public Thread newThread(final Runnable r)
+                {
+                    Thread thread = new Thread(new Runnable() {
+                        public void run()
+                        {
+                            runWithoutSession(r);
+                        }
+                    }, "compression-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return pool;
+    }
+
+    private static void runWithoutSession(final Runnable r)
+    {
+        try {
+            Exec.doWith(null, new ExecAction<Void>() {
+                public Void run()
+                {
+                    r.run();
+                    return null;
+                }
+            });
+        } catch (ExecutionException ex) {
+            throw Throwables.propagate(ex.getCause());
+        }
+    }
+}
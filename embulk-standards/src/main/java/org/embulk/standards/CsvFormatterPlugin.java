@@ -6,14 +6,12 @@ import com.google.common.collect.ImmutableMap;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
 import org.embulk.spi.type.TimestampType;
-import org.embulk.spi.time.Timestamp;
 import org.embulk.spi.time.TimestampFormatter;
 import org.embulk.config.Task;
 import org.embulk.config.TaskSource;
 import org.embulk.config.ConfigSource;
 import org.embulk.spi.Column;
 import org.embulk.spi.Schema;
-import org.embulk.spi.ColumnVisitor;
 import org.embulk.spi.FormatterPlugin;
 import org.embulk.spi.Page;
 import org.embulk.spi.PageOutput;
@@ -21,6 +19,7 @@ import org.embulk.spi.PageReader;
 import org.embulk.spi.Exec;
 import org.embulk.spi.FileOutput;
 import org.embulk.spi.util.LineEncoder;
+import org.embulk.spi.util.RecordCodecs;
 import org.embulk.spi.util.Timestamps;
 
 import org.embulk.spi.util.Newline;
@@ -109,6 +108,7 @@ public class CsvFormatterPlugin
         final PluginTask task = taskSource.loadTask(PluginTask.class);
         final LineEncoder encoder = new LineEncoder(output, task);
         final TimestampFormatter[] timestampFormatters = Timestamps.newTimestampColumnFormatters(task, schema, task.getColumnOptions());
+        final RecordCodecs.ColumnPrinter[] columnPrinters = RecordCodecs.newColumnPrinters(schema, timestampFormatters);
         final char delimiter = task.getDelimiterChar();
         final QuotePolicy quotePolicy = task.getQuotePolicy();
         final char quote = task.getQuoteChar() != '\0' ? task.getQuoteChar() : '"';
@@ -127,80 +127,29 @@ public class CsvFormatterPlugin
         return new PageOutput() {
             private final PageReader pageReader = new PageReader(schema);
             private final String delimiterString = String.valueOf(delimiter);
+            private final StringBuilder valueBuffer = new StringBuilder();
 
             public void add(Page page)
             {
                 pageReader.setPage(page);
                 while (pageReader.nextRecord()) {
-                    schema.visitColumns(new ColumnVisitor() {
-                        public void booleanColumn(Column column)
-                        {
-                            addDelimiter(column);
-                            if (!pageReader.isNull(column)) {
-                                addValue(Boolean.toString(pageReader.getBoolean(column)));
-                            } else {
-                                addNullString();
-                            }
+                    for (RecordCodecs.ColumnPrinter printer : columnPrinters) {
+                        if (printer.getColumn().getIndex() != 0) {
+                            encoder.addText(delimiterString);
                         }
-
-                        public void longColumn(Column column)
-                        {
-                            addDelimiter(column);
-                            if (!pageReader.isNull(column)) {
-                                addValue(Long.toString(pageReader.getLong(column)));
-                            } else {
-                                addNullString();
-                            }
-                        }
-
-                        public void doubleColumn(Column column)
-                        {
-                            addDelimiter(column);
-                            if (!pageReader.isNull(column)) {
-                                addValue(Double.toString(pageReader.getDouble(column)));
-                            } else {
-                                addNullString();
-                            }
-                        }
-
-                        public void stringColumn(Column column)
-                        {
-                            addDelimiter(column);
-                            if (!pageReader.isNull(column)) {
-                                addValue(pageReader.getString(column));
-                            } else {
-                                addNullString();
-                            }
-                        }
-
-                        public void timestampColumn(Column column)
-                        {
-                            addDelimiter(column);
-                            if (!pageReader.isNull(column)) {
-                                Timestamp value = pageReader.getTimestamp(column);
-                                addValue(timestampFormatters[column.getIndex()].format(value));
-                            } else {
-                                addNullString();
-                            }
-                        }
-
-                        private void addDelimiter(Column column)
-                        {
-                            if (column.getIndex() != 0) {
-                                encoder.addText(delimiterString);
-                            }
-                        }
-
-                        private void addValue(String v)
-                        {
-                            encoder.addText(setEscapeAndQuoteValue(v, delimiter, quotePolicy, quote, escape, newlineInField, nullString));
-                        }
-
-                        private void addNullString()
-                        {
+                        if (pageReader.isNull(printer.getColumn())) {
                             encoder.addText(nullString);
+                            continue;
+                        }
+                        // formats values into a reused buffer and writes it without creating Strings
+                        valueBuffer.setLength(0);
+                        printer.append(pageReader, valueBuffer);
+                        if (requiresEscapeOrQuote(valueBuffer, delimiter, quotePolicy, quote, nullString)) {
+                            encoder.addText(setEscapeAndQuoteValue(valueBuffer.toString(), delimiter, quotePolicy, quote, escape, newlineInField, nullString));
+                        } else {
+                            encoder.addText(valueBuffer);
                         }
-                    });
+                    }
                     encoder.addNewLine();
                 }
             }
@@ -229,6 +178,21 @@ public class CsvFormatterPlugin
         encoder.addNewLine();
     }
 
+    // true if setEscapeAndQuoteValue changes the value
+    private static boolean requiresEscapeOrQuote(CharSequence v, char delimiter, QuotePolicy policy, char quote, String nullString)
+    {
+        if (policy == QuotePolicy.ALL || (policy == QuotePolicy.MINIMAL && nullString.contentEquals(v))) {
+            return true;
+        }
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == quote || c == '\r' || c == '\n' || c == delimiter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private String setEscapeAndQuoteValue(String v, char delimiter, QuotePolicy policy, char quote, char escape, String newline, String nullString)
     {
         StringBuilder escapedValue = new StringBuilder();
@@ -1,5 +1,8 @@
 package org.embulk.standards;
 
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -14,17 +17,17 @@ import org.embulk.config.TaskSource;
 import org.embulk.spi.type.TimestampType;
 import org.embulk.spi.time.TimestampParser;
 import org.embulk.spi.time.TimestampParseException;
-import org.embulk.spi.Column;
 import org.embulk.spi.ColumnConfig;
 import org.embulk.spi.Schema;
 import org.embulk.spi.SchemaConfig;
-import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.SchemaConfigException;
 import org.embulk.spi.PageBuilder;
 import org.embulk.spi.ParserPlugin;
 import org.embulk.spi.Exec;
 import org.embulk.spi.FileInput;
 import org.embulk.spi.PageOutput;
 import org.embulk.spi.util.LineDecoder;
+import org.embulk.spi.util.RecordCodecs;
 import org.embulk.spi.util.Timestamps;
 import org.slf4j.Logger;
 
@@ -91,6 +94,17 @@ public class CsvParserPlugin
         @Config("allow_extra_columns")
         @ConfigDefault("false")
         public boolean getAllowExtraColumns();
+
+        // Column projection: if true, columns are matched with names in the first header
+        // line of each file, so files may have columns in different orders. If the header
+        // of a file doesn't have a column, the task fails with SchemaConfigException.
+        // Otherwise, "index" column option selects a field by its position. Fields not
+        // selected are skipped without building their values. A row with more fields than
+        // the header line (or the largest "index") is an extra-columns row and skipped
+        // unless allow_extra_columns is true.
+        @Config("select_columns_by_header")
+        @ConfigDefault("false")
+        public boolean getSelectColumnsByHeader();
     }
 
     public static class QuoteCharacter
@@ -217,6 +231,17 @@ public class CsvParserPlugin
             }
         }
 
+        if (task.getSelectColumnsByHeader()) {
+            if (task.getSkipHeaderLines() <= 0) {
+                throw new ConfigException("'select_columns_by_header' option requires 'skip_header_lines' or 'header_line'.");
+            }
+            if (newFieldToColumnByIndex(task.getSchemaConfig()) != null) {
+                throw new ConfigException("'index' column option is invalid if 'select_columns_by_header' is set.");
+            }
+        } else {
+            newFieldToColumnByIndex(task.getSchemaConfig());  // throws ConfigException
+        }
+
         control.run(task.dump(), task.getSchemaConfig().toSchema());
     }
 
@@ -226,17 +251,33 @@ public class CsvParserPlugin
     {
         PluginTask task = taskSource.loadTask(PluginTask.class);
         final TimestampParser[] timestampParsers = Timestamps.newTimestampColumnParsers(task, task.getSchemaConfig());
+        final RecordCodecs.ColumnParser[] columnParsers = RecordCodecs.newColumnParsers(schema, timestampParsers, TRUE_STRINGS);
         LineDecoder lineDecoder = new LineDecoder(input, task);
         final CsvTokenizer tokenizer = new CsvTokenizer(lineDecoder, task);
         final String nullStringOrNull = task.getNullString().orNull();
         final boolean allowOptionalColumns = task.getAllowOptionalColumns();
         final boolean allowExtraColumns = task.getAllowExtraColumns();
-        int skipHeaderLines = task.getSkipHeaderLines();
+        final boolean selectColumnsByHeader = task.getSelectColumnsByHeader();
+        final int[] fieldToColumnByIndex = newFieldToColumnByIndex(task.getSchemaConfig());  // null if columns are not projected
 
         try (final PageBuilder pageBuilder = new PageBuilder(Exec.getBufferAllocator(), schema, output)) {
             while (tokenizer.nextFile()) {
+                // with select_columns_by_header, columns are selected using the header line of each file
+                int[] fieldToColumn = fieldToColumnByIndex;
+
                 // skip the header lines for each file
-                for (; skipHeaderLines > 0; skipHeaderLines--) {
+                for (int skipHeaderLines = task.getSkipHeaderLines(); skipHeaderLines > 0; skipHeaderLines--) {
+                    if (selectColumnsByHeader && fieldToColumn == null) {
+                        if (!tokenizer.nextRecord(false)) {
+                            break;
+                        }
+                        List<String> header = new ArrayList<>();
+                        while (tokenizer.hasNextColumn()) {
+                            header.add(tokenizer.nextColumn());
+                        }
+                        fieldToColumn = newFieldToColumnByHeader(task.getSchemaConfig(), header);
+                        continue;
+                    }
                     if (lineDecoder.poll() == null) {
                         break;
                     }
@@ -251,91 +292,20 @@ public class CsvParserPlugin
                     boolean hasNextRecord;
 
                     try {
-                        schema.visitColumns(new ColumnVisitor() {
-                            public void booleanColumn(Column column)
-                            {
-                                String v = nextColumn();
-                                if (v == null) {
-                                    pageBuilder.setNull(column);
-                                } else {
-                                    pageBuilder.setBoolean(column, TRUE_STRINGS.contains(v));
-                                }
-                            }
-
-                            public void longColumn(Column column)
-                            {
-                                String v = nextColumn();
-                                if (v == null) {
-                                    pageBuilder.setNull(column);
-                                } else {
-                                    try {
-                                        pageBuilder.setLong(column, Long.parseLong(v));
-                                    } catch (NumberFormatException e) {
-                                        // TODO support default value
-                                        throw new CsvRecordValidateException(e);
-                                    }
-                                }
+                        if (fieldToColumn == null) {
+                            for (RecordCodecs.ColumnParser parser : columnParsers) {
+                                setColumn(pageBuilder, parser, nextColumn(tokenizer, nullStringOrNull, allowOptionalColumns));
                             }
-
-                            public void doubleColumn(Column column)
-                            {
-                                String v = nextColumn();
-                                if (v == null) {
-                                    pageBuilder.setNull(column);
-                                } else {
-                                    try {
-                                        pageBuilder.setDouble(column, Double.parseDouble(v));
-                                    } catch (NumberFormatException e) {
-                                        // TODO support default value
-                                        throw new CsvRecordValidateException(e);
-                                    }
-                                }
-                            }
-
-                            public void stringColumn(Column column)
-                            {
-                                String v = nextColumn();
-                                if (v == null) {
-                                    pageBuilder.setNull(column);
-                                } else {
-                                    pageBuilder.setString(column, v);
-                                }
-                            }
-
-                            public void timestampColumn(Column column)
-                            {
-                                String v = nextColumn();
-                                if (v == null) {
-                                    pageBuilder.setNull(column);
-                                } else {
-                                    try {
-                                        pageBuilder.setTimestamp(column, timestampParsers[column.getIndex()].parse(v));
-                                    } catch (TimestampParseException e) {
-                                        // TODO support default value
-                                        throw new CsvRecordValidateException(e);
-                                    }
+                        } else {
+                            for (int field = 0; field < fieldToColumn.length; field++) {
+                                int columnIndex = fieldToColumn[field];
+                                if (columnIndex >= 0) {
+                                    setColumn(pageBuilder, columnParsers[columnIndex], nextColumn(tokenizer, nullStringOrNull, allowOptionalColumns));
+                                } else if (!allowOptionalColumns || tokenizer.hasNextColumn()) {
+                                    tokenizer.skipColumn();
                                 }
                             }
-
-                            private String nextColumn()
-                            {
-                                if (allowOptionalColumns && !tokenizer.hasNextColumn()) {
-                                    //TODO warning
-                                    return null;
-                                }
-                                String v = tokenizer.nextColumn();
-                                if (!v.isEmpty()) {
-                                    if (v.equals(nullStringOrNull)) {
-                                        return null;
-                                    }
-                                    return v;
-                                } else if (tokenizer.wasQuotedColumn()) {
-                                    return "";
-                                } else {
-                                    return null;
-                                }
-                            }
-                        });
+                        }
 
                         try {
                             hasNextRecord = tokenizer.nextRecord();
@@ -370,6 +340,95 @@ public class CsvParserPlugin
         }
     }
 
+    private static void setColumn(PageBuilder pageBuilder, RecordCodecs.ColumnParser parser, String v)
+    {
+        if (v == null) {
+            pageBuilder.setNull(parser.getColumn());
+        } else {
+            try {
+                parser.parse(pageBuilder, v);
+            } catch (NumberFormatException | TimestampParseException e) {
+                // TODO support default value
+                throw new CsvRecordValidateException(e);
+            }
+        }
+    }
+
+    // returns null if no columns have "index" option
+    private static int[] newFieldToColumnByIndex(SchemaConfig schemaConfig)
+    {
+        int[] fieldIndexes = new int[schemaConfig.getColumnCount()];
+        int count = 0;
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            ColumnConfig column = schemaConfig.getColumn(i);
+            Integer index = column.getOption().get(Integer.class, "index", null);
+            if (index != null) {
+                if (index < 0) {
+                    throw new ConfigException(String.format("'index' of column '%s' must not be negative", column.getName()));
+                }
+                fieldIndexes[i] = index;
+                count++;
+            }
+        }
+        if (count == 0) {
+            return null;
+        } else if (count != fieldIndexes.length) {
+            throw new ConfigException("'index' column option must be set to all columns if it's set to any column");
+        }
+        return newFieldToColumn(schemaConfig, fieldIndexes, 0);
+    }
+
+    private static int[] newFieldToColumnByHeader(SchemaConfig schemaConfig, List<String> header)
+    {
+        int[] fieldIndexes = new int[schemaConfig.getColumnCount()];
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            String name = schemaConfig.getColumnName(i);
+            fieldIndexes[i] = header.indexOf(name);
+            if (fieldIndexes[i] < 0) {
+                throw new SchemaConfigException(String.format("Column '%s' is not found in the header line", name));
+            }
+        }
+        return newFieldToColumn(schemaConfig, fieldIndexes, header.size());
+    }
+
+    // length of the returned array is the number of fields in a row
+    private static int[] newFieldToColumn(SchemaConfig schemaConfig, int[] fieldIndexes, int minFieldCount)
+    {
+        int max = minFieldCount - 1;
+        for (int fieldIndex : fieldIndexes) {
+            max = Math.max(max, fieldIndex);
+        }
+        int[] fieldToColumn = new int[max + 1];
+        Arrays.fill(fieldToColumn, -1);
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            if (fieldToColumn[fieldIndexes[i]] >= 0) {
+                throw new ConfigException(String.format("Columns '%s' and '%s' select the same field",
+                            schemaConfig.getColumnName(fieldToColumn[fieldIndexes[i]]), schemaConfig.getColumnName(i)));
+            }
+            fieldToColumn[fieldIndexes[i]] = i;
+        }
+        return fieldToColumn;
+    }
+
+    private static String nextColumn(CsvTokenizer tokenizer, String nullStringOrNull, boolean allowOptionalColumns)
+    {
+        if (allowOptionalColumns && !tokenizer.hasNextColumn()) {
+            //TODO warning
+            return null;
+        }
+        String v = tokenizer.nextColumn();
+        if (!v.isEmpty()) {
+            if (v.equals(nullStringOrNull)) {
+                return null;
+            }
+            return v;
+        } else if (tokenizer.wasQuotedColumn()) {
+            return "";
+        } else {
+            return null;
+        }
+    }
+
     static class CsvRecordValidateException
             extends RuntimeException
     {
@@ -314,6 +314,38 @@ public class CsvTokenizer
         }
     }
 
+    // skips the next column without building its value. used by column projection
+    public void skipColumn()
+    {
+        if (!hasNextColumn()) {
+            throw new TooFewColumnsException("Too few columns");
+        }
+
+        Preconditions.checkState(line != null, "skipColumn is called after end of file");
+        int pos = linePos;
+        if (trimIfNotQuoted) {
+            while (pos < line.length() && isSpace(line.charAt(pos))) {
+                pos++;
+            }
+        }
+        if (pos < line.length() && isQuote(line.charAt(pos))) {
+            // quoted value may include delimiters and newlines
+            nextColumn();
+            return;
+        }
+
+        wasQuotedColumn = false;
+        quotedValueLines.clear();
+
+        int delimiterPos = line.indexOf(delimiter, pos);
+        if (delimiterPos < 0) {
+            linePos = line.length();
+            recordState = RecordState.END;
+        } else {
+            linePos = delimiterPos + 1;
+        }
+    }
+
     public boolean wasQuotedColumn()
     {
         return wasQuotedColumn;
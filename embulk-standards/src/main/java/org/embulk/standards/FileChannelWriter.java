@@ -0,0 +1,191 @@
+package org.embulk.standards;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.spi.Buffer;
+
+/**
+ * Writes Buffers to a local file using a FileChannel.
+ *
+ * Buffers are kept until gatherSize bytes are pending and written with one
+ * gathering write call. If preallocateSize is positive, the file is extended
+ * to the size first by writing its last byte, and truncated to the written
+ * size when it's closed or aborted. Java has no fallocate call, so file
+ * systems which support sparse files don't allocate disk blocks in advance.
+ * If syncInterval is positive, data is flushed to the disk every time the
+ * number of bytes written since the last sync reaches the interval.
+ * If syncOnClose is true, the file and its parent directory are flushed
+ * when the file is closed so that the directory entry of a new file
+ * survives a crash too.
+ */
+class FileChannelWriter
+        implements Closeable
+{
+    // most of operating systems limit number of buffers of a writev call to 1024
+    private static final int MAX_GATHER_BUFFERS = 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int gatherSize;
+    private final long syncInterval;
+    private final boolean syncOnClose;
+    private final long preallocateSize;
+
+    private final List<Buffer> pending = new ArrayList<Buffer>();
+    private long pendingBytes;
+    private long position;
+    private long unsyncedBytes;
+
+    public FileChannelWriter(Path path, int gatherSize, long preallocateSize,
+            long syncInterval, boolean syncOnClose) throws IOException
+    {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.gatherSize = gatherSize;
+        this.syncInterval = syncInterval;
+        this.syncOnClose = syncOnClose;
+        this.preallocateSize = preallocateSize;
+        if (preallocateSize > 0) {
+            try {
+                // writing the last byte extends the file without writing the contents
+                channel.write(ByteBuffer.wrap(new byte[1]), preallocateSize - 1);
+            } catch (IOException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Writes the buffer. The buffer is released after it's written.
+     */
+    public void write(Buffer buffer) throws IOException
+    {
+        pending.add(buffer);
+        pendingBytes += buffer.limit();
+        if (pendingBytes >= gatherSize || pending.size() >= MAX_GATHER_BUFFERS) {
+            flush();
+        }
+    }
+
+    public void flush() throws IOException
+    {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            ByteBuffer[] buffers = new ByteBuffer[pending.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                Buffer buffer = pending.get(i);
+                buffers[i] = ByteBuffer.wrap(buffer.array(), buffer.offset(), buffer.limit());
+            }
+            channel.position(position);
+            long remaining = pendingBytes;
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+        } finally {
+            for (Buffer buffer : pending) {
+                buffer.release();
+            }
+            pending.clear();
+        }
+
+        position += pendingBytes;
+        unsyncedBytes += pendingBytes;
+        pendingBytes = 0;
+        if (syncInterval > 0 && unsyncedBytes >= syncInterval) {
+            sync();
+        }
+    }
+
+    private void sync() throws IOException
+    {
+        channel.force(false);
+        unsyncedBytes = 0;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            flush();
+            truncatePreallocated();
+            if (syncOnClose) {
+                // metadata is included because truncation or creation of the file changes it
+                channel.force(true);
+            }
+        } finally {
+            closeChannel();
+        }
+        if (syncOnClose) {
+            syncParentDirectory();
+        }
+    }
+
+    private void syncParentDirectory() throws IOException
+    {
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir == null) {
+            return;
+        }
+        FileChannel dirChannel;
+        try {
+            dirChannel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            // some platforms such as Windows can't open a directory. Their
+            // file systems don't need it to make the entry durable
+            return;
+        }
+        try {
+            dirChannel.force(true);
+        } finally {
+            dirChannel.close();
+        }
+    }
+
+    /**
+     * Discards pending buffers and closes the file without syncing it.
+     * A preallocated file is truncated to the size written so far.
+     */
+    public void abort() throws IOException
+    {
+        if (!channel.isOpen()) {
+            return;
+        }
+        for (Buffer buffer : pending) {
+            buffer.release();
+        }
+        pending.clear();
+        pendingBytes = 0;
+        closeChannel();
+    }
+
+    private void truncatePreallocated() throws IOException
+    {
+        // the file is larger than the data only if the data is smaller than the preallocated size
+        if (position < preallocateSize) {
+            channel.truncate(position);
+        }
+    }
+
+    // truncates the preallocated space even if writing failed
+    private void closeChannel() throws IOException
+    {
+        try {
+            truncatePreallocated();
+        } finally {
+            channel.close();
+        }
+    }
+}
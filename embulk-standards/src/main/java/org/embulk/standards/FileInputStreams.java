@@ -0,0 +1,23 @@
+package org.embulk.standards;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import org.embulk.spi.util.FileInputInputStream;
+
+class FileInputStreams
+{
+    private FileInputStreams() { }
+
+    // Decompressing streams close the underlying stream when the decoder
+    // moves to the next file. Closing FileInputInputStream closes the
+    // FileInput and drops the rest of files, so the stream given to them
+    // ignores close(). InputStreamFileInput.Provider.close closes files.
+    public static InputStream currentFile(FileInputInputStream files)
+    {
+        return new FilterInputStream(files) {
+            @Override
+            public void close()
+            { }
+        };
+    }
+}
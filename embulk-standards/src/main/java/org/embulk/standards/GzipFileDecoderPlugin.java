@@ -1,24 +1,43 @@
 package org.embulk.standards;
 
-import java.io.InputStream;
-import java.io.IOException;
-import java.util.zip.GZIPInputStream;
+import javax.validation.constraints.Min;
 import org.embulk.config.Task;
+import org.embulk.config.Config;
+import org.embulk.config.ConfigDefault;
+import org.embulk.config.ConfigException;
 import org.embulk.config.TaskSource;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.ConfigInject;
 import org.embulk.spi.DecoderPlugin;
 import org.embulk.spi.BufferAllocator;
 import org.embulk.spi.FileInput;
-import org.embulk.spi.util.FileInputInputStream;
-import org.embulk.spi.util.InputStreamFileInput;
+import org.embulk.spi.unit.ByteSize;
 
 public class GzipFileDecoderPlugin
         implements DecoderPlugin
 {
+    private static final int MAX_BUFFER_SIZE = 64 * 1024 * 1024;
+
+    // the window of buffer_size * threads bytes is allocated for each task
+    private static final int MAX_WINDOW_SIZE = 1024 * 1024 * 1024;
+
     public interface PluginTask
             extends Task
     {
+        // size of the buffer of compressed bytes
+        @Config("buffer_size")
+        @ConfigDefault("\"1MB\"")
+        public ByteSize getBufferSize();
+
+        // if threads is larger than 1, compressed data is read into a window of
+        // buffer_size * threads bytes and gzip members in the window are inflated
+        // on the thread pool shared in the JVM (one thread per processor).
+        // threads doesn't create threads. It only sets the size of the window.
+        @Config("threads")
+        @ConfigDefault("1")
+        @Min(1)
+        public int getThreads();
+
         @ConfigInject
         public BufferAllocator getBufferAllocator();
     }
@@ -27,6 +46,13 @@ public class GzipFileDecoderPlugin
     public void transaction(ConfigSource config, DecoderPlugin.Control control)
     {
         PluginTask task = config.loadConfig(PluginTask.class);
+        long bufferSize = task.getBufferSize().getBytes();
+        if (bufferSize <= 0 || bufferSize > MAX_BUFFER_SIZE) {
+            throw new ConfigException(String.format("'buffer_size' must be between 1 byte and %d bytes", MAX_BUFFER_SIZE));
+        }
+        if (bufferSize * task.getThreads() > MAX_WINDOW_SIZE) {
+            throw new ConfigException(String.format("'buffer_size' * 'threads' must not be larger than %d bytes", MAX_WINDOW_SIZE));
+        }
         control.run(task.dump());
     }
 
@@ -34,22 +60,7 @@ public class GzipFileDecoderPlugin
     public FileInput open(TaskSource taskSource, FileInput fileInput)
     {
         PluginTask task = taskSource.loadTask(PluginTask.class);
-        final FileInputInputStream files = new FileInputInputStream(fileInput);
-        return new InputStreamFileInput(
-                task.getBufferAllocator(),
-                new InputStreamFileInput.Provider() {
-                    public InputStream openNext() throws IOException
-                    {
-                        if (!files.nextFile()) {
-                            return null;
-                        }
-                        return new GZIPInputStream(files);
-                    }
-
-                    public void close() throws IOException
-                    {
-                        files.close();
-                    }
-                });
+        return new GzipFileInput(fileInput, task.getBufferAllocator(),
+                task.getBufferSize().getBytesInt(), task.getThreads());
     }
 }
@@ -9,17 +9,24 @@ import org.embulk.config.Task;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigInject;
 import org.embulk.config.ConfigDefault;
+import org.embulk.config.ConfigException;
 import org.embulk.config.TaskSource;
 import org.embulk.config.ConfigSource;
 import org.embulk.spi.EncoderPlugin;
 import org.embulk.spi.FileOutput;
 import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.unit.ByteSize;
 import org.embulk.spi.util.FileOutputOutputStream;
 import org.embulk.spi.util.OutputStreamFileOutput;
 
 public class GzipFileEncoderPlugin
         implements EncoderPlugin
 {
+    private static final int MIN_BLOCK_SIZE = 1024;
+
+    // each of 2 * threads blocks queued for a file holds a buffer of this size
+    private static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
     public interface PluginTask
             extends Task
     {
@@ -29,6 +36,19 @@ public class GzipFileEncoderPlugin
         @Max(9)
         public int getLevel();
 
+        // if threads is larger than 1, blocks of block_size bytes are compressed
+        // on the thread pool shared in the JVM (one thread per processor) and
+        // written as concatenated gzip members. threads doesn't create threads.
+        // It limits the number of blocks of a file compressed at once.
+        @Config("threads")
+        @ConfigDefault("1")
+        @Min(1)
+        public int getThreads();
+
+        @Config("block_size")
+        @ConfigDefault("\"128KB\"")
+        public ByteSize getBlockSize();
+
         @ConfigInject
         public BufferAllocator getBufferAllocator();
     }
@@ -36,6 +56,11 @@ public class GzipFileEncoderPlugin
     public void transaction(ConfigSource config, EncoderPlugin.Control control)
     {
         PluginTask task = config.loadConfig(PluginTask.class);
+        // a gzip member has 18 bytes of header and trailer and smaller blocks compress worse
+        long blockSize = task.getBlockSize().getBytes();
+        if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+            throw new ConfigException(String.format("'block_size' must be between %d bytes and %d bytes", MIN_BLOCK_SIZE, MAX_BLOCK_SIZE));
+        }
         control.run(task.dump());
     }
 
@@ -50,6 +75,9 @@ public class GzipFileEncoderPlugin
             public OutputStream openNext() throws IOException
             {
                 output.nextFile();
+                if (task.getThreads() > 1) {
+                    return new ParallelGzipOutputStream(output, task.getLevel(), task.getBlockSize().getBytesInt(), task.getThreads());
+                }
                 return new GZIPOutputStream(output) {
                     {
                         this.def.setLevel(task.getLevel());
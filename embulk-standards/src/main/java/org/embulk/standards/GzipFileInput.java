@@ -0,0 +1,409 @@
+package org.embulk.standards;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.FileInput;
+
+/**
+ * FileInput that decompresses gzip files of another FileInput.
+ *
+ * Compressed bytes are gathered in a window of bufferSize bytes and inflated
+ * directly into Buffers allocated from the BufferAllocator. Files made of
+ * concatenated gzip members are supported. If threads is larger than 1, it
+ * looks for gzip headers in a window of bufferSize * threads bytes and
+ * inflates members starting there concurrently on CompressionThreadPool,
+ * which is shared in the JVM. threads doesn't add threads to the pool.
+ * A member is used only if the previous member ends exactly at its header,
+ * so the output is the same as sequential decoding. Members larger than
+ * the window are inflated sequentially.
+ */
+class GzipFileInput
+        implements FileInput
+{
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final int INCOMPLETE = -1;
+    private static final int NOT_GZIP = -2;
+
+    private final FileInput input;
+    private final BufferAllocator allocator;
+    private final int bufferSize;
+    private final int threads;
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+
+    // compressed bytes. window[pos, length) are not consumed yet
+    private byte[] window;
+    private int pos;
+    private int length;
+    private boolean inputEnd;
+
+    private boolean inMember;
+    private boolean fileEnd;
+    private int memberCount;
+
+    // members inflated concurrently
+    private final ArrayDeque<byte[]> inflated = new ArrayDeque<byte[]>();
+    private int inflatedPos;
+
+    public GzipFileInput(FileInput input, BufferAllocator allocator, int bufferSize, int threads)
+    {
+        this.input = input;
+        this.allocator = allocator;
+        this.bufferSize = bufferSize;
+        this.threads = threads;
+        this.window = new byte[threads > 1 ? bufferSize * threads : bufferSize];
+    }
+
+    public boolean nextFile()
+    {
+        if (!input.nextFile()) {
+            return false;
+        }
+        pos = 0;
+        length = 0;
+        inputEnd = false;
+        inMember = false;
+        fileEnd = false;
+        memberCount = 0;
+        inflated.clear();
+        inflatedPos = 0;
+        return true;
+    }
+
+    public Buffer poll()
+    {
+        Buffer buffer = allocator.allocate();
+        int filled = 0;
+        try {
+            while (filled < buffer.capacity()) {
+                if (!inflated.isEmpty()) {
+                    byte[] head = inflated.peekFirst();
+                    int n = Math.min(head.length - inflatedPos, buffer.capacity() - filled);
+                    buffer.setBytes(filled, head, inflatedPos, n);
+                    filled += n;
+                    inflatedPos += n;
+                    if (inflatedPos >= head.length) {
+                        inflated.removeFirst();
+                        inflatedPos = 0;
+                    }
+                } else if (inMember) {
+                    filled += inflate(buffer.array(), buffer.offset() + filled, buffer.capacity() - filled);
+                } else if (!fileEnd) {
+                    nextMember();
+                } else {
+                    break;
+                }
+            }
+        } catch (IOException | DataFormatException ex) {
+            buffer.release();
+            throw new RuntimeException(ex);
+        }
+
+        if (filled == 0) {
+            buffer.release();
+            return null;
+        }
+        buffer.limit(filled);
+        return buffer;
+    }
+
+    public void close()
+    {
+        try {
+            input.close();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void nextMember() throws IOException
+    {
+        if (threads > 1) {
+            fillWindow(bufferSize * threads);
+            if (inflateConcurrently()) {
+                return;
+            }
+        }
+
+        int headerEnd;
+        while ((headerEnd = parseHeader(window, pos, length)) == INCOMPLETE) {
+            if (!fillMore()) {
+                break;
+            }
+        }
+        if (headerEnd < 0) {
+            if (memberCount > 0) {
+                // trailing garbage after a member is ignored like GZIPInputStream
+                fileEnd = true;
+                return;
+            } else if (headerEnd == INCOMPLETE) {
+                throw new EOFException("Unexpected end of gzip input");
+            } else {
+                throw new ZipException("Not in GZIP format");
+            }
+        }
+        pos = headerEnd;
+        inflater.reset();
+        crc.reset();
+        inMember = true;
+    }
+
+    private int inflate(byte[] b, int off, int len) throws IOException, DataFormatException
+    {
+        if (inflater.needsInput()) {
+            if (pos >= length && !fillMore()) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+            inflater.setInput(window, pos, length - pos);
+            pos = length;
+        }
+        int n = inflater.inflate(b, off, len);
+        crc.update(b, off, n);
+        if (inflater.finished()) {
+            pos = length - inflater.getRemaining();
+            while (length - pos < 8) {
+                if (!fillMore()) {
+                    throw new EOFException("Unexpected end of gzip trailer");
+                }
+            }
+            if (readIntLE(window, pos) != (int) crc.getValue()) {
+                throw new ZipException("Corrupt gzip trailer (CRC mismatch)");
+            }
+            if (readIntLE(window, pos + 4) != (int) inflater.getBytesWritten()) {
+                throw new ZipException("Corrupt gzip trailer (size mismatch)");
+            }
+            pos += 8;
+            inMember = false;
+            memberCount++;
+        } else if (n == 0 && inflater.needsDictionary()) {
+            throw new ZipException("Deflate stream requires a preset dictionary");
+        }
+        return n;
+    }
+
+    private boolean inflateConcurrently() throws IOException
+    {
+        final byte[] data = window;
+        final int end = length;
+        List<Integer> headers = new ArrayList<Integer>();
+        for (int i = pos; i + 4 <= end; i++) {
+            if (data[i] == (byte) 0x1f && data[i + 1] == (byte) 0x8b && data[i + 2] == 8 && (data[i + 3] & 0xe0) == 0) {
+                headers.add(i);
+            }
+        }
+        if (headers.size() < 2 || headers.get(0) != pos) {
+            // nothing to parallelize
+            return false;
+        }
+        Map<Integer, Future<Member>> futures = new LinkedHashMap<Integer, Future<Member>>();
+        for (final int begin : headers) {
+            futures.put(begin, CompressionThreadPool.get().submit(new Callable<Member>() {
+                public Member call()
+                {
+                    return inflateMember(data, begin, end);
+                }
+            }));
+        }
+        return chainMembers(futures);
+    }
+
+    private boolean chainMembers(Map<Integer, Future<Member>> futures) throws IOException
+    {
+        int p = pos;
+        try {
+            while (true) {
+                Future<Member> future = futures.remove(p);
+                if (future == null) {
+                    break;
+                }
+                Member member = future.get();
+                if (member == null) {
+                    break;
+                }
+                inflated.addLast(member.data);
+                memberCount++;
+                p = member.end;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        } finally {
+            // the window must not be modified while tasks read it
+            for (Future<Member> future : futures.values()) {
+                try {
+                    future.get();
+                } catch (Exception ex) {
+                    // ignore results of headers that weren't at member boundaries
+                }
+            }
+        }
+        boolean progressed = p > pos;
+        pos = p;
+        return progressed;
+    }
+
+    private static class Member
+    {
+        private final byte[] data;
+        private final int end;
+
+        public Member(byte[] data, int end)
+        {
+            this.data = data;
+            this.end = end;
+        }
+    }
+
+    // returns null if data[begin, end) doesn't start with a complete gzip member
+    static Member inflateMember(byte[] data, int begin, int end)
+    {
+        int headerEnd = parseHeader(data, begin, end);
+        if (headerEnd < 0) {
+            return null;
+        }
+        Inflater inf = new Inflater(true);
+        try {
+            inf.setInput(data, headerEnd, end - headerEnd);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            CRC32 memberCrc = new CRC32();
+            byte[] buffer = new byte[64 * 1024];
+            while (!inf.finished()) {
+                int n = inf.inflate(buffer);
+                if (n == 0 && (inf.needsInput() || inf.needsDictionary())) {
+                    return null;
+                }
+                out.write(buffer, 0, n);
+                memberCrc.update(buffer, 0, n);
+            }
+            int trailer = end - inf.getRemaining();
+            if (end - trailer < 8 ||
+                    readIntLE(data, trailer) != (int) memberCrc.getValue() ||
+                    readIntLE(data, trailer + 4) != (int) inf.getBytesWritten()) {
+                return null;
+            }
+            return new Member(out.toByteArray(), trailer + 8);
+        } catch (DataFormatException ex) {
+            return null;
+        } finally {
+            inf.end();
+        }
+    }
+
+    static int parseHeader(byte[] data, int begin, int end)
+    {
+        int p = begin;
+        if (end - p < 1) {
+            return INCOMPLETE;
+        }
+        if (data[p] != (byte) 0x1f) {
+            return NOT_GZIP;
+        }
+        if (end - p < 4) {
+            return INCOMPLETE;
+        }
+        int flags = data[p + 3] & 0xff;
+        if (data[p + 1] != (byte) 0x8b || data[p + 2] != 8 || (flags & 0xe0) != 0) {
+            return NOT_GZIP;
+        }
+        p += 10;  // magic, method, flags, mtime, xfl and os
+        if ((flags & FEXTRA) != 0) {
+            if (end - p < 2) {
+                return INCOMPLETE;
+            }
+            p += 2 + ((data[p] & 0xff) | ((data[p + 1] & 0xff) << 8));
+        }
+        if ((flags & FNAME) != 0) {
+            p = skipZeroTerminated(data, p, end);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            p = skipZeroTerminated(data, p, end);
+        }
+        if ((flags & FHCRC) != 0) {
+            p += 2;
+        }
+        if (p < 0 || p > end) {
+            return INCOMPLETE;
+        }
+        return p;
+    }
+
+    private static int skipZeroTerminated(byte[] data, int p, int end)
+    {
+        if (p < 0) {
+            return p;
+        }
+        while (p < end) {
+            if (data[p++] == 0) {
+                return p;
+            }
+        }
+        return INCOMPLETE;
+    }
+
+    private static int readIntLE(byte[] data, int p)
+    {
+        return (data[p] & 0xff) | ((data[p + 1] & 0xff) << 8) |
+            ((data[p + 2] & 0xff) << 16) | ((data[p + 3] & 0xff) << 24);
+    }
+
+    private void fillWindow(int size)
+    {
+        while (length - pos < size) {
+            if (!fillMore()) {
+                break;
+            }
+        }
+    }
+
+    // moves unconsumed bytes to the beginning of the window and reads the next buffer
+    private boolean fillMore()
+    {
+        if (inputEnd) {
+            return false;
+        }
+        if (pos > 0) {
+            System.arraycopy(window, pos, window, 0, length - pos);
+            length -= pos;
+            pos = 0;
+        }
+        Buffer buffer = input.poll();
+        if (buffer == null) {
+            inputEnd = true;
+            return false;
+        }
+        try {
+            if (window.length - length < buffer.limit()) {
+                byte[] grown = new byte[Math.max(window.length * 2, length + buffer.limit())];
+                System.arraycopy(window, 0, grown, 0, length);
+                window = grown;
+            }
+            buffer.getBytes(0, window, length, buffer.limit());
+            length += buffer.limit();
+        } finally {
+            buffer.release();
+        }
+        return true;
+    }
+}
@@ -10,11 +10,8 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.Files;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.FileVisitResult;
-import java.nio.file.attribute.BasicFileAttributes;
 import javax.validation.constraints.NotNull;
-import com.google.common.collect.ImmutableList;
+import javax.validation.constraints.Min;
 import com.google.common.base.Optional;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigInject;
@@ -23,12 +20,16 @@ import org.embulk.config.Task;
 import org.embulk.config.TaskSource;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigException;
 import org.embulk.config.CommitReport;
 import org.embulk.spi.BufferAllocator;
 import org.embulk.spi.Exec;
 import org.embulk.spi.FileInputPlugin;
 import org.embulk.spi.TransactionalFileInput;
+import org.embulk.spi.unit.ByteSize;
+import org.embulk.spi.util.FileChannelFileInput;
 import org.embulk.spi.util.InputStreamTransactionalFileInput;
+import org.embulk.spi.util.SharedTaskValues;
 import org.slf4j.Logger;
 
 public class LocalFileInputPlugin
@@ -44,30 +45,66 @@ public class LocalFileInputPlugin
         @ConfigDefault("null")
         public Optional<String> getLastPath();
 
-        public List<String> getFiles();
-        public void setFiles(List<String> files);
+        // directories are read by list_threads threads concurrently
+        @Config("list_threads")
+        @ConfigDefault("1")
+        @Min(1)
+        public int getListThreads();
+
+        // if set, entries of directories are cached in this file and
+        // reused next time unless modification time of the directory changes
+        @Config("list_cache_path")
+        @ConfigDefault("null")
+        public Optional<String> getListCachePath();
+
+        // STREAM reads files using FileInputStream. CHANNEL uses FileChannelFileInput
+        // with read_buffer_size bytes of NIO buffer. MMAP maps 128MB regions.
+        @Config("read_mode")
+        @ConfigDefault("\"STREAM\"")
+        public ReadMode getReadMode();
+
+        @Config("read_buffer_size")
+        @ConfigDefault("\"1MB\"")
+        public ByteSize getReadBufferSize();
 
         @ConfigInject
         public BufferAllocator getBufferAllocator();
     }
 
+    public enum ReadMode
+    {
+        STREAM,
+        CHANNEL,
+        MMAP;
+    }
+
     private final Logger log = Exec.getLogger(getClass());
 
     private final static Path CURRENT_DIR = Paths.get(".").normalize();
 
+    // the list of files is not a field of PluginTask so that each task
+    // doesn't deserialize all paths to use one of them
+    private final static String FILES = "Files";
+
     @Override
     public ConfigDiff transaction(ConfigSource config, FileInputPlugin.Control control)
     {
         PluginTask task = config.loadConfig(PluginTask.class);
 
+        long readBufferSize = task.getReadBufferSize().getBytes();
+        if (readBufferSize <= 0 || readBufferSize > Integer.MAX_VALUE) {
+            throw new ConfigException("'read_buffer_size' must be larger than 0 and smaller than 2GB");
+        }
+
         // list files recursively
         List<String> files = listFiles(task);
         log.info("Loading files {}", files);
-        task.setFiles(files);
+        TaskSource taskSource = task.dump();
+        taskSource.set(FILES, files);
 
         // number of processors is same with number of files
-        int taskCount = task.getFiles().size();
-        return resume(task.dump(), taskCount, control);
+        int taskCount = files.size();
+        return resume(taskSource, taskCount, control);
     }
 
     @Override
@@ -76,6 +113,7 @@ public class LocalFileInputPlugin
             FileInputPlugin.Control control)
     {
         PluginTask task = taskSource.loadTask(PluginTask.class);
+        List<String> files = SharedTaskValues.getList(taskSource, FILES, String.class);
 
         control.run(taskSource, taskCount);
 
@@ -83,15 +121,15 @@ public class LocalFileInputPlugin
         ConfigDiff configDiff = Exec.newConfigDiff();
 
         // last_path
-        if (task.getFiles().isEmpty()) {
+        if (files.isEmpty()) {
             // keep the last value
             if (task.getLastPath().isPresent()) {
                 configDiff.set("last_path", task.getLastPath().get());
             }
         } else {
-            List<String> files = new ArrayList<String>(task.getFiles());
-            Collections.sort(files);
-            configDiff.set("last_path", files.get(files.size() - 1));
+            List<String> sorted = new ArrayList<String>(files);
+            Collections.sort(sorted);
+            configDiff.set("last_path", sorted.get(sorted.size() - 1));
         }
 
         return configDiff;
@@ -117,61 +155,17 @@ public class LocalFileInputPlugin
             directory = (d == null ? CURRENT_DIR : d);
         }
 
-        final ImmutableList.Builder<String> builder = ImmutableList.builder();
-        final String lastPath = task.getLastPath().orNull();
+        Optional<Path> cachePath = Optional.absent();
+        if (task.getListCachePath().isPresent()) {
+            cachePath = Optional.of(Paths.get(task.getListCachePath().get()));
+        }
         try {
             log.info("Listing local files at directory '{}' filtering filename by prefix '{}'", directory.equals(CURRENT_DIR) ? "." : directory.toString(), fileNamePrefix);
-            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs)
-                {
-                    if (path.equals(directory)) {
-                        return FileVisitResult.CONTINUE;
-                    } else if (lastPath != null && path.toString().compareTo(lastPath) <= 0) {
-                        return FileVisitResult.SKIP_SUBTREE;
-                    } else {
-                        Path parent = path.getParent();
-                        if (parent == null) {
-                            parent = CURRENT_DIR;
-                        }
-                        if (parent.equals(directory)) {
-                            if (path.getFileName().toString().startsWith(fileNamePrefix)) {
-                                return FileVisitResult.CONTINUE;
-                            } else {
-                                return FileVisitResult.SKIP_SUBTREE;
-                            }
-                        } else {
-                            return FileVisitResult.CONTINUE;
-                        }
-                    }
-                }
-
-                @Override
-                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs)
-                {
-                    if (lastPath != null && path.toString().compareTo(lastPath) <= 0) {
-                        return FileVisitResult.CONTINUE;
-                    } else {
-                        Path parent = path.getParent();
-                        if (parent == null) {
-                            parent = CURRENT_DIR;
-                        }
-                        if (parent.equals(directory)) {
-                            if (path.getFileName().toString().startsWith(fileNamePrefix)) {
-                                builder.add(path.toString());
-                                return FileVisitResult.CONTINUE;
-                            }
-                        } else {
-                            builder.add(path.toString());
-                        }
-                        return FileVisitResult.CONTINUE;
-                    }
-                }
-            });
+            return new LocalFileLister(directory, fileNamePrefix, task.getLastPath(),
+                    task.getListThreads(), cachePath).list();
         } catch (IOException ex) {
             throw new RuntimeException(String.format("Failed get a list of local files at '%s'", directory), ex);
         }
-        return builder.build();
     }
 
     @Override
@@ -179,7 +173,16 @@ public class LocalFileInputPlugin
     {
         final PluginTask task = taskSource.loadTask(PluginTask.class);
 
-        final File file = new File(task.getFiles().get(taskIndex));
+        final File file = new File(SharedTaskValues.getList(taskSource, FILES, String.class).get(taskIndex));
+
+        switch (task.getReadMode()) {
+        case CHANNEL:
+            return new LocalFileChannelInput(task, file, FileChannelFileInput.Mode.CHANNEL);
+        case MMAP:
+            return new LocalFileChannelInput(task, file, FileChannelFileInput.Mode.MMAP);
+        default:
+            break;
+        }
 
         return new InputStreamTransactionalFileInput(
                 task.getBufferAllocator(),
@@ -201,4 +204,24 @@ public class LocalFileInputPlugin
             }
         };
     }
+
+    private static class LocalFileChannelInput
+            extends FileChannelFileInput
+            implements TransactionalFileInput
+    {
+        public LocalFileChannelInput(PluginTask task, File file, FileChannelFileInput.Mode mode)
+        {
+            super(task.getBufferAllocator(), file.toPath(), mode, task.getReadBufferSize().getBytesInt());
+        }
+
+        @Override
+        public void abort()
+        { }
+
+        @Override
+        public CommitReport commit()
+        {
+            return Exec.newCommitReport();
+        }
+    }
 }
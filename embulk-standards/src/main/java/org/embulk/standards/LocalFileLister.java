@@ -0,0 +1,287 @@
+package org.embulk.standards;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.embulk.config.ModelManager;
+import org.embulk.spi.Exec;
+import org.slf4j.Logger;
+
+/**
+ * Lists files under a directory whose names start with a prefix and whose
+ * paths are greater than last_path.
+ *
+ * Directories are read concurrently if threads is larger than 1. If a
+ * cache file is given, names of entries of directories are stored in it with
+ * the modification time of the directory so that the next listing doesn't
+ * have to read directories which are not changed.
+ */
+class LocalFileLister
+{
+    // directories modified within this time before listing are not cached
+    // because file systems may not update modification time of directories
+    // if files are added within the resolution of the time
+    private static final long CACHE_SAFETY_MARGIN_MILLIS = 2000;
+
+    private final Logger log = Exec.getLogger(getClass());
+
+    private final Path directory;
+    private final String fileNamePrefix;
+    private final String lastPath;
+    private final int threads;
+    private final Optional<Path> cachePath;
+
+    private final Queue<String> files = new ConcurrentLinkedQueue<String>();
+    private Map<String, DirectoryEntries> cache = ImmutableMap.of();
+    private final Map<String, DirectoryEntries> nextCache = new ConcurrentHashMap<String, DirectoryEntries>();
+    private long cacheableBefore;
+
+    public LocalFileLister(Path directory, String fileNamePrefix, Optional<String> lastPath,
+            int threads, Optional<Path> cachePath)
+    {
+        this.directory = directory;
+        this.fileNamePrefix = fileNamePrefix;
+        this.lastPath = lastPath.orNull();
+        this.threads = threads;
+        this.cachePath = cachePath;
+    }
+
+    public List<String> list() throws IOException
+    {
+        if (cachePath.isPresent()) {
+            cache = readCache(cachePath.get());
+        }
+        cacheableBefore = System.currentTimeMillis() - CACHE_SAFETY_MARGIN_MILLIS;
+
+        try {
+            if (threads > 1) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    pool.invoke(new ListDirectoryAction(directory, true));
+                } finally {
+                    pool.shutdown();
+                }
+            } else {
+                listDirectory(directory, true);
+            }
+        } catch (DirectoryReadException ex) {
+            throw ex.getCause();
+        }
+
+        if (cachePath.isPresent()) {
+            writeCache(cachePath.get());
+        }
+
+        // files are sorted regardless of threads so that task indexes and
+        // last_path don't depend on the order of directory entries or timing
+        // of the threads
+        List<String> sorted = new ArrayList<String>(files);
+        Collections.sort(sorted);
+        return ImmutableList.copyOf(sorted);
+    }
+
+    private class ListDirectoryAction
+            extends RecursiveAction
+    {
+        private final Path dir;
+        private final boolean top;
+
+        public ListDirectoryAction(Path dir, boolean top)
+        {
+            this.dir = dir;
+            this.top = top;
+        }
+
+        @Override
+        protected void compute()
+        {
+            List<ListDirectoryAction> subdirs = new ArrayList<ListDirectoryAction>();
+            for (Path subdir : listEntries(dir, top)) {
+                subdirs.add(new ListDirectoryAction(subdir, false));
+            }
+            invokeAll(subdirs);
+        }
+    }
+
+    private void listDirectory(Path dir, boolean top)
+    {
+        for (Path subdir : listEntries(dir, top)) {
+            listDirectory(subdir, false);
+        }
+    }
+
+    // adds matched files to the list and returns subdirectories to visit
+    private List<Path> listEntries(Path dir, boolean top)
+    {
+        DirectoryEntries entries;
+        try {
+            entries = readDirectory(dir);
+        } catch (IOException ex) {
+            throw new DirectoryReadException(ex);
+        }
+
+        // the order of visiting files and subdirectories is the same as Files.walkFileTree
+        List<Path> subdirs = new ArrayList<Path>();
+        for (int i = 0; i < entries.getNames().size(); i++) {
+            String name = entries.getNames().get(i);
+            if (top && !name.startsWith(fileNamePrefix)) {
+                continue;
+            }
+            Path path = dir.resolve(name);
+            if (entries.getDirectories().get(i)) {
+                if (!isSkippableDirectory(path.toString() + path.getFileSystem().getSeparator())) {
+                    subdirs.add(path);
+                }
+            } else if (lastPath == null || path.toString().compareTo(lastPath) > 0) {
+                files.add(path.toString());
+            }
+        }
+        return subdirs;
+    }
+
+    // returns true if all paths starting with directoryPrefix are equal to or less than last_path
+    private boolean isSkippableDirectory(String directoryPrefix)
+    {
+        return lastPath != null && !lastPath.startsWith(directoryPrefix) && directoryPrefix.compareTo(lastPath) < 0;
+    }
+
+    private DirectoryEntries readDirectory(Path dir) throws IOException
+    {
+        long mtime = Files.getLastModifiedTime(dir).toMillis();
+        String key = dir.toString();
+
+        DirectoryEntries entries = cache.get(key);
+        if (entries == null || entries.getModifiedTime() != mtime) {
+            List<String> names = new ArrayList<String>();
+            List<Boolean> directories = new ArrayList<Boolean>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    names.add(path.getFileName().toString());
+                    // symbolic links are not followed as Files.walkFileTree does
+                    directories.add(Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS));
+                }
+            }
+            entries = new DirectoryEntries(mtime, names, directories);
+        }
+
+        if (cachePath.isPresent() && mtime < cacheableBefore) {
+            nextCache.put(key, entries);
+        }
+        return entries;
+    }
+
+    private Map<String, DirectoryEntries> readCache(Path path)
+    {
+        if (!Files.exists(path)) {
+            return ImmutableMap.of();
+        }
+        try {
+            String json = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            ModelManager model = Exec.getModelManager();
+            return model.readObject(ListingCache.class, json).getDirectories();
+        } catch (Exception ex) {
+            log.warn("Ignoring file listing cache '{}' because it can't be read", path, ex);
+            return ImmutableMap.of();
+        }
+    }
+
+    private void writeCache(Path path) throws IOException
+    {
+        String json = Exec.getModelManager().writeObject(new ListingCache(nextCache));
+        Path parent = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, json.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static class DirectoryReadException
+            extends RuntimeException
+    {
+        public DirectoryReadException(IOException cause)
+        {
+            super(cause);
+        }
+
+        @Override
+        public IOException getCause()
+        {
+            return (IOException) super.getCause();
+        }
+    }
+
+    static class ListingCache
+    {
+        private final Map<String, DirectoryEntries> directories;
+
+        @JsonCreator
+        public ListingCache(
+                @JsonProperty("directories") Map<String, DirectoryEntries> directories)
+        {
+            this.directories = directories;
+        }
+
+        @JsonProperty("directories")
+        public Map<String, DirectoryEntries> getDirectories()
+        {
+            return directories;
+        }
+    }
+
+    static class DirectoryEntries
+    {
+        private final long modifiedTime;
+        private final List<String> names;
+        private final List<Boolean> directories;
+
+        @JsonCreator
+        public DirectoryEntries(
+                @JsonProperty("mtime") long modifiedTime,
+                @JsonProperty("names") List<String> names,
+                @JsonProperty("directories") List<Boolean> directories)
+        {
+            this.modifiedTime = modifiedTime;
+            this.names = names;
+            this.directories = directories;
+        }
+
+        @JsonProperty("mtime")
+        public long getModifiedTime()
+        {
+            return modifiedTime;
+        }
+
+        @JsonProperty("names")
+        public List<String> getNames()
+        {
+            return names;
+        }
+
+        @JsonProperty("directories")
+        public List<Boolean> getDirectories()
+        {
+            return directories;
+        }
+    }
+}
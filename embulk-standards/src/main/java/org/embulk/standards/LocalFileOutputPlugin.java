@@ -1,14 +1,12 @@
 package org.embulk.standards;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.IllegalFormatException;
+import com.google.common.base.Optional;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigDefault;
@@ -21,6 +19,7 @@ import org.embulk.spi.Buffer;
 import org.embulk.spi.FileOutputPlugin;
 import org.embulk.spi.TransactionalFileOutput;
 import org.embulk.spi.Exec;
+import org.embulk.spi.unit.ByteSize;
 import org.slf4j.Logger;
 
 public class LocalFileOutputPlugin
@@ -38,6 +37,34 @@ public class LocalFileOutputPlugin
         @Config("sequence_format")
         @ConfigDefault("\"%03d.%02d.\"")
         public String getSequenceFormat();
+
+        // buffers are written with one system call when this size of data is
+        // pending. 0 writes every buffer immediately
+        @Config("write_buffer_size")
+        @ConfigDefault("\"0\"")
+        public ByteSize getWriteBufferSize();
+
+        @Config("preallocate_size")
+        @ConfigDefault("null")
+        public Optional<ByteSize> getPreallocateSize();
+
+        @Config("fsync")
+        @ConfigDefault("\"NONE\"")
+        public FsyncMode getFsync();
+
+        @Config("fsync_interval")
+        @ConfigDefault("\"64MB\"")
+        public ByteSize getFsyncInterval();
+    }
+
+    // NONE leaves flushing data to the operating system. COMMIT flushes each
+    // file and its directory to the disk before it's committed. INTERVAL also flushes every
+    // fsync_interval bytes in addition to COMMIT.
+    public enum FsyncMode
+    {
+        NONE,
+        COMMIT,
+        INTERVAL;
     }
 
     private final Logger log = Exec.getLogger(getClass());
@@ -55,6 +82,16 @@ public class LocalFileOutputPlugin
             throw new ConfigException("Invalid sequence_format: parameter for file output plugin", ex);
         }
 
+        if (task.getWriteBufferSize().getBytes() > Integer.MAX_VALUE) {
+            throw new ConfigException("'write_buffer_size' must be smaller than 2GB");
+        }
+        if (task.getPreallocateSize().isPresent() && task.getPreallocateSize().get().getBytes() <= 0) {
+            throw new ConfigException("'preallocate_size' must be larger than 0");
+        }
+        if (task.getFsync() == FsyncMode.INTERVAL && task.getFsyncInterval().getBytes() <= 0) {
+            throw new ConfigException("'fsync_interval' must be larger than 0 if 'fsync' is INTERVAL");
+        }
+
         return resume(task.dump(), taskCount, control);
     }
 
@@ -81,11 +118,15 @@ public class LocalFileOutputPlugin
         final String pathPrefix = task.getPathPrefix();
         final String pathSuffix = task.getFileNameExtension();
         final String sequenceFormat = task.getSequenceFormat();
+        final int writeBufferSize = task.getWriteBufferSize().getBytesInt();
+        final long preallocateSize = task.getPreallocateSize().isPresent() ? task.getPreallocateSize().get().getBytes() : 0;
+        final long syncInterval = task.getFsync() == FsyncMode.INTERVAL ? task.getFsyncInterval().getBytes() : 0;
+        final boolean syncOnClose = task.getFsync() != FsyncMode.NONE;
 
         return new TransactionalFileOutput() {
             private final List<String> fileNames = new ArrayList<>();
             private int fileIndex = 0;
-            private FileOutputStream output = null;
+            private FileChannelWriter output = null;
 
             public void nextFile()
             {
@@ -94,8 +135,8 @@ public class LocalFileOutputPlugin
                 log.info("Writing local file '{}'", path);
                 fileNames.add(path);
                 try {
-                    output = new FileOutputStream(new File(path));
-                } catch (FileNotFoundException ex) {
+                    output = new FileChannelWriter(Paths.get(path), writeBufferSize, preallocateSize, syncInterval, syncOnClose);
+                } catch (IOException ex) {
                     throw new RuntimeException(ex);  // TODO exception class
                 }
                 fileIndex++;
@@ -108,6 +149,8 @@ public class LocalFileOutputPlugin
                         output.close();
                     } catch (IOException ex) {
                         throw new RuntimeException(ex);
+                    } finally {
+                        output = null;
                     }
                 }
             }
@@ -115,11 +158,9 @@ public class LocalFileOutputPlugin
             public void add(Buffer buffer)
             {
                 try {
-                    output.write(buffer.array(), buffer.offset(), buffer.limit());
+                    output.write(buffer);
                 } catch (IOException ex) {
                     throw new RuntimeException(ex);
-                } finally {
-                    buffer.release();
                 }
             }
 
@@ -134,7 +175,17 @@ public class LocalFileOutputPlugin
             }
 
             public void abort()
-            { }
+            {
+                if (output != null) {
+                    try {
+                        output.abort();
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    } finally {
+                        output = null;
+                    }
+                }
+            }
 
             public CommitReport commit()
             {
@@ -0,0 +1,56 @@
+package org.embulk.standards;
+
+import java.io.InputStream;
+import java.io.IOException;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.embulk.config.Task;
+import org.embulk.config.TaskSource;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.ConfigInject;
+import org.embulk.spi.DecoderPlugin;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.util.FileInputInputStream;
+import org.embulk.spi.util.InputStreamFileInput;
+
+public class Lz4FileDecoderPlugin
+        implements DecoderPlugin
+{
+    public interface PluginTask
+            extends Task
+    {
+        @ConfigInject
+        public BufferAllocator getBufferAllocator();
+    }
+
+    @Override
+    public void transaction(ConfigSource config, DecoderPlugin.Control control)
+    {
+        PluginTask task = config.loadConfig(PluginTask.class);
+        control.run(task.dump());
+    }
+
+    @Override
+    public FileInput open(TaskSource taskSource, FileInput fileInput)
+    {
+        PluginTask task = taskSource.loadTask(PluginTask.class);
+        final FileInputInputStream files = new FileInputInputStream(fileInput);
+        return new InputStreamFileInput(
+                task.getBufferAllocator(),
+                new InputStreamFileInput.Provider() {
+                    public InputStream openNext() throws IOException
+                    {
+                        if (!files.nextFile()) {
+                            return null;
+                        }
+                        // decompressConcatenated=true reads all frames. Skippable frames are skipped
+                        return new FramedLZ4CompressorInputStream(FileInputStreams.currentFile(files), true);
+                    }
+
+                    public void close() throws IOException
+                    {
+                        files.close();
+                    }
+                });
+    }
+}
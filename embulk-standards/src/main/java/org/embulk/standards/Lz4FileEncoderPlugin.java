@@ -0,0 +1,86 @@
+package org.embulk.standards;
+
+import java.io.OutputStream;
+import java.io.IOException;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream.BlockSize;
+import org.embulk.config.Task;
+import org.embulk.config.Config;
+import org.embulk.config.ConfigInject;
+import org.embulk.config.ConfigDefault;
+import org.embulk.config.ConfigException;
+import org.embulk.config.TaskSource;
+import org.embulk.config.ConfigSource;
+import org.embulk.spi.EncoderPlugin;
+import org.embulk.spi.FileOutput;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.unit.ByteSize;
+import org.embulk.spi.util.FileOutputOutputStream;
+import org.embulk.spi.util.OutputStreamFileOutput;
+
+public class Lz4FileEncoderPlugin
+        implements EncoderPlugin
+{
+    public interface PluginTask
+            extends Task
+    {
+        // one of 64KB, 256KB, 1MB or 4MB
+        @Config("block_size")
+        @ConfigDefault("\"4MB\"")
+        public ByteSize getBlockSize();
+
+        @ConfigInject
+        public BufferAllocator getBufferAllocator();
+    }
+
+    public void transaction(ConfigSource config, EncoderPlugin.Control control)
+    {
+        PluginTask task = config.loadConfig(PluginTask.class);
+        toBlockSize(task.getBlockSize());
+        control.run(task.dump());
+    }
+
+    static BlockSize toBlockSize(ByteSize size)
+    {
+        long bytes = size.getBytes();
+        if (bytes == 64 * 1024) {
+            return BlockSize.K64;
+        } else if (bytes == 256 * 1024) {
+            return BlockSize.K256;
+        } else if (bytes == 1024 * 1024) {
+            return BlockSize.M1;
+        } else if (bytes == 4 * 1024 * 1024) {
+            return BlockSize.M4;
+        }
+        throw new ConfigException("LZ4 block size must be 64KB, 256KB, 1MB or 4MB");
+    }
+
+    @Override
+    public FileOutput open(TaskSource taskSource, final FileOutput fileOutput)
+    {
+        final PluginTask task = taskSource.loadTask(PluginTask.class);
+        // independent blocks with a content checksum, same as the lz4 command writes
+        final FramedLZ4CompressorOutputStream.Parameters parameters =
+            new FramedLZ4CompressorOutputStream.Parameters(toBlockSize(task.getBlockSize()), true, false, false);
+
+        final FileOutputOutputStream output = new FileOutputOutputStream(fileOutput, task.getBufferAllocator(), FileOutputOutputStream.CloseMode.FLUSH);
+
+        return new OutputStreamFileOutput(new OutputStreamFileOutput.Provider() {
+            public OutputStream openNext() throws IOException
+            {
+                output.nextFile();
+                return new FramedLZ4CompressorOutputStream(output, parameters);
+            }
+
+            public void finish() throws IOException
+            {
+                fileOutput.finish();
+            }
+
+            public void close() throws IOException
+            {
+                fileOutput.close();
+            }
+        });
+    }
+}
@@ -0,0 +1,175 @@
+package org.embulk.standards;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * OutputStream that compresses blocks of data concurrently and writes
+ * them as concatenated gzip members in the original order, like pigz.
+ *
+ * Blocks are compressed on CompressionThreadPool which is shared by all
+ * streams in the JVM. threads doesn't add threads to the pool. Up to
+ * 2 * threads blocks of a stream are queued or being compressed at once.
+ */
+class ParallelGzipOutputStream
+        extends OutputStream
+{
+    private static final byte[] HEADER = {
+        (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff,
+    };
+
+    private final OutputStream out;
+    private final int level;
+    private final int blockSize;
+    private final int maxInFlight;
+    private final ArrayDeque<InFlightBlock> inFlight = new ArrayDeque<InFlightBlock>();
+    // blocks which are already compressed are reused
+    private final ArrayDeque<byte[]> freeBlocks = new ArrayDeque<byte[]>();
+    private byte[] block;
+    private int pos;
+    private boolean written;
+
+    public ParallelGzipOutputStream(OutputStream out, int level, int blockSize, int threads)
+    {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be larger than 0");
+        }
+        this.out = out;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.maxInFlight = Math.max(threads, 1) * 2;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        block[pos++] = (byte) b;
+        if (pos >= blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        while (len > 0) {
+            int n = Math.min(blockSize - pos, len);
+            System.arraycopy(b, off, block, pos, n);
+            pos += n;
+            off += n;
+            len -= n;
+            if (pos >= blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    // flush doesn't end the current block to keep the compression ratio
+
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            if (pos > 0 || !written) {
+                // an empty file is still a valid gzip file with one member
+                submitBlock();
+            }
+            while (!inFlight.isEmpty()) {
+                writeCompletedBlock();
+            }
+            out.close();
+        } finally {
+            for (InFlightBlock b : inFlight) {
+                b.member.cancel(false);
+            }
+            inFlight.clear();
+        }
+    }
+
+    private void submitBlock() throws IOException
+    {
+        final byte[] data = block;
+        final int length = pos;
+        inFlight.addLast(new InFlightBlock(data, CompressionThreadPool.get().submit(new Callable<byte[]>() {
+            public byte[] call()
+            {
+                return compressMember(data, length, level);
+            }
+        })));
+        written = true;
+        block = freeBlocks.isEmpty() ? new byte[blockSize] : freeBlocks.removeFirst();
+        pos = 0;
+        while (inFlight.size() >= maxInFlight) {
+            writeCompletedBlock();
+        }
+    }
+
+    private void writeCompletedBlock() throws IOException
+    {
+        InFlightBlock completed = inFlight.removeFirst();
+        byte[] member;
+        try {
+            member = completed.member.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+        freeBlocks.addLast(completed.data);
+        out.write(member);
+    }
+
+    private static class InFlightBlock
+    {
+        private final byte[] data;
+        private final Future<byte[]> member;
+
+        public InFlightBlock(byte[] data, Future<byte[]> member)
+        {
+            this.data = data;
+            this.member = member;
+        }
+    }
+
+    static byte[] compressMember(byte[] data, int length, int level)
+    {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + 64);
+        member.write(HEADER, 0, HEADER.length);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(length / 2, 1024)];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                member.write(buffer, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        writeIntLE(member, (int) crc.getValue());
+        writeIntLE(member, length);
+        return member.toByteArray();
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int v)
+    {
+        out.write(v & 0xff);
+        out.write((v >> 8) & 0xff);
+        out.write((v >> 16) & 0xff);
+        out.write((v >> 24) & 0xff);
+    }
+}
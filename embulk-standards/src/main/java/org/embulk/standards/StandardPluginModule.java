@@ -33,6 +33,10 @@ public class StandardPluginModule
 
         // file decoder plugins
         registerPluginTo(binder, DecoderPlugin.class, "gzip", GzipFileDecoderPlugin.class);
+        registerPluginTo(binder, DecoderPlugin.class, "lz4", Lz4FileDecoderPlugin.class);
+        registerPluginTo(binder, DecoderPlugin.class, "bzip2", Bzip2FileDecoderPlugin.class);
+        registerPluginTo(binder, DecoderPlugin.class, "zstd", ZstdFileDecoderPlugin.class);
+        registerPluginTo(binder, DecoderPlugin.class, "auto", AutoFileDecoderPlugin.class);
 
         // output plugins
         registerPluginTo(binder, OutputPlugin.class, "file", LocalFileOutputPlugin.class);
@@ -44,12 +48,18 @@ public class StandardPluginModule
 
         // file encoder plugins
         registerPluginTo(binder, EncoderPlugin.class, "gzip", GzipFileEncoderPlugin.class);
+        registerPluginTo(binder, EncoderPlugin.class, "lz4", Lz4FileEncoderPlugin.class);
+        registerPluginTo(binder, EncoderPlugin.class, "bzip2", Bzip2FileEncoderPlugin.class);
+        registerPluginTo(binder, EncoderPlugin.class, "zstd", ZstdFileEncoderPlugin.class);
 
         // filter plugins
         registerPluginTo(binder, FilterPlugin.class, "rename", RenameFilterPlugin.class);
 
         // default guess plugins
         registerDefaultGuessPluginTo(binder, new PluginType("gzip"));
+        registerDefaultGuessPluginTo(binder, new PluginType("lz4"));
+        registerDefaultGuessPluginTo(binder, new PluginType("bzip2"));
+        registerDefaultGuessPluginTo(binder, new PluginType("zstd"));
         registerDefaultGuessPluginTo(binder, new PluginType("csv"));
         // charset and newline guess plugins are loaded and invoked by CsvGuessPlugin
     }
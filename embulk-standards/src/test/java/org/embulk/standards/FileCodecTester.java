@@ -0,0 +1,86 @@
+package org.embulk.standards;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.DecoderPlugin;
+import org.embulk.spi.EncoderPlugin;
+import org.embulk.spi.Exec;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.FileOutput;
+import org.embulk.spi.MockFileOutput;
+import org.embulk.spi.util.ListFileInput;
+
+// runs encoder and decoder plugins on files in memory. Needs EmbulkTestRuntime.
+class FileCodecTester
+{
+    private FileCodecTester() { }
+
+    public static List<List<Buffer>> encode(final EncoderPlugin plugin, ConfigSource config, final List<byte[]> files)
+    {
+        final MockFileOutput output = new MockFileOutput();
+        plugin.transaction(config, new EncoderPlugin.Control() {
+            public void run(TaskSource taskSource)
+            {
+                FileOutput encoded = plugin.open(taskSource, output);
+                try {
+                    for (byte[] file : files) {
+                        encoded.nextFile();
+                        // split to check that buffers are concatenated
+                        int half = file.length / 2;
+                        encoded.add(copyOf(file, 0, half));
+                        encoded.add(copyOf(file, half, file.length - half));
+                    }
+                    encoded.finish();
+                } finally {
+                    encoded.close();
+                }
+            }
+        });
+        return output.getFiles();
+    }
+
+    public static List<byte[]> decode(final DecoderPlugin plugin, final List<List<Buffer>> files)
+    {
+        final List<byte[]> decoded = new ArrayList<>();
+        plugin.transaction(Exec.newConfigSource(), new DecoderPlugin.Control() {
+            public void run(TaskSource taskSource)
+            {
+                FileInput input = plugin.open(taskSource, new ListFileInput(files));
+                try {
+                    while (input.nextFile()) {
+                        ByteArrayOutputStream file = new ByteArrayOutputStream();
+                        Buffer buffer;
+                        while ((buffer = input.poll()) != null) {
+                            file.write(buffer.array(), buffer.offset(), buffer.limit());
+                            buffer.release();
+                        }
+                        decoded.add(file.toByteArray());
+                    }
+                } finally {
+                    input.close();
+                }
+            }
+        });
+        return decoded;
+    }
+
+    public static byte[] toByteArray(List<Buffer> file)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Buffer buffer : file) {
+            out.write(buffer.array(), buffer.offset(), buffer.limit());
+        }
+        return out.toByteArray();
+    }
+
+    private static Buffer copyOf(byte[] data, int offset, int length)
+    {
+        byte[] copy = new byte[length];
+        System.arraycopy(data, offset, copy, 0, length);
+        return Buffer.copyOf(copy);
+    }
+}
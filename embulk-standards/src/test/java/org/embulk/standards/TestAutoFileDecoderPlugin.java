@@ -0,0 +1,46 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.EncoderPlugin;
+import org.embulk.spi.Exec;
+
+public class TestAutoFileDecoderPlugin
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void testMixedCodecs()
+    {
+        byte[] text = TestZstdFileEncoderPlugin.linesText();
+        List<byte[]> files = ImmutableList.of(text, "x".getBytes(), new byte[0]);
+
+        List<List<Buffer>> encoded = new ArrayList<>();
+        List<byte[]> expected = new ArrayList<>();
+        for (EncoderPlugin plugin : new EncoderPlugin[] {
+                    new GzipFileEncoderPlugin(), new Lz4FileEncoderPlugin(),
+                    new Bzip2FileEncoderPlugin(), new ZstdFileEncoderPlugin() }) {
+            encoded.addAll(FileCodecTester.encode(plugin, Exec.newConfigSource(), files));
+            expected.addAll(files);
+        }
+        // plain files including ones shorter than magic numbers
+        for (byte[] file : files) {
+            encoded.add(ImmutableList.of(Buffer.copyOf(file)));
+            expected.add(file);
+        }
+
+        List<byte[]> decoded = FileCodecTester.decode(new AutoFileDecoderPlugin(), encoded);
+        assertEquals(expected.size(), decoded.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals("file " + i, expected.get(i), decoded.get(i));
+        }
+    }
+}
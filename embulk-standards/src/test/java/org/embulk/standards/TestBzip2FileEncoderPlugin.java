@@ -0,0 +1,124 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.List;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Bytes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.TaskValidationException;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.Exec;
+
+public class TestBzip2FileEncoderPlugin
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    // "printf '' | bzip2 -c"
+    private static final String EMPTY = "QlpoORdyRThQkAAAAAA=";
+
+    // "printf 'hello bzip2\n' | bzip2 -c"
+    private static final String HELLO = "QlpoOTFBWSZTWatrofEAAALZgAAQQAAQABJkwBAgADEA000EAB6j705RogeLuSKcKEhVtdD4gA==";
+
+    // 1000 'a', 300 'b' and "xyz" compressed by bzip2 -c
+    private static final String RUNS = "QlpoOTFBWSZTWTdNwTsAAAIRgYAgMAAAcACAAAggADEMCBkZMm0xgFFXT0sAfi7kinChIG6bgnY=";
+
+    // TestZstdFileEncoderPlugin.linesText() compressed by bzip2 -1 -c, which consists of 3 blocks
+    private static final String LINES =
+        "QlpoMTFBWSZTWehsrgMAkdDZAAAQQAB/4AIlUAR+AAAAAPYpgAJoUwAE0KYACaCaqgAAClVQye9qqp+ohyB+UD5QPqge6B+0Dygd" +
+        "QNQPKB/lA+UDygagagfdA1A1A1A1A1A1A1A/aBqBqBqB+UDUDUDUDUDUDUD3QNQNQNQNQPVA1A1A1A1A1A9UDUDIGQMgZA9oGQMg" +
+        "ZAyB+UDIGQMgZAyBkD9QMgZAyB90DIGQMgZAyBkDIHiBkDIH1QMgZAyBkDIGQMgZA5A0gZAyBkDIGQMgZA9/ySpC/lA8oHlA8oHl" +
+        "A8QPiB8QPiB8QPXUDUDUDUDUD2gZAyBkDIHKoTUDUD7oGoGoGQMgZAyBkDxVCagagagflA1AyBkDIGQMgfqqE1A1A1A1A9UDIGQM" +
+        "gZAyB7VQmoGoGoGoGQPdAyBkDIGQPUkJ9IGoGoGoGoGQMgeUDIGQPskJ1A6gdQOoHIHIHIHlA5A+iQnUDqB1A6gcgcgcgcgclBdQ" +
+        "OoHUDqByByByByByoV/0lJU+iEqYepCVPohKnzFBWSZTWa98GwwAbJBZAAAQQAB/4AIlUAR+AAAAAApgAJoUwAE0KYACaFMABNAp" +
+        "VQM3qqnpGnXKB7oH1A8IHSB2gcQOkDIHaB/ED6gd0DIGQPKBkDIGQMgZAyBkDqgZAyBkD0gZAyBkDIGQMgfKBkDIGQMge0DIGQMg" +
+        "ZAyB7QMgZA1A1A1A+UDUDUDUDUD0gagagagagagagdUDUDUDUDygagagagagagagagd0DUDUDwgagagagagagagagagcoGkDUDUD" +
+        "UDUDUDUDUD8kqQvygdIHSB0gdIHSB9oH2gfaB9oHEDUDIGQMgagagagagagcJCZAyB5oGQMgagagagagagdkhMgZAyB6oGQNQNQN" +
+        "QNQNQOpITIGQMgZA9oGoGoGoGoGoHwkJkDIGQMgagfEDUDUDUDUD3KhPFAyBkDIGQNQNQO0DUDUDyqhOIHEDiBxA5QOUDlA7QOUD" +
+        "wqhOIHEDiBxA5QOUDlA5QOIQuIHEDiBxA5QOUDlA5QOSRX7IoL98VQReCVIX+kqQv0lSF/zFBWSZTWe+qAywAMRVZAAAQQAB/4AI" +
+        "lUAN+AAAACmAAmhTAATQpgAJoUwAE0ClVAzeqqekachegvsLxC+QuoXcLkLQu4X8hfYXYWhaF5haFoWhaFgsFgugsFgsF6CwWCwW" +
+        "CwWC+BYLBYLBewsFgsFgsF7CwWCwWCwXwLBYLBYL1CwWCwWCwWC6CwWCwXmFgsFgsFgsFguwsFgvELBYLBYLBYLBYLgWgsFgsFgs" +
+        "FgsF+KER+BdQuoXQXQXQX0L6F9C+hchYLQsFgsFgsFgsFxJVoWheQsFgsFgsFgsF3UVaFoWC9BYLBYLBYLBdAq0LQsFgvYWCwWCw" +
+        "WC+Aq0LQsFgsF8hYLBYLBewVc8haF5CwWCwWC7hYLBeQVchcC4FwLgXAuBdwuBeAVchcC4FwLgXAuBcC4gjkLgXAuBcC4FwLgXAk" +
+        "/VCI/YUh/vBIo8SER+qER/xdyRThQkBDgjTo";
+
+    private static List<byte[]> decode(byte[] file)
+    {
+        return FileCodecTester.decode(new Bzip2FileDecoderPlugin(),
+                ImmutableList.<List<Buffer>>of(ImmutableList.of(Buffer.copyOf(file))));
+    }
+
+    @Test
+    public void testReferenceStreams()
+    {
+        assertArrayEquals(new byte[0], decode(base64(EMPTY)).get(0));
+        assertArrayEquals("hello bzip2\n".getBytes(), decode(base64(HELLO)).get(0));
+        assertArrayEquals((Strings.repeat("a", 1000) + Strings.repeat("b", 300) + "xyz").getBytes(),
+                decode(base64(RUNS)).get(0));
+        assertArrayEquals(TestZstdFileEncoderPlugin.linesText(), decode(base64(LINES)).get(0));
+    }
+
+    @Test
+    public void testConcatenatedStreams()
+    {
+        byte[] file = Bytes.concat(base64(HELLO), base64(EMPTY), base64(HELLO));
+        assertArrayEquals("hello bzip2\nhello bzip2\n".getBytes(), decode(file).get(0));
+    }
+
+    @Test
+    public void testNotBzip2()
+    {
+        try {
+            decode("not bzip2 data".getBytes());
+            fail();
+        } catch (RuntimeException ex) {
+        }
+    }
+
+    private static byte[] base64(String data)
+    {
+        return BaseEncoding.base64().decode(data);
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        byte[] text = TestZstdFileEncoderPlugin.linesText();
+        List<byte[]> files = ImmutableList.of(text, new byte[0], "x".getBytes());
+        // level 1 splits text into multiple blocks of 100KB
+        for (int level : new int[] { 1, 9 }) {
+            List<List<Buffer>> encoded = FileCodecTester.encode(new Bzip2FileEncoderPlugin(),
+                    Exec.newConfigSource().set("level", level), files);
+            assertEquals(3, encoded.size());
+            byte[] first = FileCodecTester.toByteArray(encoded.get(0));
+            assertEquals("BZh" + level, new String(first, 0, 4));
+            assertTrue(first.length < text.length / 10);
+
+            List<byte[]> decoded = FileCodecTester.decode(new Bzip2FileDecoderPlugin(), encoded);
+            assertEquals(3, decoded.size());
+            for (int i = 0; i < files.size(); i++) {
+                assertArrayEquals(files.get(i), decoded.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void checkLevel()
+    {
+        for (int level : new int[] { 0, 10 }) {
+            try {
+                FileCodecTester.encode(new Bzip2FileEncoderPlugin(), Exec.newConfigSource().set("level", level),
+                        ImmutableList.<byte[]>of());
+                fail();
+            } catch (TaskValidationException ex) {
+            }
+        }
+    }
+}
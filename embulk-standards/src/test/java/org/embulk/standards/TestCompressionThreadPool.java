@@ -0,0 +1,50 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertFalse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.Exec;
+
+public class TestCompressionThreadPool
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void testThreadsDontKeepSession() throws Exception
+    {
+        // tasks wait for each other so that every thread of the pool runs one
+        int threads = Runtime.getRuntime().availableProcessors();
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(CompressionThreadPool.get().submit(new Callable<Boolean>() {
+                public Boolean call() throws Exception
+                {
+                    barrier.await(10, TimeUnit.SECONDS);
+                    return hasSession();
+                }
+            }));
+        }
+        for (Future<Boolean> future : futures) {
+            assertFalse(future.get());
+        }
+    }
+
+    private static boolean hasSession()
+    {
+        try {
+            Exec.session();
+            return true;
+        } catch (NullPointerException ex) {
+            return false;
+        }
+    }
+}
@@ -2,8 +2,12 @@ package org.embulk.standards;
 
 import org.junit.Rule;
 import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -11,8 +15,16 @@ import org.joda.time.DateTimeZone;
 import org.embulk.EmbulkTestRuntime;
 import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Buffer;
 import org.embulk.spi.Exec;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.ParserPlugin;
+import org.embulk.spi.Schema;
+import org.embulk.spi.TestPageBuilderReader.MockPageOutput;
+import org.embulk.spi.util.ListFileInput;
 import org.embulk.spi.util.Newline;
+import org.embulk.spi.util.Pages;
 
 public class TestCsvParserPlugin
 {
@@ -72,4 +84,190 @@ public class TestCsvParserPlugin
         assertEquals(Optional.of(new CsvParserPlugin.QuoteCharacter('\\')), task.getQuoteChar());
         assertEquals(true, task.getAllowOptionalColumns());
     }
+
+    @Test
+    public void checkSelectColumnsByHeaderDefault()
+    {
+        ConfigSource config = Exec.newConfigSource()
+            .set("columns", ImmutableList.of(
+                        ImmutableMap.of(
+                            "name", "date_code",
+                            "type", "string"))
+                    );
+
+        CsvParserPlugin.PluginTask task = config.loadConfig(CsvParserPlugin.PluginTask.class);
+        assertEquals(false, task.getSelectColumnsByHeader());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void checkSelectColumnsByHeaderRequiresHeaderLine()
+    {
+        ConfigSource config = Exec.newConfigSource()
+                .set("select_columns_by_header", true)
+                .set("columns", ImmutableList.of(
+                            ImmutableMap.of(
+                                "name", "date_code",
+                                "type", "string"))
+                        );
+
+        new CsvParserPlugin().transaction(config, null);
+    }
+
+    @Test(expected = ConfigException.class)
+    public void checkDuplicatedColumnIndex()
+    {
+        ConfigSource config = Exec.newConfigSource()
+                .set("columns", ImmutableList.of(
+                            ImmutableMap.of(
+                                "name", "a",
+                                "type", "string",
+                                "index", 1),
+                            ImmutableMap.of(
+                                "name", "b",
+                                "type", "string",
+                                "index", 1))
+                        );
+
+        new CsvParserPlugin().transaction(config, null);
+    }
+
+    @Test
+    public void parseSelectedColumnsByIndex()
+    {
+        ConfigSource config = Exec.newConfigSource()
+                .set("newline", "LF")
+                .set("columns", ImmutableList.of(
+                            ImmutableMap.of(
+                                "name", "c",
+                                "type", "long",
+                                "index", 2),
+                            ImmutableMap.of(
+                                "name", "a",
+                                "type", "string",
+                                "index", 0))
+                        );
+
+        List<Object[]> records = parse(config, "x,skipped,1\ny,\"skipped,quoted\",2\n");
+        assertEquals(2, records.size());
+        assertArrayEquals(new Object[] {1L, "x"}, records.get(0));
+        assertArrayEquals(new Object[] {2L, "y"}, records.get(1));
+    }
+
+    @Test
+    public void parseSelectedColumnsByHeader()
+    {
+        ConfigSource config = Exec.newConfigSource()
+                .set("newline", "LF")
+                .set("header_line", true)
+                .set("select_columns_by_header", true)
+                .set("columns", ImmutableList.of(
+                            ImmutableMap.of(
+                                "name", "c",
+                                "type", "string"),
+                            ImmutableMap.of(
+                                "name", "b",
+                                "type", "long"))
+                        );
+
+        List<Object[]> records = parse(config, "a,b,c,d\nx,1,y,z\n,2,,\n");
+        assertEquals(2, records.size());
+        assertArrayEquals(new Object[] {"y", 1L}, records.get(0));
+        assertArrayEquals(new Object[] {null, 2L}, records.get(1));
+    }
+
+    @Test
+    public void skipExtraColumnsOfSelectedColumns()
+    {
+        ConfigSource config = Exec.newConfigSource()
+                .set("newline", "LF")
+                .set("header_line", true)
+                .set("select_columns_by_header", true)
+                .set("columns", ImmutableList.of(
+                            ImmutableMap.of(
+                                "name", "a",
+                                "type", "string"))
+                        );
+        String text = "a,b\nx,1\ny,2,extra\n";
+
+        List<Object[]> records = parse(config, text);
+        assertEquals(1, records.size());
+        assertArrayEquals(new Object[] {"x"}, records.get(0));
+
+        records = parse(config.set("allow_extra_columns", true), text);
+        assertEquals(2, records.size());
+        assertArrayEquals(new Object[] {"x"}, records.get(0));
+        assertArrayEquals(new Object[] {"y"}, records.get(1));
+    }
+
+    @Test
+    public void parseSelectedColumnsByHeaderOfEachFile()
+    {
+        ConfigSource config = Exec.newConfigSource()
+                .set("newline", "LF")
+                .set("header_line", true)
+                .set("select_columns_by_header", true)
+                .set("columns", ImmutableList.of(
+                            ImmutableMap.of(
+                                "name", "a",
+                                "type", "string"),
+                            ImmutableMap.of(
+                                "name", "b",
+                                "type", "long"))
+                        );
+
+        // header lines of the later files are skipped and their column order is used
+        List<Object[]> records = parse(config, "a,b
+x,1
+", "b,c,a
+2,z,y
+", "a,b
+w,3
+");
+        assertEquals(3, records.size());
+        assertArrayEquals(new Object[] {"x", 1L}, records.get(0));
+        assertArrayEquals(new Object[] {"y", 2L}, records.get(1));
+        assertArrayEquals(new Object[] {"w", 3L}, records.get(2));
+    }
+
+    @Test
+    public void skipHeaderLinesOfEachFile()
+    {
+        ConfigSource config = Exec.newConfigSource()
+                .set("newline", "LF")
+                .set("skip_header_lines", 1)
+                .set("columns", ImmutableList.of(
+                            ImmutableMap.of(
+                                "name", "a",
+                                "type", "long"))
+                        );
+
+        List<Object[]> records = parse(config, "a
+1
+", "a
+2
+");
+        assertEquals(2, records.size());
+        assertArrayEquals(new Object[] {1L}, records.get(0));
+        assertArrayEquals(new Object[] {2L}, records.get(1));
+    }
+
+    private static List<Object[]> parse(ConfigSource config, String... files)
+    {
+        final CsvParserPlugin plugin = new CsvParserPlugin();
+        ImmutableList.Builder<List<Buffer>> buffers = ImmutableList.builder();
+        for (String text : files) {
+            buffers.add(ImmutableList.of(Buffer.wrap(text.getBytes(StandardCharsets.UTF_8))));
+        }
+        final FileInput input = new ListFileInput(buffers.build());
+        final MockPageOutput output = new MockPageOutput();
+        final List<Object[]> records = new ArrayList<>();
+        plugin.transaction(config, new ParserPlugin.Control() {
+            public void run(TaskSource taskSource, Schema schema)
+            {
+                plugin.run(taskSource, schema, input, output);
+                records.addAll(Pages.toObjects(schema, output.pages));
+            }
+        });
+        return records;
+    }
 }
@@ -340,6 +340,39 @@ public class TestCsvTokenizer
         assertEquals("v7", tokenizer.nextColumn());
     }
 
+    @Test
+    public void skipColumn() throws Exception
+    {
+        FileInput input = newFileInputFromLines(task,
+                "a,\"b,\nb\",c",
+                " x ,y,",
+                "1");
+        LineDecoder decoder = new LineDecoder(input, task);
+        CsvTokenizer tokenizer = new CsvTokenizer(decoder, task);
+        tokenizer.nextFile();
+
+        assertTrue(tokenizer.nextRecord());
+        tokenizer.skipColumn();
+        tokenizer.skipColumn();
+        assertEquals("c", tokenizer.nextColumn());
+        assertTrue(!tokenizer.hasNextColumn());
+
+        assertTrue(tokenizer.nextRecord());
+        tokenizer.skipColumn();
+        assertEquals("y", tokenizer.nextColumn());
+        tokenizer.skipColumn();
+        assertTrue(!tokenizer.hasNextColumn());
+
+        assertTrue(tokenizer.nextRecord());
+        tokenizer.skipColumn();
+        try {
+            tokenizer.skipColumn();
+            fail();
+        } catch (Exception e) {
+            assertTrue(e instanceof CsvTokenizer.TooFewColumnsException);
+        }
+    }
+
     /*
     @Test
     public void parseEscapedQuotedValues() throws Exception
@@ -0,0 +1,119 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import com.google.common.primitives.Bytes;
+import org.embulk.spi.Buffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestFileChannelWriter
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private byte[] writeChunks(FileChannelWriter writer, int count, int chunkSize) throws IOException
+    {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Random random = new Random(count);
+        for (int i = 0; i < count; i++) {
+            byte[] chunk = new byte[random.nextInt(chunkSize) + 1];
+            random.nextBytes(chunk);
+            expected.write(chunk);
+            writer.write(Buffer.copyOf(chunk));
+        }
+        return expected.toByteArray();
+    }
+
+    @Test
+    public void testWriteEachBuffer() throws IOException
+    {
+        Path path = temp.newFile().toPath();
+        byte[] expected;
+        try (FileChannelWriter writer = new FileChannelWriter(path, 0, 0, 0, false)) {
+            expected = writeChunks(writer, 100, 1000);
+        }
+        assertArrayEquals(expected, Files.readAllBytes(path));
+    }
+
+    @Test
+    public void testGatheringWrite() throws IOException
+    {
+        Path path = temp.newFile().toPath();
+        byte[] expected;
+        try (FileChannelWriter writer = new FileChannelWriter(path, 10000, 0, 0, false)) {
+            expected = writeChunks(writer, 3000, 100);
+            writer.flush();
+            assertEquals(expected.length, Files.size(path));
+            expected = Bytes.concat(expected, writeChunks(writer, 10, 100));
+        }
+        assertArrayEquals(expected, Files.readAllBytes(path));
+    }
+
+    @Test
+    public void testPreallocate() throws IOException
+    {
+        Path path = temp.newFile().toPath();
+        byte[] expected;
+        try (FileChannelWriter writer = new FileChannelWriter(path, 4096, 1024 * 1024, 0, true)) {
+            assertEquals(1024 * 1024, Files.size(path));
+            expected = writeChunks(writer, 50, 1000);
+        }
+        assertArrayEquals(expected, Files.readAllBytes(path));
+    }
+
+    @Test
+    public void testWriteBeyondPreallocated() throws IOException
+    {
+        Path path = temp.newFile().toPath();
+        byte[] expected;
+        try (FileChannelWriter writer = new FileChannelWriter(path, 4096, 1024 * 1024 + 100, 0, true)) {
+            assertEquals(1024 * 1024 + 100, Files.size(path));
+            expected = writeChunks(writer, 3000, 1000);
+            assertTrue(expected.length > 1024 * 1024 + 100);
+        }
+        assertArrayEquals(expected, Files.readAllBytes(path));
+    }
+
+    @Test
+    public void testAbortPreallocated() throws IOException
+    {
+        Path path = temp.newFile().toPath();
+        FileChannelWriter writer = new FileChannelWriter(path, 4096, 1024 * 1024, 0, true);
+        byte[] expected = writeChunks(writer, 50, 1000);
+        writer.flush();
+        writer.write(Buffer.copyOf("pending".getBytes()));
+        writer.abort();
+        assertArrayEquals(expected, Files.readAllBytes(path));
+        writer.close();
+    }
+
+    @Test
+    public void testSyncInterval() throws IOException
+    {
+        Path path = temp.newFile().toPath();
+        byte[] expected;
+        try (FileChannelWriter writer = new FileChannelWriter(path, 1000, 0, 5000, true)) {
+            expected = writeChunks(writer, 100, 1000);
+        }
+        assertArrayEquals(expected, Files.readAllBytes(path));
+    }
+
+    @Test
+    public void testTruncateExistingFile() throws IOException
+    {
+        Path path = temp.newFile().toPath();
+        Files.write(path, new byte[10000]);
+        try (FileChannelWriter writer = new FileChannelWriter(path, 0, 0, 0, false)) {
+            writer.write(Buffer.copyOf("abc".getBytes()));
+        }
+        assertArrayEquals("abc".getBytes(), Files.readAllBytes(path));
+    }
+}
@@ -0,0 +1,55 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.DecoderPlugin;
+import org.embulk.spi.Exec;
+
+public class TestGzipFileDecoderPlugin
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void checkDefaultValues()
+    {
+        GzipFileDecoderPlugin.PluginTask task = Exec.newConfigSource().loadConfig(GzipFileDecoderPlugin.PluginTask.class);
+        assertEquals(1024 * 1024, task.getBufferSize().getBytes());
+        assertEquals(1, task.getThreads());
+    }
+
+    @Test
+    public void checkBufferSize()
+    {
+        assertRejected(Exec.newConfigSource().set("buffer_size", "0"));
+        assertRejected(Exec.newConfigSource().set("buffer_size", "65537KB"));
+        assertRejected(Exec.newConfigSource().set("buffer_size", "4GB"));
+        assertRejected(Exec.newConfigSource().set("buffer_size", "64MB").set("threads", 17));
+        assertRejected(Exec.newConfigSource().set("buffer_size", "1MB").set("threads", Integer.MAX_VALUE));
+        transaction(Exec.newConfigSource().set("buffer_size", "1B"));
+        transaction(Exec.newConfigSource().set("buffer_size", "64MB").set("threads", 16));
+    }
+
+    private static void assertRejected(ConfigSource config)
+    {
+        try {
+            transaction(config);
+            fail();
+        } catch (ConfigException ex) {
+        }
+    }
+
+    private static void transaction(ConfigSource config)
+    {
+        new GzipFileDecoderPlugin().transaction(config, new DecoderPlugin.Control() {
+            public void run(TaskSource taskSource)
+            { }
+        });
+    }
+}
@@ -0,0 +1,55 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.EncoderPlugin;
+import org.embulk.spi.Exec;
+
+public class TestGzipFileEncoderPlugin
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void checkDefaultValues()
+    {
+        GzipFileEncoderPlugin.PluginTask task = Exec.newConfigSource().loadConfig(GzipFileEncoderPlugin.PluginTask.class);
+        assertEquals(6, task.getLevel());
+        assertEquals(1, task.getThreads());
+        assertEquals(128 * 1024, task.getBlockSize().getBytes());
+    }
+
+    @Test
+    public void checkBlockSize()
+    {
+        assertBlockSizeRejected("0");
+        assertBlockSizeRejected("1023B");
+        assertBlockSizeRejected("65537KB");
+        assertBlockSizeRejected("2GB");
+        transaction(Exec.newConfigSource().set("threads", 4).set("block_size", "1KB"));
+        transaction(Exec.newConfigSource().set("threads", 4).set("block_size", "64MB"));
+    }
+
+    private static void assertBlockSizeRejected(String blockSize)
+    {
+        try {
+            transaction(Exec.newConfigSource().set("threads", 4).set("block_size", blockSize));
+            fail();
+        } catch (ConfigException ex) {
+        }
+    }
+
+    private static void transaction(ConfigSource config)
+    {
+        new GzipFileEncoderPlugin().transaction(config, new EncoderPlugin.Control() {
+            public void run(TaskSource taskSource)
+            { }
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import com.google.common.collect.ImmutableList;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.util.ListFileInput;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestGzipFileInput
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private static byte[] randomText(int size)
+    {
+        byte[] data = new byte[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] parallelGzip(byte[] data, int blockSize) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gz = new ParallelGzipOutputStream(out, 6, blockSize, 2)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Buffer> split(byte[] data, int chunkSize)
+    {
+        List<Buffer> buffers = new ArrayList<Buffer>();
+        for (int i = 0; i < data.length; i += chunkSize) {
+            buffers.add(Buffer.copyOf(Arrays.copyOfRange(data, i, Math.min(i + chunkSize, data.length))));
+        }
+        return buffers;
+    }
+
+    private byte[] decode(byte[] compressed, int chunkSize, int bufferSize, int threads)
+    {
+        FileInput list = new ListFileInput(ImmutableList.of(split(compressed, chunkSize)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GzipFileInput input = new GzipFileInput(list, runtime.getBufferAllocator(), bufferSize, threads)) {
+            assertTrue(input.nextFile());
+            Buffer buffer;
+            while ((buffer = input.poll()) != null) {
+                out.write(buffer.array(), buffer.offset(), buffer.limit());
+                buffer.release();
+            }
+            assertFalse(input.nextFile());
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testSingleMember() throws IOException
+    {
+        byte[] data = randomText(100000);
+        byte[] compressed = gzip(data);
+        assertArrayEquals(data, decode(compressed, 7, 1024, 1));
+        assertArrayEquals(data, decode(compressed, 65536, 1024 * 1024, 1));
+        assertArrayEquals(data, decode(compressed, 7, 1024, 4));
+    }
+
+    @Test
+    public void testConcatenatedMembers() throws IOException
+    {
+        byte[] data = randomText(100000);
+        byte[] compressed = parallelGzip(data, 4096);
+        assertArrayEquals(data, decode(compressed, 7, 1024, 1));
+        assertArrayEquals(data, decode(compressed, 1000, 1024, 4));
+        assertArrayEquals(data, decode(compressed, 65536, 1024 * 1024, 4));
+    }
+
+    @Test
+    public void testEmptyData() throws IOException
+    {
+        assertArrayEquals(new byte[0], decode(gzip(new byte[0]), 7, 1024, 1));
+        assertArrayEquals(new byte[0], decode(parallelGzip(new byte[0], 1024), 7, 1024, 4));
+    }
+
+    @Test
+    public void testTrailingGarbage() throws IOException
+    {
+        byte[] data = randomText(1000);
+        byte[] compressed = gzip(data);
+        byte[] withGarbage = Arrays.copyOf(compressed, compressed.length + 3);
+        assertArrayEquals(data, decode(withGarbage, 7, 1024, 1));
+    }
+
+    @Test
+    public void testCorruptTrailer() throws IOException
+    {
+        byte[] compressed = gzip(randomText(1000));
+        compressed[compressed.length - 5]++;
+        try {
+            decode(compressed, 7, 1024, 1);
+            fail();
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof ZipException);
+        }
+    }
+}
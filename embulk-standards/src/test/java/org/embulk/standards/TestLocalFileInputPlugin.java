@@ -0,0 +1,97 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.CommitReport;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.Exec;
+import org.embulk.spi.FileInputPlugin;
+import org.embulk.spi.TransactionalFileInput;
+
+public class TestLocalFileInputPlugin
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void checkReadBufferSize() throws IOException
+    {
+        File dir = folder.newFolder();
+        assertReadBufferSizeRejected(dir, "0");
+        assertReadBufferSizeRejected(dir, "2GB");
+        assertEquals(0, transaction(config(dir).set("read_mode", "MMAP").set("read_buffer_size", "1B")));
+    }
+
+    @Test
+    public void testOpenReadsFileOfTask() throws IOException
+    {
+        File dir = folder.newFolder();
+        for (String name : new String[] { "a.csv", "b.csv", "c.csv" }) {
+            Files.write(name, new File(dir, name), StandardCharsets.UTF_8);
+        }
+        final LocalFileInputPlugin plugin = new LocalFileInputPlugin();
+        final List<String> contents = new ArrayList<>();
+        plugin.transaction(config(dir), new FileInputPlugin.Control() {
+            public List<CommitReport> run(TaskSource taskSource, int taskCount)
+            {
+                // each task gets a shallow copy of the TaskSource from FileInputRunner
+                for (int i = 0; i < taskCount; i++) {
+                    TaskSource copy = Exec.newTaskSource().setAll(taskSource);
+                    try (TransactionalFileInput input = plugin.open(copy, i)) {
+                        assertTrue(input.nextFile());
+                        Buffer buffer = input.poll();
+                        contents.add(new String(buffer.array(), buffer.offset(), buffer.limit(), StandardCharsets.UTF_8));
+                        buffer.release();
+                    }
+                }
+                return new ArrayList<>();
+            }
+        });
+        assertEquals(ImmutableList.of("a.csv", "b.csv", "c.csv"), contents);
+    }
+
+    private static ConfigSource config(File dir)
+    {
+        return Exec.newConfigSource().set("path_prefix", dir.getPath() + File.separator);
+    }
+
+    private static void assertReadBufferSizeRejected(File dir, String readBufferSize)
+    {
+        try {
+            transaction(config(dir).set("read_mode", "CHANNEL").set("read_buffer_size", readBufferSize));
+            fail();
+        } catch (ConfigException ex) {
+        }
+    }
+
+    private static int transaction(ConfigSource config)
+    {
+        final int[] taskCount = new int[1];
+        new LocalFileInputPlugin().transaction(config, new FileInputPlugin.Control() {
+            public List<CommitReport> run(TaskSource taskSource, int count)
+            {
+                taskCount[0] = count;
+                return new ArrayList<>();
+            }
+        });
+        return taskCount[0];
+    }
+}
@@ -0,0 +1,130 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import org.embulk.EmbulkTestRuntime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestLocalFileLister
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private Path root;
+
+    @Before
+    public void createFiles() throws IOException
+    {
+        root = temp.newFolder("root").toPath();
+        for (String path : new String[] {
+                "data1.csv", "data2.csv", "other.csv",
+                "data_a/x.csv", "data_a/y.csv", "data_a/sub/z.csv",
+                "data_b/x.csv", "other_dir/x.csv" }) {
+            Path file = root.resolve(path);
+            Files.createDirectories(file.getParent());
+            Files.createFile(file);
+        }
+    }
+
+    private List<String> list(String prefix, String lastPath, int threads, Path cache) throws IOException
+    {
+        // files are sorted with any number of threads
+        return new LocalFileLister(root, prefix,
+                Optional.fromNullable(lastPath), threads, Optional.fromNullable(cache)).list();
+    }
+
+    private List<String> paths(String... names)
+    {
+        List<String> paths = new ArrayList<String>();
+        for (String name : names) {
+            paths.add(root.resolve(name).toString());
+        }
+        return paths;
+    }
+
+    @Test
+    public void testPrefix() throws IOException
+    {
+        List<String> expected = paths("data1.csv", "data2.csv", "data_a/sub/z.csv",
+                "data_a/x.csv", "data_a/y.csv", "data_b/x.csv");
+        assertEquals(expected, list("data", null, 1, null));
+        assertEquals(expected, list("data", null, 4, null));
+        assertEquals(paths("data_b/x.csv"), list("data_b", null, 4, null));
+    }
+
+    @Test
+    public void testLastPath() throws IOException
+    {
+        // files in a directory after last_path are listed even if the
+        // directory name itself is less than last_path
+        String lastPath = root.resolve("data_a/x.csv").toString();
+        List<String> expected = paths("data_a/y.csv", "data_b/x.csv");
+        assertEquals(expected, list("data", lastPath, 1, null));
+        assertEquals(expected, list("data", lastPath, 4, null));
+
+        lastPath = root.resolve("data_a/sub/z.csv").toString();
+        assertEquals(paths("data_a/x.csv", "data_a/y.csv", "data_b/x.csv"), list("data", lastPath, 4, null));
+    }
+
+    @Test
+    public void testCache() throws IOException
+    {
+        Path cache = temp.getRoot().toPath().resolve("cache.json");
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+        setModifiedTime(root.toFile(), old);
+
+        List<String> expected = list("", null, 2, cache);
+        assertEquals(8, expected.size());
+        assertTrue(Files.exists(cache));
+
+        // a new file is not listed if the directory looks unchanged
+        Files.createFile(root.resolve("data_b/new.csv"));
+        Files.setLastModifiedTime(root.resolve("data_b"), old);
+        assertEquals(expected, list("", null, 2, cache));
+
+        // listing reads the directory again once its modification time changes
+        Files.setLastModifiedTime(root.resolve("data_b"), FileTime.fromMillis(System.currentTimeMillis()));
+        List<String> updated = new ArrayList<String>(expected);
+        updated.add(root.resolve("data_b/new.csv").toString());
+        Collections.sort(updated);
+        assertEquals(updated, list("", null, 2, cache));
+        assertEquals(ImmutableList.copyOf(updated), list("", null, 1, null));
+    }
+
+    @Test
+    public void testBrokenCacheIsIgnored() throws IOException
+    {
+        Path cache = temp.getRoot().toPath().resolve("cache.json");
+        Files.write(cache, "broken".getBytes());
+        assertEquals(8, list("", null, 1, cache).size());
+    }
+
+    private static void setModifiedTime(File dir, FileTime time) throws IOException
+    {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    setModifiedTime(child, time);
+                }
+            }
+        }
+        Files.setLastModifiedTime(dir.toPath(), time);
+    }
+}
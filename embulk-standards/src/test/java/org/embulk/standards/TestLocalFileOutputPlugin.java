@@ -0,0 +1,73 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.CommitReport;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Exec;
+import org.embulk.spi.FileOutputPlugin;
+
+public class TestLocalFileOutputPlugin
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void checkOptions() throws IOException
+    {
+        File dir = folder.newFolder();
+        assertRejected(config(dir).set("write_buffer_size", "2GB"));
+        assertRejected(config(dir).set("preallocate_size", "0"));
+        assertRejected(config(dir).set("fsync", "INTERVAL").set("fsync_interval", "0"));
+
+        assertEquals(1, transaction(config(dir)
+                    .set("write_buffer_size", "1MB")
+                    .set("preallocate_size", "1MB")
+                    .set("fsync", "INTERVAL")
+                    .set("fsync_interval", "1MB")));
+        // fsync_interval is used only by INTERVAL
+        assertEquals(1, transaction(config(dir).set("fsync", "COMMIT").set("fsync_interval", "0")));
+    }
+
+    private static ConfigSource config(File dir)
+    {
+        return Exec.newConfigSource()
+            .set("path_prefix", dir.getPath() + File.separator + "out")
+            .set("file_ext", "csv");
+    }
+
+    private static void assertRejected(ConfigSource config)
+    {
+        try {
+            transaction(config);
+            fail();
+        } catch (ConfigException ex) {
+        }
+    }
+
+    // returns the number of times control.run is called
+    private static int transaction(ConfigSource config)
+    {
+        final int[] runs = new int[1];
+        new LocalFileOutputPlugin().transaction(config, 1, new FileOutputPlugin.Control() {
+            public List<CommitReport> run(TaskSource taskSource)
+            {
+                runs[0]++;
+                return null;
+            }
+        });
+        return runs[0];
+    }
+}
@@ -0,0 +1,147 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Bytes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.ConfigException;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.Exec;
+
+public class TestLz4FileEncoderPlugin
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    // frames below are written by liblz4 1.9.4 (LZ4F_compressFrame), the
+    // reference implementation used by the lz4 command
+
+    // "Hello, LZ4! Hello, LZ4! Hello, LZ4!\n" with independent blocks and a content checksum
+    private static final byte[] REFERENCE_HELLO = new byte[] {
+        0x04, 0x22, 0x4d, 0x18, 0x64, 0x40, (byte) 0xa7, 0x16, 0x00, 0x00, 0x00, (byte) 0xcf,
+        0x48, 0x65, 0x6c, 0x6c, 0x6f, 0x2c, 0x20, 0x4c, 0x5a, 0x34, 0x21, 0x20,
+        0x0c, 0x00, 0x00, 0x50, 0x4c, 0x5a, 0x34, 0x21, 0x0a, 0x00, 0x00, 0x00,
+        0x00, 0x3f, (byte) 0xa5, (byte) 0xe4, (byte) 0xb9,
+    };
+
+    // referenceRepeatedText() in linked 64KB blocks with block checksums, a content size and a content checksum
+    private static final byte[] REFERENCE_LINKED_BLOCKS = new byte[] {
+        0x04, 0x22, 0x4d, 0x18, 0x5c, 0x40, (byte) 0xa0, (byte) 0x86, 0x01, 0x00, 0x00, 0x00,
+        0x00, 0x00, 0x60, 0x56, 0x01, 0x00, 0x00, (byte) 0xff, 0x3c, 0x30, 0x30, 0x2c,
+        0x30, 0x31, 0x2c, 0x30, 0x32, 0x2c, 0x30, 0x33, 0x2c, 0x30, 0x34, 0x2c,
+        0x30, 0x35, 0x2c, 0x30, 0x36, 0x2c, 0x30, 0x37, 0x2c, 0x30, 0x38, 0x2c,
+        0x30, 0x39, 0x2c, 0x31, 0x30, 0x2c, 0x31, 0x31, 0x2c, 0x31, 0x32, 0x2c,
+        0x31, 0x33, 0x2c, 0x31, 0x34, 0x2c, 0x31, 0x35, 0x2c, 0x31, 0x36, 0x2c,
+        0x31, 0x37, 0x2c, 0x31, 0x38, 0x2c, 0x31, 0x39, 0x2c, 0x32, 0x30, 0x2c,
+        0x32, 0x31, 0x2c, 0x32, 0x32, 0x2c, 0x32, 0x33, 0x2c, 0x32, 0x34, 0x2c,
+        0x4b, 0x00, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0x9d, 0x50, 0x2c, 0x31, 0x39, 0x2c,
+        0x32, (byte) 0xb2, 0x34, (byte) 0xeb, (byte) 0x92, (byte) 0x91, 0x00, 0x00, 0x00, 0x0f, (byte) 0xc3, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f, 0x50, 0x2c, 0x30, 0x37, 0x2c, 0x30, 0x00, (byte) 0xf0,
+        0x41, 0x6e, 0x00, 0x00, 0x00, 0x00, (byte) 0xb7, 0x5f, (byte) 0x95, (byte) 0x84,
+    };
+
+    private static byte[] referenceRepeatedText()
+    {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 100000) {
+            for (int i = 0; i < 25; i++) {
+                sb.append(String.format("%02d,", i));
+            }
+        }
+        sb.setLength(100000);
+        return sb.toString().getBytes();
+    }
+
+    @Test
+    public void testReferenceFrames()
+    {
+        // skippable frame between the frames
+        byte[] skippable = new byte[] { 0x50, 0x2a, 0x4d, 0x18, 3, 0, 0, 0, 1, 2, 3 };
+        List<byte[]> decoded = FileCodecTester.decode(new Lz4FileDecoderPlugin(), ImmutableList.<List<Buffer>>of(
+                    ImmutableList.of(Buffer.copyOf(REFERENCE_HELLO)),
+                    ImmutableList.of(Buffer.copyOf(Bytes.concat(REFERENCE_HELLO, skippable, REFERENCE_LINKED_BLOCKS)))));
+        assertEquals(2, decoded.size());
+        assertArrayEquals("Hello, LZ4! Hello, LZ4! Hello, LZ4!\n".getBytes(), decoded.get(0));
+        assertArrayEquals(Bytes.concat("Hello, LZ4! Hello, LZ4! Hello, LZ4!\n".getBytes(), referenceRepeatedText()),
+                decoded.get(1));
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        byte[] text = TestZstdFileEncoderPlugin.linesText();
+        List<byte[]> files = ImmutableList.of(text, new byte[0], "x".getBytes());
+        for (String blockSize : new String[] { "64KB", "256KB", "1MB", "4MB" }) {
+            List<List<Buffer>> encoded = FileCodecTester.encode(new Lz4FileEncoderPlugin(),
+                    Exec.newConfigSource().set("block_size", blockSize), files);
+            assertEquals(3, encoded.size());
+            // magic number of lz4 frames
+            assertArrayEquals(new byte[] { 0x04, 0x22, 0x4d, 0x18 },
+                    Arrays.copyOf(FileCodecTester.toByteArray(encoded.get(0)), 4));
+            assertTrue(FileCodecTester.toByteArray(encoded.get(0)).length < text.length / 4);
+
+            List<byte[]> decoded = FileCodecTester.decode(new Lz4FileDecoderPlugin(), encoded);
+            assertEquals(3, decoded.size());
+            for (int i = 0; i < files.size(); i++) {
+                assertArrayEquals(files.get(i), decoded.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testNotLz4()
+    {
+        try {
+            FileCodecTester.decode(new Lz4FileDecoderPlugin(), ImmutableList.<List<Buffer>>of(
+                        ImmutableList.of(Buffer.copyOf("not lz4 data".getBytes()))));
+            fail();
+        } catch (RuntimeException ex) {
+        }
+    }
+
+    @Test(expected = ConfigException.class)
+    public void checkBlockSize()
+    {
+        FileCodecTester.encode(new Lz4FileEncoderPlugin(), Exec.newConfigSource().set("block_size", "100KB"),
+                ImmutableList.<byte[]>of());
+    }
+}
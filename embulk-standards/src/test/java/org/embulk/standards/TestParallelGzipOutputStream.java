@@ -0,0 +1,53 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertArrayEquals;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+
+public class TestParallelGzipOutputStream
+{
+    @Test
+    public void testConcatenatedMembers() throws IOException
+    {
+        check(0, 1024);
+        check(1, 1024);
+        check(1024, 1024);
+        check(100000, 1024);
+        check(100000, 128 * 1024);
+    }
+
+    private void check(int size, int blockSize) throws IOException
+    {
+        byte[] data = new byte[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('a' + random.nextInt(4));
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(compressed, 6, blockSize, 4)) {
+            out.write(data, 0, Math.min(size, 10));
+            for (int i = Math.min(size, 10); i < Math.min(size, 20); i++) {
+                out.write(data[i]);
+            }
+            if (size > 20) {
+                out.write(data, 20, size - 20);
+            }
+        }
+
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                decompressed.write(buffer, 0, n);
+            }
+        }
+        assertArrayEquals(data, decompressed.toByteArray());
+    }
+}
@@ -0,0 +1,85 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+import org.junit.Rule;
+import org.junit.Test;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.TaskValidationException;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.Exec;
+
+public class TestZstdFileEncoderPlugin
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    // frames written by hand following RFC 8878:
+    //   28b52ffd 20 0b 590000 "hello zstd\n"  single segment frame with a raw block
+    //   502a4d18 04000000 "skip"              skippable frame
+    //   28b52ffd 20 05 2b0000 "a"             single segment frame with an RLE block of 5 bytes
+    private static final String REFERENCE_FRAMES =
+        "28b52ffd200b59000068656c6c6f207a7374640a" +
+        "502a4d1804000000736b6970" +
+        "28b52ffd20052b000061";
+
+    @Test
+    public void testReferenceFrames()
+    {
+        byte[] frames = BaseEncoding.base16().lowerCase().decode(REFERENCE_FRAMES);
+        List<byte[]> decoded = FileCodecTester.decode(new ZstdFileDecoderPlugin(),
+                ImmutableList.<List<Buffer>>of(ImmutableList.of(Buffer.copyOf(frames))));
+        assertEquals(1, decoded.size());
+        assertEquals("hello zstd\naaaaa", new String(decoded.get(0)));
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        byte[] text = linesText();
+        List<byte[]> files = ImmutableList.of(text, new byte[0], "x".getBytes());
+        for (int level : new int[] { 1, 3, 19 }) {
+            List<List<Buffer>> encoded = FileCodecTester.encode(new ZstdFileEncoderPlugin(),
+                    Exec.newConfigSource().set("level", level), files);
+            assertEquals(3, encoded.size());
+            // magic number of zstd frames
+            assertArrayEquals(new byte[] { 0x28, (byte) 0xb5, 0x2f, (byte) 0xfd },
+                    Arrays.copyOf(FileCodecTester.toByteArray(encoded.get(0)), 4));
+            assertTrue(FileCodecTester.toByteArray(encoded.get(0)).length < text.length / 10);
+
+            List<byte[]> decoded = FileCodecTester.decode(new ZstdFileDecoderPlugin(), encoded);
+            assertEquals(3, decoded.size());
+            for (int i = 0; i < files.size(); i++) {
+                assertArrayEquals(files.get(i), decoded.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void checkLevel()
+    {
+        for (int level : new int[] { 0, 23 }) {
+            try {
+                FileCodecTester.encode(new ZstdFileEncoderPlugin(), Exec.newConfigSource().set("level", level),
+                        ImmutableList.<byte[]>of());
+                fail();
+            } catch (TaskValidationException ex) {
+            }
+        }
+    }
+
+    static byte[] linesText()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 30000; i++) {
+            sb.append("line ").append(i % 97).append('\n');
+        }
+        return sb.toString().getBytes();
+    }
+}
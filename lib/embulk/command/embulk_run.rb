@@ -84,7 +84,7 @@ module Embulk
       op.on('-o', '--output PATH', 'Path to a file to write the next configuration') do |path|
         options[:nextConfigOutputPath] = path
       end
-      op.on('-r', '--resume-state PATH', 'Path to a file to write or read resume state') do |path|
+      op.on('-r', '--resume-state PATH', 'Path to a file to write or read resume state (binary Smile format)') do |path|
         options[:resumeStatePath] = path
       end
       op.on('-X KEY=VALUE', 'Add a performance system config') do |kv|
@@ -108,7 +108,7 @@ module Embulk
       op.on('-C', '--classpath PATH', "Add java classpath separated by #{classpath_separator} (CLASSPATH)") do |classpath|
         classpaths.concat classpath.split(classpath_separator)
       end
-      op.on('-r', '--resume-state PATH', 'Path to a file to write or read resume state') do |path|
+      op.on('-r', '--resume-state PATH', 'Path to a file to write or read resume state (binary Smile format)') do |path|
         options[:resumeStatePath] = path
       end
       op.on('-X KEY=VALUE', 'Add a performance system config') do |kv|
@@ -169,6 +169,27 @@ module Embulk
       end
       args = 1..1
 
+    when :server
+      op.banner = "Usage: server"
+      op.on('-l', '--log-level LEVEL', 'Log level (error, warn, info, debug or trace)') do |level|
+        options[:logLevel] = level
+      end
+      op.on('-L', '--load PATH', 'Add a local plugin path') do |plugin_path|
+        plugin_paths << plugin_path
+      end
+      op.on('-I', '--load-path PATH', 'Add ruby script directory path ($LOAD_PATH)') do |load_path|
+        load_paths << load_path
+      end
+      op.on('-C', '--classpath PATH', "Add java classpath separated by #{classpath_separator} (CLASSPATH)") do |classpath|
+        classpaths.concat classpath.split(classpath_separator)
+      end
+      op.on('-X KEY=VALUE', 'Add a performance system config (e.g. server_token=SECRET)') do |kv|
+        k, v = kv.split('=', 2)
+        v ||= "true"
+        options[:systemProperty][k] = v
+      end
+      args = 0..0
+
     when :new
       op.remove  # remove --bundle
       op.banner = "Usage: new <category> <name>" + %[
@@ -473,6 +494,7 @@ examples:
     STDERR.puts "   run       <config.yml>                             # run a bulk load transaction."
     STDERR.puts "   preview   <config.yml>                             # dry-run the bulk load without output and show preview."
     STDERR.puts "   guess     <partial-config.yml> -o <output.yml>     # guess missing parameters to create a complete configuration file."
+    STDERR.puts "   server                                             # run guess, preview and run jobs sent over HTTP."
     STDERR.puts "   gem       <install | list | help>                  # install a plugin or show installed plugins."
     STDERR.puts "                                                      # plugin path is #{ENV['GEM_HOME']}"
     STDERR.puts "   new       <category> <name>                        # generates new plugin template"
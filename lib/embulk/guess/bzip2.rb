@@ -0,0 +1,19 @@
+module Embulk
+  module Guess
+
+    class Bzip2GuessPlugin < GuessPlugin
+      Plugin.register_guess('bzip2', self)
+
+      BZIP2_HEADER = "BZh".force_encoding('ASCII-8BIT').freeze
+
+      def guess(config, sample_buffer)
+        # "BZh" followed by the block size from "1" to "9"
+        if sample_buffer[0,3] == BZIP2_HEADER && ("1".."9").include?(sample_buffer[3,1])
+          return {"decoders" => [{"type" => "auto"}]}
+        end
+        return {}
+      end
+    end
+
+  end
+end
@@ -8,7 +8,9 @@ module Embulk
 
       def guess(config, sample_buffer)
         if sample_buffer[0,2] == GZIP_HEADER
-          return {"decoders" => [{"type" => "gzip"}]}
+          # auto decoder selects the codec for each file so that files compressed
+          # in different formats can be loaded using the guessed config
+          return {"decoders" => [{"type" => "auto"}]}
         end
         return {}
       end
@@ -0,0 +1,18 @@
+module Embulk
+  module Guess
+
+    class Lz4GuessPlugin < GuessPlugin
+      Plugin.register_guess('lz4', self)
+
+      LZ4_FRAME_HEADER = "\x04\x22\x4d\x18".force_encoding('ASCII-8BIT').freeze
+
+      def guess(config, sample_buffer)
+        if sample_buffer[0,4] == LZ4_FRAME_HEADER
+          return {"decoders" => [{"type" => "auto"}]}
+        end
+        return {}
+      end
+    end
+
+  end
+end
@@ -35,6 +35,18 @@ module Embulk::Guess
 
       # TODO this method will be private once guess/csv is refactored
       def types_from_array_records(samples)
+        if Embulk.java?
+          # Java implementation is much faster and guesses columns in parallel
+          records = samples.map {|record| record.map {|value| value.to_s } }
+          return Embulk::Java::SchemaGuess.typesFromArrayRecords(records).map do |type|
+            if type.getFormat
+              TimestampTypeMatch.new(type.getFormat)
+            else
+              type.getName
+            end
+          end
+        end
+
         columnar_types = []
         samples.each do |record|
           record.each_with_index {|value,i| (columnar_types[i] ||= []) << guess_type(value.to_s) }
@@ -373,6 +373,11 @@ module Embulk::Guess
     ]
 
     def self.guess(texts)
+      if Embulk.java?
+        # see org.embulk.spi.guess.TimeFormatGuess
+        return Embulk::Java::TimeFormatGuess.guess(Array(texts).map {|text| text.to_s })
+      end
+
       texts = Array(texts).map {|text| text.to_s }
       texts.reject! {|text| text == "" }
       matches = texts.map do |text|
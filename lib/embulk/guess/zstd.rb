@@ -0,0 +1,18 @@
+module Embulk
+  module Guess
+
+    class ZstdGuessPlugin < GuessPlugin
+      Plugin.register_guess('zstd', self)
+
+      ZSTD_FRAME_HEADER = "\x28\xb5\x2f\xfd".force_encoding('ASCII-8BIT').freeze
+
+      def guess(config, sample_buffer)
+        if sample_buffer[0,4] == ZSTD_FRAME_HEADER
+          return {"decoders" => [{"type" => "auto"}]}
+        end
+        return {}
+      end
+    end
+
+  end
+end
@@ -7,6 +7,19 @@ module Embulk
       raise NotImplementedError, "GuessPlugin#guess(config, sample_buffer) must be implemented"
     end
 
+    # returns a copy of config whose parser section is merged with parser_config.
+    # values in config take precedence unless they're nil
+    def self.merge_parser_config(config, parser_config)
+      return config if parser_config.empty?
+      merged = DataSource.new.merge(config)
+      parser = DataSource.new.merge(config.fetch("parser", {}))
+      parser_config.each_pair do |key, value|
+        parser[key] = value if parser[key].nil?
+      end
+      merged["parser"] = parser
+      return merged
+    end
+
     if Embulk.java?
       def self.new_java
         JavaAdapter.new(new)
@@ -47,10 +60,13 @@ module Embulk
 
   class TextGuessPlugin < GuessPlugin
     def guess(config, sample)
+      # guesses charset first if it's not set so that guess_text runs in the same call
+      parser_guessed = {}
       if config.fetch('parser', {}).fetch('charset', nil).nil?
         require 'embulk/guess/charset'
         charset_guess = Guess::CharsetGuessPlugin.new
-        return charset_guess.guess(config, sample)
+        parser_guessed.merge!(charset_guess.guess(config, sample).fetch("parser", {}))
+        config = GuessPlugin.merge_parser_config(config, parser_guessed)
       end
 
       # TODO pure-ruby LineDecoder implementation?
@@ -77,7 +93,7 @@ module Embulk
         end
       end
 
-      return guess_text(config, sample_text);
+      return GuessPlugin.merge_parser_config(guess_text(config, sample_text), parser_guessed)
     end
 
     def guess_text(config, sample_text)
@@ -87,16 +103,21 @@ module Embulk
 
   class LineGuessPlugin < GuessPlugin
     def guess(config, sample)
+      # guesses charset and newline first if they're not set so that
+      # guess_lines runs in the same call
+      parser_guessed = {}
       if config.fetch('parser', {}).fetch('charset', nil).nil?
         require 'embulk/guess/charset'
         charset_guess = Guess::CharsetGuessPlugin.new
-        return charset_guess.guess(config, sample)
+        parser_guessed.merge!(charset_guess.guess(config, sample).fetch("parser", {}))
+        config = GuessPlugin.merge_parser_config(config, parser_guessed)
       end
 
       if config.fetch('parser', {}).fetch('newline', nil).nil?
         require 'embulk/guess/newline'
         newline_guess = Guess::NewlineGuessPlugin.new
-        return newline_guess.guess(config, sample)
+        parser_guessed.merge!(newline_guess.guess(config, sample).fetch("parser", {}))
+        config = GuessPlugin.merge_parser_config(config, parser_guessed)
       end
 
       # TODO pure-ruby LineDecoder implementation?
@@ -118,7 +139,7 @@ module Embulk
         sample_lines.pop unless sample_lines.empty?  # last line can be partial
       end
 
-      return guess_lines(config, sample_lines);
+      return GuessPlugin.merge_parser_config(guess_lines(config, sample_lines), parser_guessed)
     end
 
     def guess_lines(config, sample_lines)
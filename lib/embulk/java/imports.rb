@@ -24,6 +24,8 @@ module Embulk::Java
   java_import 'org.embulk.spi.util.DynamicPageBuilder'
   java_import 'org.embulk.spi.util.LineDecoder'
   java_import 'org.embulk.spi.util.ListFileInput'
+  java_import 'org.embulk.spi.guess.SchemaGuess'
+  java_import 'org.embulk.spi.guess.TimeFormatGuess'
   java_import 'org.embulk.spi.Schema'
   java_import 'org.embulk.spi.Column'
   java_import 'org.embulk.spi.type.Type'
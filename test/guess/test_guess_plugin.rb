@@ -0,0 +1,97 @@
+require 'helper'
+require 'embulk/guess_plugin'
+
+class GuessPluginTest < ::Test::Unit::TestCase
+  DataSource = Embulk::DataSource
+
+  class RecordingLineGuess < Embulk::LineGuessPlugin
+    attr_reader :calls
+
+    def guess_lines(config, sample_lines)
+      (@calls ||= []) << [config, sample_lines]
+      return {"parser" => {"type" => "recording"}}
+    end
+  end
+
+  class RecordingTextGuess < Embulk::TextGuessPlugin
+    attr_reader :calls
+
+    def guess_text(config, sample_text)
+      (@calls ||= []) << [config, sample_text]
+      return {"parser" => {"type" => "recording"}}
+    end
+  end
+
+  def setup
+    # LineGuessPlugin and TextGuessPlugin load DecoderTask using ModelManager
+    # which is set by JRubyInitializer at runtime
+    unless Embulk::Java::Injected.const_defined?(:ModelManager)
+      bootstrap_model = org.embulk.config.ModelManager.new(nil, com.fasterxml.jackson.databind.ObjectMapper.new)
+      system_config = org.embulk.config.ConfigLoader.new(bootstrap_model).newConfigSource
+      embed = org.embulk.EmbulkEmbed.new(system_config, java.util.ArrayList.new)
+      Embulk::Java::Injected.const_set(:ModelManager, embed.getInjector.getInstance(org.embulk.config.ModelManager.java_class))
+    end
+  end
+
+  def sample
+    Embulk::Buffer.from_ruby_string("id,name\n1,foo\n2,bar\n")
+  end
+
+  def test_merge_parser_config
+    config = DataSource.new.merge({"type" => "file", "parser" => {"charset" => "UTF-8", "newline" => nil}})
+    merged = Embulk::GuessPlugin.merge_parser_config(config, {"charset" => "MS932", "newline" => "LF", "type" => "csv"})
+    # values in config take precedence unless they're nil
+    assert_equal({"charset" => "UTF-8", "newline" => "LF", "type" => "csv"}, merged["parser"])
+    assert_equal("file", merged["type"])
+    # config is not modified
+    assert_equal({"charset" => "UTF-8", "newline" => nil}, config["parser"])
+  end
+
+  def test_merge_parser_config_without_parser
+    config = DataSource.new.merge({"type" => "file"})
+    merged = Embulk::GuessPlugin.merge_parser_config(config, {"charset" => "UTF-8"})
+    assert_equal({"charset" => "UTF-8"}, merged["parser"])
+    assert_equal(nil, config["parser"])
+  end
+
+  def test_merge_empty_parser_config
+    config = DataSource.new.merge({"parser" => {"charset" => "UTF-8"}})
+    assert_same(config, Embulk::GuessPlugin.merge_parser_config(config, {}))
+  end
+
+  def test_line_guess_in_one_call
+    guess = RecordingLineGuess.new
+    guessed = guess.guess(DataSource.new, sample)
+
+    # charset and newline are guessed and passed to guess_lines in the same call
+    assert_equal(1, guess.calls.size)
+    config, sample_lines = guess.calls[0]
+    assert_not_nil(config["parser"]["charset"])
+    assert_not_nil(config["parser"]["newline"])
+    assert_equal(["id,name", "1,foo"], sample_lines)  # last line can be partial
+
+    assert_equal("recording", guessed["parser"]["type"])
+    assert_equal(config["parser"]["charset"], guessed["parser"]["charset"])
+    assert_equal(config["parser"]["newline"], guessed["parser"]["newline"])
+  end
+
+  def test_line_guess_keeps_configured_values
+    guess = RecordingLineGuess.new
+    config = DataSource.new.merge({"parser" => {"charset" => "UTF-8", "newline" => "LF"}})
+    guessed = guess.guess(config, sample)
+    assert_equal(["id,name", "1,foo"], guess.calls[0][1])
+    assert_equal({"type" => "recording"}, guessed["parser"])
+  end
+
+  def test_text_guess_in_one_call
+    guess = RecordingTextGuess.new
+    guessed = guess.guess(DataSource.new, sample)
+
+    assert_equal(1, guess.calls.size)
+    config, sample_text = guess.calls[0]
+    assert_not_nil(config["parser"]["charset"])
+    assert_match(/\Aid,name.*1,foo.*2,bar\z/m, sample_text)
+    assert_equal("recording", guessed["parser"]["type"])
+    assert_equal(config["parser"]["charset"], guessed["parser"]["charset"])
+  end
+end